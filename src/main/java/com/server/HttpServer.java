@@ -1,7 +1,11 @@
 package com.server;
 
+import com.server.core.ExecutionMode;
+import com.server.core.IoMode;
+import com.server.core.ServerConfig;
 import com.server.core.ServerListenerThread;
 import com.server.core.io.WebRootNotFoundException;
+import com.server.core.nio.NioServerListenerThread;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -9,16 +13,29 @@ import java.io.IOException;
 
 /**
  * Driver class for the http server.
+ * <p>
+ * The I/O model is selected by the {@code server.io} system property ({@code BLOCKING} or {@code NIO}), and the
+ * threading model of the blocking workers by {@code server.execution} ({@code PLATFORM_THREAD},
+ * {@code VIRTUAL_THREAD} or {@code BOUNDED_POOL}).
  */
 public class HttpServer {
 
     private final static Logger LOGGER = LoggerFactory.getLogger(HttpServer.class);
 
     public static void main(String[] args) {
-        LOGGER.info("server start at http://localhost:8080");
+        ServerConfig config = new ServerConfig.Builder()
+                .port(8080)
+                .webroot("webroot")
+                .ioMode(IoMode.valueOf(System.getProperty("server.io", IoMode.BLOCKING.name())))
+                .executionMode(ExecutionMode.valueOf(System.getProperty("server.execution", ExecutionMode.PLATFORM_THREAD.name())))
+                .build();
+        LOGGER.info("server start at http://localhost:{} ({} mode)", config.getPort(), config.getIoMode());
         try {
-            ServerListenerThread serverListenerThread = new ServerListenerThread(8080, "webroot");
-            serverListenerThread.start();
+            Thread listenerThread = switch (config.getIoMode()) {
+                case BLOCKING -> new ServerListenerThread(config);
+                case NIO -> new NioServerListenerThread(config);
+            };
+            listenerThread.start();
         } catch (IOException e) {
             e.printStackTrace();
         } catch (WebRootNotFoundException e) {
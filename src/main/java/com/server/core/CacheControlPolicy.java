@@ -0,0 +1,98 @@
+package com.server.core;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Chooses the Cache-Control header field of static files. The longest matching path prefix wins, then the file
+ * extension, then the default.
+ */
+public class CacheControlPolicy {
+    private final List<Map.Entry<String, String>> pathPrefixes;
+    private final Map<String, String> extensions;
+    @Nullable
+    private final String defaultValue;
+
+    private CacheControlPolicy(Builder builder) {
+        this.pathPrefixes = new ArrayList<>(builder.pathPrefixes.entrySet());
+        this.pathPrefixes.sort(Comparator.comparingInt((Map.Entry<String, String> entry) -> entry.getKey().length()).reversed());
+        this.extensions = Map.copyOf(builder.extensions);
+        this.defaultValue = builder.defaultValue;
+    }
+
+    /**
+     * Get the Cache-Control value for a file.
+     *
+     * @param requestTarget request target of the file
+     * @param fileName      name of the file served for the target
+     * @return header field value, or null if the response should not have one
+     */
+    @Nullable
+    public String getCacheControl(String requestTarget, String fileName) {
+        for (Map.Entry<String, String> pathPrefix : pathPrefixes) {
+            if (requestTarget.startsWith(pathPrefix.getKey())) {
+                return pathPrefix.getValue();
+            }
+        }
+        int dot = fileName.lastIndexOf('.');
+        if (dot != -1) {
+            String value = extensions.get(fileName.substring(dot + 1).toLowerCase(Locale.ROOT));
+            if (value != null) {
+                return value;
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Builder of a CacheControlPolicy object.
+     */
+    public static class Builder {
+        private final Map<String, String> pathPrefixes = new HashMap<>();
+        private final Map<String, String> extensions = new HashMap<>();
+        @Nullable
+        private String defaultValue;
+
+        /**
+         * Set the value for every file under a path.
+         *
+         * @param pathPrefix start of the request targets, e.g. {@code /assets/}
+         * @param value      Cache-Control value
+         */
+        public Builder pathPrefix(String pathPrefix, String value) {
+            this.pathPrefixes.put(pathPrefix, value);
+            return this;
+        }
+
+        /**
+         * Set the value for every file with an extension.
+         *
+         * @param extension file extension without the dot, e.g. {@code jpg}
+         * @param value     Cache-Control value
+         */
+        public Builder extension(String extension, String value) {
+            this.extensions.put(extension.toLowerCase(Locale.ROOT), value);
+            return this;
+        }
+
+        /**
+         * Set the value for files no path prefix or extension matches.
+         *
+         * @param defaultValue Cache-Control value
+         */
+        public Builder defaultValue(String defaultValue) {
+            this.defaultValue = defaultValue;
+            return this;
+        }
+
+        public CacheControlPolicy build() {
+            return new CacheControlPolicy(this);
+        }
+    }
+}
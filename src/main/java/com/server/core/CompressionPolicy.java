@@ -0,0 +1,157 @@
+package com.server.core;
+
+import com.server.http.DeflaterBody;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Chooses which static files are sent compressed, by MIME type and size, and how they are compressed. Only text
+ * formats benefit, images and archives are already compressed, and below the minimum size the saving is lost in the
+ * framing.
+ */
+public class CompressionPolicy {
+    public static final long DEFAULT_MIN_SIZE = 1024;
+    public static final List<String> DEFAULT_MIME_TYPES = List.of("text/html", "text/css", "text/plain",
+            "text/javascript", "application/javascript", "application/json", "application/xml", "text/xml",
+            "image/svg+xml");
+
+    private final boolean enabled;
+    private final long minSize;
+    private final Set<String> mimeTypes;
+    private final int level;
+    private final boolean precompressed;
+    private final boolean cacheCompressed;
+
+    private CompressionPolicy(Builder builder) {
+        this.enabled = builder.enabled;
+        this.minSize = builder.minSize;
+        this.mimeTypes = Set.copyOf(builder.mimeTypes);
+        this.level = builder.level;
+        this.precompressed = builder.precompressed;
+        this.cacheCompressed = builder.cacheCompressed;
+    }
+
+    /**
+     * Check if a file may be sent compressed.
+     *
+     * @param mimeType MIME type of the file, parameters are ignored
+     * @param size     size of the file in bytes
+     * @return true if the file is large enough and its type is allowed
+     */
+    public boolean isCompressible(String mimeType, long size) {
+        if (!enabled || size < minSize) {
+            return false;
+        }
+        int semicolon = mimeType.indexOf(';');
+        String baseType = semicolon == -1 ? mimeType : mimeType.substring(0, semicolon).trim();
+        return mimeTypes.contains(baseType.toLowerCase(Locale.ROOT));
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * @return whether a {@code .gz} file next to the requested one is sent instead of compressing it
+     */
+    public boolean isPrecompressed() {
+        return precompressed;
+    }
+
+    /**
+     * @return whether files small enough for the file cache are compressed once and cached
+     */
+    public boolean isCacheCompressed() {
+        return cacheCompressed;
+    }
+
+    /**
+     * Builder of a CompressionPolicy object.
+     */
+    public static class Builder {
+        private boolean enabled = true;
+        private long minSize = DEFAULT_MIN_SIZE;
+        private final Set<String> mimeTypes = new HashSet<>(DEFAULT_MIME_TYPES);
+        private int level = DeflaterBody.DEFAULT_LEVEL;
+        private boolean precompressed = true;
+        private boolean cacheCompressed = true;
+
+        /**
+         * Turn compression on or off. It is on by default.
+         *
+         * @param enabled whether responses are compressed
+         */
+        public Builder enabled(boolean enabled) {
+            this.enabled = enabled;
+            return this;
+        }
+
+        /**
+         * Set the size of the smallest file worth compressing.
+         *
+         * @param minSize file size in bytes
+         */
+        public Builder minSize(long minSize) {
+            this.minSize = minSize;
+            return this;
+        }
+
+        /**
+         * Replace the MIME types that are compressed.
+         *
+         * @param mimeTypes MIME types without parameters, e.g. {@code text/html}
+         */
+        public Builder mimeTypes(String... mimeTypes) {
+            this.mimeTypes.clear();
+            for (String mimeType : mimeTypes) {
+                this.mimeTypes.add(mimeType.toLowerCase(Locale.ROOT));
+            }
+            return this;
+        }
+
+        /**
+         * Set the compression level, from 1 (fastest) to 9 (smallest).
+         *
+         * @param level deflate compression level
+         */
+        public Builder level(int level) {
+            this.level = level;
+            return this;
+        }
+
+        /**
+         * Send {@code index.html.gz} to a client accepting gzip instead of compressing {@code index.html}, if the
+         * compressed file is at least as new. On by default.
+         *
+         * @param precompressed whether precompressed files are used
+         */
+        public Builder precompressed(boolean precompressed) {
+            this.precompressed = precompressed;
+            return this;
+        }
+
+        /**
+         * Keep the compressed variants of cached files in the file cache. On by default, otherwise they are compressed
+         * on every request.
+         *
+         * @param cacheCompressed whether compressed variants are cached
+         */
+        public Builder cacheCompressed(boolean cacheCompressed) {
+            this.cacheCompressed = cacheCompressed;
+            return this;
+        }
+
+        public CompressionPolicy build() {
+            if (minSize < 0) {
+                throw new IllegalArgumentException("minSize must not be negative");
+            }
+            if (level < 1 || level > 9) {
+                throw new IllegalArgumentException("level must be between 1 and 9");
+            }
+            return new CompressionPolicy(this);
+        }
+    }
+}
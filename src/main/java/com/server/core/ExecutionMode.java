@@ -0,0 +1,43 @@
+package com.server.core;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Threading model used to run the blocking connection workers.
+ */
+public enum ExecutionMode {
+    /**
+     * A new platform thread per connection.
+     */
+    PLATFORM_THREAD,
+    /**
+     * A new virtual thread per connection. Idle connections, such as most WebSocket connections, only cost a small
+     * heap-allocated stack instead of a whole platform thread.
+     */
+    VIRTUAL_THREAD,
+    /**
+     * A fixed number of platform threads. Connections beyond the pool size wait in the queue until a thread is free.
+     * A keep-alive connection holds its thread until it is closed or reaches the keep-alive timeout, and a WebSocket
+     * connection keeps its thread for its whole life, so as many WebSocket clients as pool threads starve every new
+     * HTTP connection. Use {@link #VIRTUAL_THREAD} or the NIO mode for long-lived connections.
+     */
+    BOUNDED_POOL;
+
+    /**
+     * Create the executor the connection workers are submitted to.
+     *
+     * @param poolSize number of threads, only used by {@link #BOUNDED_POOL}
+     * @return executor for connection workers
+     */
+    public ExecutorService newExecutor(int poolSize) {
+        return switch (this) {
+            case PLATFORM_THREAD ->
+                    Executors.newThreadPerTaskExecutor(Thread.ofPlatform().name("connection-worker-", 0).factory());
+            case VIRTUAL_THREAD ->
+                    Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("connection-worker-", 0).factory());
+            case BOUNDED_POOL ->
+                    Executors.newFixedThreadPool(poolSize, Thread.ofPlatform().name("connection-worker-", 0).factory());
+        };
+    }
+}
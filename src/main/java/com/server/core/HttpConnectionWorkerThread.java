@@ -1,53 +1,129 @@
 package com.server.core;
 
-import com.server.core.io.ReadFileException;
-import com.server.core.io.WebRootHandler;
 import com.server.http.*;
+import com.server.ws.PerMessageDeflate;
+import com.server.ws.WebSocketHub;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.FileNotFoundException;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.io.SequenceInputStream;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
 
 /**
- * Thread handles HTTP request. GET request & WebSocket protocol upgrade handshake are supported.
+ * Worker handles HTTP requests of a connection. GET request & WebSocket protocol upgrade handshake are supported.
+ * Connections are kept open between requests unless the client asks otherwise, until they stay idle longer than the
+ * keep-alive timeout or reach the max. number of requests. Pipelined requests are processed concurrently and
+ * answered in request order.
+ * <p>
+ * The worker is run by the executor of the configured {@link ExecutionMode}.
  */
-public class HttpConnectionWorkerThread extends Thread {
+public class HttpConnectionWorkerThread implements Runnable {
     private final static Logger LOGGER = LoggerFactory.getLogger(HttpConnectionWorkerThread.class);
+    private static final int READ_BUFFER_SIZE = 8 * 1024;
+    private static final int OUTPUT_BUFFER_SIZE = 16 * 1024;
     private final Socket socket;
     private final InputStream inputStream;
     private final OutputStream outputStream;
-    private final HttpParser httpParser = new HttpParser();
-    private final WebRootHandler webRootHandler;
+    // Target of response bodies, the socket channel if there is one so that the kernel sends files
+    private final WritableByteChannel responseBodyTarget;
+    private final IncrementalHttpParser httpParser = new IncrementalHttpParser();
+    private final HttpResponseEncoder responseEncoder;
+    private final List<ByteBuffer> outputBuffers = new ArrayList<>();
+    private final HttpRequestHandler requestHandler;
+    private final ServerConfig config;
+    private final ExecutorService requestExecutor;
+    private final ScheduledExecutorService pingScheduler;
+    private final WebSocketHub webSocketHub;
+    // Bytes read from the socket but not parsed yet, kept in read mode
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE).flip();
     private boolean isWebsocketConnection = false;
 
-    public HttpConnectionWorkerThread(Socket socket, WebRootHandler webRootHandler) throws IOException {
+    public HttpConnectionWorkerThread(Socket socket, HttpRequestHandler requestHandler, ServerConfig config,
+                                      ExecutorService requestExecutor, ScheduledExecutorService pingScheduler,
+                                      WebSocketHub webSocketHub) throws IOException {
         this.socket = socket;
         this.inputStream = socket.getInputStream();
-        this.outputStream = socket.getOutputStream();
-        this.webRootHandler = webRootHandler;
+        this.outputStream = new BufferedOutputStream(socket.getOutputStream(), OUTPUT_BUFFER_SIZE);
+        this.responseBodyTarget = socket.getChannel() != null ? socket.getChannel() : Channels.newChannel(outputStream);
+        this.requestHandler = requestHandler;
+        this.config = config;
+        this.responseEncoder = new HttpResponseEncoder(HttpResponseEncoder.DEFAULT_HEAD_BUFFER_SIZE, config.getChunkSize());
+        this.requestExecutor = requestExecutor;
+        this.pingScheduler = pingScheduler;
+        this.webSocketHub = webSocketHub;
     }
 
     @Override
     public void run() {
+        OrderedResponseQueue responseQueue = new OrderedResponseQueue();
         try {
-            HttpRequest request = httpParser.parseHttpRequest(inputStream);
-            if (request.isWebsocketHandshake()) {
-                // Try to switch protocol to WebSocket
-                LOGGER.info("WebSocket Upgrade Request detected.");
-                handleWebSocketUpgradeRequest(request);
-                isWebsocketConnection = true;
-            } else {
-                // Handle normal HTTP request
-                HttpResponse response = handleGetRequest(request);
-                sendResponse(response);
+            socket.setSoTimeout(config.getKeepAliveTimeoutMillis());
+            int handledRequests = 0;
+            HttpRequest request;
+            while ((request = readNextRequest()) != null) {
+                // Take every request the client already pipelined behind this one, then answer them in one flush
+                boolean keepAlive;
+                do {
+                    handledRequests++;
+                    if (request.isWebsocketHandshake()) {
+                        // Try to switch protocol to WebSocket
+                        LOGGER.info("WebSocket Upgrade Request detected.");
+                        if (!writeResponses(responseQueue)) {
+                            return;
+                        }
+                        handleWebSocketUpgradeRequest(request);
+                        isWebsocketConnection = true;
+                        return;
+                    }
+                    // Handle normal HTTP request
+                    keepAlive = request.isKeepAlive() && handledRequests < config.getMaxKeepAliveRequests();
+                    HttpBodyDecoder bodyDecoder;
+                    try {
+                        bodyDecoder = HttpBodyDecoder.forRequest(request, config.getMaxRequestBodySize());
+                    } catch (HttpParsingException e) {
+                        // The body cannot be skipped, so the connection is closed after the error response
+                        responseQueue.add(request, CompletableFuture.completedFuture(
+                                requestHandler.handleBadRequest(request, e.getErrorCode())), false);
+                        keepAlive = false;
+                        break;
+                    }
+                    if (bodyDecoder == null) {
+                        responseQueue.add(request, handleRequest(request, keepAlive, responseQueue.isEmpty() && !hasBufferedInput()), keepAlive);
+                    } else {
+                        keepAlive = handleRequestWithBody(request, bodyDecoder, keepAlive, responseQueue);
+                    }
+                } while (keepAlive
+                        && responseQueue.size() < config.getMaxPipelinedRequests()
+                        && hasBufferedInput()
+                        && (request = readNextRequest()) != null);
+                if (!writeResponses(responseQueue) || !keepAlive) {
+                    return;
+                }
             }
+        } catch (SocketTimeoutException e) {
+            LOGGER.info("Connection idle for {} ms", config.getKeepAliveTimeoutMillis());
         } catch (IOException | HttpParsingException e) {
             LOGGER.error("Error processing request: ", e);
         } finally {
+            // Responses left behind by a failed write are never sent, but their bodies hold files and compressors
+            responseQueue.clear();
             if (!isWebsocketConnection) {
                 try {
                     socket.close();
@@ -59,60 +135,208 @@ public class HttpConnectionWorkerThread extends Thread {
         }
     }
 
+    /**
+     * Parse the next request, reading from the socket until its whole head arrived.
+     *
+     * @return parsed HttpRequest object, or null if the client closed the connection before the next request
+     */
+    @Nullable
+    private HttpRequest readNextRequest() throws IOException, HttpParsingException {
+        IncrementalHttpParser.Result result;
+        while ((result = httpParser.parse(readBuffer)) == IncrementalHttpParser.Result.NEED_MORE) {
+            if (!fillReadBuffer()) {
+                if (httpParser.hasStarted()) {
+                    // The connection was closed in the middle of a request
+                    throw new HttpParsingException(HttpStatusCode.CLIENT_ERROR_400_BAD_REQUEST);
+                }
+                return null;
+            }
+        }
+        if (result == IncrementalHttpParser.Result.ERROR) {
+            throw httpParser.getError();
+        }
+        HttpRequest request = httpParser.getRequest();
+        httpParser.reset();
+        return request;
+    }
+
+    /**
+     * Read whatever the socket has into the read buffer. The parser consumed everything before, so there is room.
+     *
+     * @return false on end of stream
+     */
+    private boolean fillReadBuffer() throws IOException {
+        readBuffer.clear();
+        int read = inputStream.read(readBuffer.array(), 0, readBuffer.capacity());
+        readBuffer.limit(Math.max(read, 0));
+        return read != -1;
+    }
+
+    /**
+     * Check if the client already sent more data, i.e. pipelined another request.
+     *
+     * @return True if there are bytes to parse without blocking
+     */
+    private boolean hasBufferedInput() throws IOException {
+        return readBuffer.hasRemaining() || inputStream.available() > 0;
+    }
+
+    /**
+     * Build the response of a request. A request that is alone is handled on the current thread, pipelined requests
+     * are handled concurrently on the request executor.
+     *
+     * @param request   HTTP request
+     * @param keepAlive whether the connection stays open after the response
+     * @param alone     whether no other request is queued or buffered on this connection
+     * @return pending HTTP response
+     */
+    private CompletableFuture<HttpResponse> handleRequest(HttpRequest request, boolean keepAlive, boolean alone) {
+        if (alone) {
+            try {
+                return CompletableFuture.completedFuture(requestHandler.handleRequest(request, keepAlive));
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        return CompletableFuture.supplyAsync(() -> requestHandler.handleRequest(request, keepAlive), requestExecutor);
+    }
+
+    /**
+     * Handle a request with a body on the current thread. The body is streamed from the connection, so nothing after
+     * it can be parsed before the handler is done with it.
+     *
+     * @param request       HTTP request
+     * @param bodyDecoder   decoder of the body framing
+     * @param keepAlive     whether the connection stays open after the response
+     * @param responseQueue responses of the pipelined requests
+     * @return whether the connection stays open, which requires the rest of the body to be skipped
+     */
+    private boolean handleRequestWithBody(HttpRequest request, HttpBodyDecoder bodyDecoder, boolean keepAlive,
+                                          OrderedResponseQueue responseQueue) throws IOException {
+        HttpBodyInputStream body = new HttpBodyInputStream(bodyDecoder, readBuffer, inputStream);
+        request.setBody(body);
+        // A client may pause in the middle of a body for a different time than between two requests
+        socket.setSoTimeout(config.getRequestBodyTimeoutMillis());
+        HttpResponse response = requestHandler.handleRequest(request, keepAlive);
+        boolean bodySkipped;
+        try {
+            body.transferTo(OutputStream.nullOutputStream());
+            bodySkipped = true;
+        } catch (IOException e) {
+            LOGGER.info("Request body could not be read to its end: {}", e.getMessage());
+            bodySkipped = false;
+        }
+        socket.setSoTimeout(config.getKeepAliveTimeoutMillis());
+        responseQueue.add(request, CompletableFuture.completedFuture(response), keepAlive && bodySkipped);
+        return keepAlive && bodySkipped;
+    }
+
+    /**
+     * Write the queued responses in request order and flush them at once. A response delimited by closing the
+     * connection or answering a failed handler ends the connection, the responses behind it are dropped.
+     *
+     * @param responseQueue responses of the pipelined requests
+     * @return false if the connection has to be closed
+     */
+    private boolean writeResponses(OrderedResponseQueue responseQueue) throws IOException {
+        OrderedResponseQueue.Entry entry;
+        while ((entry = responseQueue.poll()) != null) {
+            HttpResponse response = entry.getResponse();
+            encodeResponse(response);
+            if (response.isDelimitedByClose() || !entry.isKeepAlive()) {
+                responseQueue.clear();
+                flushOutputBuffers();
+                return false;
+            }
+        }
+        flushOutputBuffers();
+        return true;
+    }
+
     /**
      * Send HTTP response and flush the output stream.
      *
      * @param response HTTP response to send
      */
     private void sendResponse(HttpResponse response) throws IOException {
-        outputStream.write(response.generateResponseBytes());
-        outputStream.flush();
+        encodeResponse(response);
+        flushOutputBuffers();
     }
 
     /**
-     * Handle GET request and return HTTP response with or without body.
+     * Encode the response into the output buffers. A response body is sent right away behind everything encoded so
+     * far, waiting for a streamed body whenever it has nothing ready.
      *
-     * @param request Whether the response includes the body
-     * @return HTTP response for the GET request
+     * @param response HTTP response to send
      */
-    private HttpResponse handleGetRequest(HttpRequest request) {
+    private void encodeResponse(HttpResponse response) throws IOException {
+        ResponseBody responseBody = responseEncoder.encode(response, outputBuffers);
+        if (responseBody != null) {
+            try {
+                flushOutputBuffers();
+                while (responseBody.hasRemaining()) {
+                    if (!responseBody.isReady()) {
+                        awaitReady(responseBody);
+                    }
+                    responseBody.transferTo(responseBodyTarget);
+                }
+            } finally {
+                responseBody.close();
+            }
+        }
+    }
+
+    /**
+     * Block until a streamed response body has bytes to send.
+     *
+     * @param responseBody body that is not ready
+     */
+    private static void awaitReady(ResponseBody responseBody) throws IOException {
+        CountDownLatch ready = new CountDownLatch(1);
+        responseBody.onReady(ready::countDown);
         try {
-            HttpResponse.Builder builder = new HttpResponse.Builder()
-                    .httpVersion(request.getHttpVersion().literal)
-                    .statusCode(HttpStatusCode.OK)
-                    .addHeader(HttpHeaderFieldName.CONTENT_TYPE.headerName, webRootHandler.getFileMimeType(request.getRequestTarget()));
-            byte[] messageBody = webRootHandler.getFileByteArrayData(request.getRequestTarget());
-            builder.addHeader(HttpHeaderFieldName.CONTENT_LENGTH.headerName, String.valueOf(messageBody.length))
-                    .messageBody(messageBody);
-            return builder.build();
-        } catch (FileNotFoundException e) {
-            return new HttpResponse.Builder()
-                    .httpVersion(request.getHttpVersion().literal)
-                    .statusCode(HttpStatusCode.CLIENT_ERROR_404_NOT_FOUND)
-                    .build();
-        } catch (ReadFileException e) {
-            return new HttpResponse.Builder()
-                    .httpVersion(request.getHttpVersion().literal)
-                    .statusCode(HttpStatusCode.SERVER_ERROR_500_INTERNAL_SERVER_ERROR)
-                    .build();
+            ready.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the response body");
         }
     }
 
     /**
-     * Handle WebSocket upgrade request. Start a worker thread to listen WebSocket frames.
+     * Write the encoded heads and bodies. Small ones are coalesced by the output stream, while a body larger than its
+     * buffer is written straight from its array.
+     */
+    private void flushOutputBuffers() throws IOException {
+        for (ByteBuffer buffer : outputBuffers) {
+            outputStream.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        }
+        // Flushed before a response body too, which goes to the socket without passing the stream
+        outputStream.flush();
+        outputBuffers.clear();
+        responseEncoder.reset();
+    }
+
+    /**
+     * Handle WebSocket upgrade request. The WebSocket worker takes over the connection on the current thread, so no
+     * extra thread is started for it.
      *
      * @param request WebSocket handshake from the client
      */
     private void handleWebSocketUpgradeRequest(HttpRequest request) throws HttpParsingException, IOException {
-        HttpResponse handshakeResponse = new HttpResponse.Builder()
-                .httpVersion(request.getHttpVersion().literal)
-                .statusCode(HttpStatusCode.WEBSOCKET_UPGRADE)
-                .addHeader("Upgrade", "websocket")
-                .addHeader("Connection", "Upgrade")
-                .addHeader("Sec-WebSocket-Accept", request.generateSecWebsocketAcceptFieldValue())
-                .build();
-        sendResponse(handshakeResponse);
-        WebsocketWorkerThread websocketWorkerThread = new WebsocketWorkerThread(socket);
-        websocketWorkerThread.start();
+        PerMessageDeflate perMessageDeflate = config.getPerMessageDeflatePolicy()
+                .negotiate(request.getHeaders().get(HttpHeaderFieldName.SEC_WEBSOCKET_EXTENSIONS));
+        sendResponse(requestHandler.handleWebSocketUpgradeRequest(request, perMessageDeflate));
+        // The keep-alive timeout does not apply to WebSocket connections, they are kept alive by pings
+        socket.setSoTimeout(0);
+        // Frames the client sent right behind the handshake may already be in the read buffer
+        InputStream frameStream = inputStream;
+        if (readBuffer.hasRemaining()) {
+            ByteArrayInputStream leftover = new ByteArrayInputStream(
+                    readBuffer.array(), readBuffer.position(), readBuffer.remaining());
+            frameStream = new SequenceInputStream(leftover, inputStream);
+        }
+        WebsocketWorkerThread websocketWorker = new WebsocketWorkerThread(socket, frameStream, config, perMessageDeflate,
+                requestExecutor, pingScheduler, webSocketHub);
+        websocketWorker.run();
     }
 }
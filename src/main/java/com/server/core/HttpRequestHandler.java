@@ -0,0 +1,366 @@
+package com.server.core;
+
+import com.server.core.io.FileInfo;
+import com.server.core.io.ReadFileException;
+import com.server.core.io.WebRootHandler;
+import com.server.http.*;
+import com.server.ws.PerMessageDeflate;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Builds HTTP responses for parsed requests. Shared by the blocking workers and the NIO selector loops.
+ */
+public class HttpRequestHandler {
+    private final WebRootHandler webRootHandler;
+    private final long sendFileThreshold;
+    private final CacheControlPolicy cacheControlPolicy;
+    private final CompressionPolicy compressionPolicy;
+
+    public HttpRequestHandler(WebRootHandler webRootHandler) {
+        this(webRootHandler, new ServerConfig.Builder().build());
+    }
+
+    /**
+     * @param webRootHandler handler of the files to serve
+     * @param config         server settings, the send file threshold, Cache-Control and compression policies are used
+     */
+    public HttpRequestHandler(WebRootHandler webRootHandler, ServerConfig config) {
+        this.webRootHandler = webRootHandler;
+        this.sendFileThreshold = config.getSendFileThreshold();
+        this.cacheControlPolicy = config.getCacheControlPolicy();
+        this.compressionPolicy = config.getCompressionPolicy();
+    }
+
+    /**
+     * Handle a request of any supported method.
+     *
+     * @param request   HTTP request
+     * @param keepAlive Whether the connection stays open after the response
+     * @return HTTP response for the request
+     */
+    public HttpResponse handleRequest(HttpRequest request, boolean keepAlive) {
+        if (request.getMethod() == HttpMethod.GET) {
+            return handleGetRequest(request, keepAlive);
+        }
+        return handleUploadRequest(request, keepAlive);
+    }
+
+    /**
+     * Handle GET request and return HTTP response with or without body.
+     *
+     * @param request   Whether the response includes the body
+     * @param keepAlive Whether the connection stays open after the response
+     * @return HTTP response for the GET request
+     */
+    public HttpResponse handleGetRequest(HttpRequest request, boolean keepAlive) {
+        HttpResponse.Builder builder = new HttpResponse.Builder()
+                .httpVersion(request.getHttpVersion().literal)
+                .addHeader(HttpHeaderFieldName.CONNECTION, keepAlive ? "keep-alive" : "close");
+        try {
+            String requestTarget = request.getRequestTarget();
+            FileInfo fileInfo = webRootHandler.getFileInfo(requestTarget);
+            ContentEncoding encoding = null;
+            FileInfo precompressed = null;
+            if (compressionPolicy.isCompressible(fileInfo.getMimeType(), fileInfo.getSize())) {
+                // Shared caches must not send one representation to a client that asked for another
+                builder.addHeader(HttpHeaderFieldName.VARY, HttpHeaderFieldName.ACCEPT_ENCODING.headerName);
+                // Ranges are served from the file as is
+                if (request.getHeaderFields(HttpHeaderFieldName.RANGE) == null) {
+                    encoding = ContentEncoding.negotiate(request.getHeaderFields(HttpHeaderFieldName.ACCEPT_ENCODING));
+                }
+                if (encoding == ContentEncoding.GZIP && compressionPolicy.isPrecompressed()) {
+                    precompressed = webRootHandler.getPrecompressedFile(fileInfo);
+                }
+                if (encoding != null && precompressed == null && fileInfo.getSize() > sendFileThreshold
+                        && keepAlive && request.getHttpVersion() != HttpVersion.HTTP_1_1) {
+                    // A large file is compressed while it is sent, without chunks only closing the connection delimits it
+                    encoding = null;
+                }
+            }
+            String eTag = fileInfo.getETag(encoding);
+            builder.addHeader(HttpHeaderFieldName.ETAG, eTag)
+                    .addHeader(HttpHeaderFieldName.LAST_MODIFIED, fileInfo.getLastModified());
+            String cacheControl = cacheControlPolicy.getCacheControl(requestTarget, fileInfo.getPath().getFileName().toString());
+            if (cacheControl != null) {
+                builder.addHeader(HttpHeaderFieldName.CACHE_CONTROL, cacheControl);
+            }
+            if (isNotModified(request, eTag, fileInfo)) {
+                // A 304 response never has a body, so it needs no Content-Length
+                return builder.statusCode(HttpStatusCode.REDIRECTION_304_NOT_MODIFIED).build();
+            }
+
+            builder.addHeader(HttpHeaderFieldName.ACCEPT_RANGES, "bytes");
+            String range = request.getHeaderFields(HttpHeaderFieldName.RANGE);
+            if (range != null && isIfRangeCurrent(request, fileInfo)) {
+                // A malformed Range header field is ignored and the whole file is sent
+                List<ByteRange> ranges = ByteRange.parse(range, fileInfo.getSize());
+                if (ranges != null) {
+                    return handleRangeRequest(builder, fileInfo, ranges);
+                }
+            }
+
+            builder.statusCode(HttpStatusCode.OK)
+                    .addHeader(HttpHeaderFieldName.CONTENT_TYPE, fileInfo.getMimeType());
+            if (encoding != null) {
+                builder.addHeader(HttpHeaderFieldName.CONTENT_ENCODING, encoding.literal);
+                if (precompressed != null) {
+                    return buildFileResponse(builder, precompressed);
+                }
+                return buildCompressedResponse(builder, fileInfo, encoding);
+            }
+            return buildFileResponse(builder, fileInfo);
+        } catch (FileNotFoundException e) {
+            // Content-Length is required even without body, otherwise the client cannot find the end of a persistent response
+            return builder.statusCode(HttpStatusCode.CLIENT_ERROR_404_NOT_FOUND)
+                    .addHeader(HttpHeaderFieldName.CONTENT_LENGTH, "0")
+                    .build();
+        } catch (ReadFileException e) {
+            return builder.statusCode(HttpStatusCode.SERVER_ERROR_500_INTERNAL_SERVER_ERROR)
+                    .addHeader(HttpHeaderFieldName.CONTENT_LENGTH, "0")
+                    .build();
+        }
+    }
+
+    /**
+     * Finish the response with the content of a file as is.
+     *
+     * @param builder  response builder with the status and header fields
+     * @param fileInfo metadata of the file to send
+     * @return HTTP response with the file
+     */
+    private HttpResponse buildFileResponse(HttpResponse.Builder builder, FileInfo fileInfo)
+            throws FileNotFoundException, ReadFileException {
+        if (fileInfo.getSize() > sendFileThreshold) {
+            // Hot files may be kept mapped, the others are transferred from the disk
+            ResponseBody mappedFileBody = webRootHandler.getMappedFileBody(fileInfo);
+            ResponseBody responseBody = mappedFileBody != null
+                    ? mappedFileBody
+                    : new FileBody(fileInfo.getPath(), 0, fileInfo.getSize());
+            return builder.addHeader(HttpHeaderFieldName.CONTENT_LENGTH, String.valueOf(responseBody.getLength()))
+                    .responseBody(responseBody)
+                    .build();
+        }
+        byte[] messageBody = webRootHandler.getFileByteArrayData(fileInfo);
+        builder.addHeader(HttpHeaderFieldName.CONTENT_LENGTH, String.valueOf(messageBody.length))
+                .messageBody(messageBody);
+        return builder.build();
+    }
+
+    /**
+     * Finish the response with the content of a file compressed. Small files are compressed as a whole, usually once
+     * thanks to the file cache, larger ones while they are sent.
+     *
+     * @param builder  response builder with the status and header fields
+     * @param fileInfo metadata of the file to send
+     * @param encoding content coding
+     * @return HTTP response with the compressed file
+     */
+    private HttpResponse buildCompressedResponse(HttpResponse.Builder builder, FileInfo fileInfo, ContentEncoding encoding)
+            throws FileNotFoundException, ReadFileException {
+        int level = compressionPolicy.getLevel();
+        if (fileInfo.getSize() <= sendFileThreshold) {
+            byte[] messageBody = compressionPolicy.isCacheCompressed()
+                    ? webRootHandler.getCompressedByteArrayData(fileInfo, encoding, level)
+                    : DeflaterBody.compress(webRootHandler.getFileByteArrayData(fileInfo), encoding, level);
+            builder.addHeader(HttpHeaderFieldName.CONTENT_LENGTH, String.valueOf(messageBody.length))
+                    .messageBody(messageBody);
+            return builder.build();
+        }
+        FileChannel fileChannel;
+        try {
+            fileChannel = FileChannel.open(fileInfo.getPath(), StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException("File not found: " + fileInfo.getPath());
+        } catch (IOException e) {
+            throw new ReadFileException(e);
+        }
+        // No Content-Length, the body is sent chunked to HTTP/1.1 clients, older clients get Connection: close and
+        // the connection is closed after it (see HttpResponse#isDelimitedByClose)
+        return builder.responseBody(new DeflaterBody(fileChannel, encoding, level)).build();
+    }
+
+    /**
+     * Build the 206 response with the requested ranges, sent from the file with transferTo at their offsets. Several
+     * ranges are sent as a multipart/byteranges body.
+     *
+     * @param builder  response builder with the header fields common to every response of the file
+     * @param fileInfo metadata of the requested file
+     * @param ranges   satisfiable ranges, or none to answer 416
+     * @return HTTP response with the ranges
+     */
+    private static HttpResponse handleRangeRequest(HttpResponse.Builder builder, FileInfo fileInfo, List<ByteRange> ranges) {
+        long size = fileInfo.getSize();
+        if (ranges.isEmpty()) {
+            return builder.statusCode(HttpStatusCode.CLIENT_ERROR_416_RANGE_NOT_SATISFIABLE)
+                    .addHeader(HttpHeaderFieldName.CONTENT_RANGE, "bytes */" + size)
+                    .addHeader(HttpHeaderFieldName.CONTENT_LENGTH, "0")
+                    .build();
+        }
+        builder.statusCode(HttpStatusCode.PARTIAL_CONTENT);
+        ResponseBody responseBody;
+        if (ranges.size() == 1) {
+            ByteRange range = ranges.get(0);
+            builder.addHeader(HttpHeaderFieldName.CONTENT_TYPE, fileInfo.getMimeType())
+                    .addHeader(HttpHeaderFieldName.CONTENT_RANGE, range.toContentRange(size));
+            responseBody = new FileBody(fileInfo.getPath(), range.getFirst(), range.getLength());
+        } else {
+            String boundary = String.format("%016x", ThreadLocalRandom.current().nextLong());
+            builder.addHeader(HttpHeaderFieldName.CONTENT_TYPE, "multipart/byteranges; boundary=" + boundary);
+            List<ResponseBody> parts = new ArrayList<>(ranges.size() * 2 + 1);
+            for (ByteRange range : ranges) {
+                parts.add(asciiBody("\r\n--" + boundary + "\r\n" +
+                        "Content-Type: " + fileInfo.getMimeType() + "\r\n" +
+                        "Content-Range: " + range.toContentRange(size) + "\r\n\r\n"));
+                parts.add(new FileBody(fileInfo.getPath(), range.getFirst(), range.getLength()));
+            }
+            parts.add(asciiBody("\r\n--" + boundary + "--\r\n"));
+            responseBody = new SequenceBody(parts);
+        }
+        return builder.addHeader(HttpHeaderFieldName.CONTENT_LENGTH, String.valueOf(responseBody.getLength()))
+                .responseBody(responseBody)
+                .build();
+    }
+
+    private static ResponseBody asciiBody(String text) {
+        return new ByteBufferBody(ByteBuffer.wrap(text.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    /**
+     * Check If-Range, which only lets the Range header field apply while the file is the version the client has.
+     * Entity tags are compared strongly, so a weak one never matches.
+     *
+     * @param request  GET request with a Range header field
+     * @param fileInfo metadata of the requested file
+     * @return true if there is no If-Range or it matches the current file
+     */
+    private static boolean isIfRangeCurrent(HttpRequest request, FileInfo fileInfo) {
+        String ifRange = request.getHeaderFields(HttpHeaderFieldName.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        ifRange = ifRange.trim();
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(fileInfo.getETag());
+        }
+        long date = DateHeader.parse(ifRange);
+        return date != -1 && date / 1000 == fileInfo.getLastModifiedMillis() / 1000;
+    }
+
+    /**
+     * Check the validators the client sent against the current file. If-None-Match takes precedence, and
+     * If-Modified-Since is only evaluated without it.
+     *
+     * @param request  GET request
+     * @param eTag     entity tag of the representation that would be sent
+     * @param fileInfo metadata of the requested file
+     * @return true if the cached copy of the client is still current
+     */
+    private static boolean isNotModified(HttpRequest request, String eTag, FileInfo fileInfo) {
+        String ifNoneMatch = request.getHeaderFields(HttpHeaderFieldName.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            for (String tag : ifNoneMatch.split(",")) {
+                tag = tag.trim();
+                // GET uses the weak comparison
+                if (tag.startsWith("W/")) {
+                    tag = tag.substring(2);
+                }
+                if (tag.equals("*") || tag.equals(eTag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        String ifModifiedSince = request.getHeaderFields(HttpHeaderFieldName.IF_MODIFIED_SINCE);
+        if (ifModifiedSince != null) {
+            long since = DateHeader.parse(ifModifiedSince);
+            // HTTP dates have a precision of one second
+            return since != -1 && fileInfo.getLastModifiedMillis() / 1000 <= since / 1000;
+        }
+        return false;
+    }
+
+    /**
+     * Handle POST and PUT requests. The webroot is read-only, so the body is read to its end in constant memory to
+     * keep the connection usable, and the method is rejected.
+     *
+     * @param request   HTTP request with a body
+     * @param keepAlive Whether the connection stays open after the response
+     * @return HTTP response rejecting the method, or reporting a malformed or too large body
+     */
+    private HttpResponse handleUploadRequest(HttpRequest request, boolean keepAlive) {
+        try {
+            request.getBody().transferTo(OutputStream.nullOutputStream());
+        } catch (RequestBodyException e) {
+            return handleBadRequest(request, e.getErrorCode());
+        } catch (IOException e) {
+            return handleBadRequest(request, HttpStatusCode.CLIENT_ERROR_400_BAD_REQUEST);
+        }
+        return new HttpResponse.Builder()
+                .httpVersion(request.getHttpVersion().literal)
+                .statusCode(HttpStatusCode.CLIENT_ERROR_405_METHOD_NOT_ALLOWED)
+                .addHeader(HttpHeaderFieldName.CONNECTION, keepAlive ? "keep-alive" : "close")
+                .addHeader(HttpHeaderFieldName.ALLOW, HttpMethod.GET.name())
+                .addHeader(HttpHeaderFieldName.CONTENT_LENGTH, "0")
+                .build();
+    }
+
+    /**
+     * Build the response to a request that cannot be processed, e.g. because its body is too large. The connection
+     * is closed after it, as the rest of the request may still be unread.
+     *
+     * @param request    HTTP request
+     * @param statusCode error status
+     * @return HTTP error response
+     */
+    public HttpResponse handleBadRequest(HttpRequest request, HttpStatusCode statusCode) {
+        return new HttpResponse.Builder()
+                .httpVersion(request.getHttpVersion().literal)
+                .statusCode(statusCode)
+                .addHeader(HttpHeaderFieldName.CONNECTION, "close")
+                .addHeader(HttpHeaderFieldName.CONTENT_LENGTH, "0")
+                .build();
+    }
+
+    /**
+     * Build the server handshake response for a WebSocket upgrade request.
+     *
+     * @param request WebSocket handshake from the client
+     * @return HTTP response switching the protocol to WebSocket
+     */
+    public HttpResponse handleWebSocketUpgradeRequest(HttpRequest request) throws HttpParsingException {
+        return handleWebSocketUpgradeRequest(request, null);
+    }
+
+    /**
+     * Build the server handshake response for a WebSocket upgrade request, confirming the agreed compression.
+     *
+     * @param request           WebSocket handshake from the client
+     * @param perMessageDeflate compression agreed with the client, or null
+     * @return HTTP response switching the protocol to WebSocket
+     */
+    public HttpResponse handleWebSocketUpgradeRequest(HttpRequest request, @Nullable PerMessageDeflate perMessageDeflate)
+            throws HttpParsingException {
+        HttpResponse.Builder builder = new HttpResponse.Builder()
+                .httpVersion(request.getHttpVersion().literal)
+                .statusCode(HttpStatusCode.WEBSOCKET_UPGRADE)
+                .addHeader(HttpHeaderFieldName.UPGRADE, "websocket")
+                .addHeader(HttpHeaderFieldName.CONNECTION, "Upgrade")
+                .addHeader(HttpHeaderFieldName.SEC_WEBSOCKET_ACCEPT, request.generateSecWebsocketAcceptFieldValue());
+        if (perMessageDeflate != null) {
+            builder.addHeader(HttpHeaderFieldName.SEC_WEBSOCKET_EXTENSIONS, perMessageDeflate.getResponseHeaderValue());
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,15 @@
+package com.server.core;
+
+/**
+ * I/O model used to accept and serve connections.
+ */
+public enum IoMode {
+    /**
+     * Blocking accept, one worker per connection.
+     */
+    BLOCKING,
+    /**
+     * Non-blocking channels multiplexed over a small number of selector loops.
+     */
+    NIO
+}
@@ -0,0 +1,132 @@
+package com.server.core;
+
+import com.server.http.HttpHeaderFieldName;
+import com.server.http.HttpRequest;
+import com.server.http.HttpResponse;
+import com.server.http.HttpStatusCode;
+import com.server.http.ResponseBody;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Per-connection queue of responses to pipelined requests. Requests may be processed concurrently and complete in
+ * any order, but responses leave the queue in the order the requests arrived.
+ * <p>
+ * Not thread-safe, only the thread owning the connection adds and polls.
+ */
+public class OrderedResponseQueue {
+    private final static Logger LOGGER = LoggerFactory.getLogger(OrderedResponseQueue.class);
+    private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+
+    /**
+     * Append the pending response of the next request.
+     *
+     * @param request   HTTP request the response answers
+     * @param response  response being built for the request
+     * @param keepAlive whether the connection stays open after this response
+     */
+    public void add(HttpRequest request, CompletableFuture<HttpResponse> response, boolean keepAlive) {
+        entries.add(new Entry(request, response, keepAlive));
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Remove the oldest entry if its response is complete. Later entries are never returned before it.
+     *
+     * @return the oldest entry, or null if the queue is empty or its response is still being built
+     */
+    @Nullable
+    public Entry pollCompleted() {
+        Entry head = entries.peek();
+        if (head == null || !head.response.isDone()) {
+            return null;
+        }
+        return entries.poll();
+    }
+
+    /**
+     * Remove the oldest entry, whether its response is complete or not.
+     *
+     * @return the oldest entry, or null if the queue is empty
+     */
+    @Nullable
+    public Entry poll() {
+        return entries.poll();
+    }
+
+    /**
+     * Drop every response that was not sent, e.g. when the connection is closed. Their response bodies are closed, a
+     * response still being built as soon as it is complete.
+     */
+    public void clear() {
+        entries.forEach(entry -> entry.response.thenAccept(OrderedResponseQueue::closeBody));
+        entries.clear();
+    }
+
+    private static void closeBody(HttpResponse response) {
+        ResponseBody responseBody = response.getResponseBody();
+        if (responseBody == null) return;
+        try {
+            responseBody.close();
+        } catch (IOException e) {
+            LOGGER.warn("Failed to close response body: ", e);
+        }
+    }
+
+    /**
+     * Response of a single request and whether the connection stays open after it.
+     */
+    public static class Entry {
+        private final HttpRequest request;
+        private final CompletableFuture<HttpResponse> response;
+        private final boolean keepAlive;
+
+        private Entry(HttpRequest request, CompletableFuture<HttpResponse> response, boolean keepAlive) {
+            this.request = request;
+            this.response = response;
+            this.keepAlive = keepAlive;
+        }
+
+        /**
+         * Get the response, waiting for it if it is still being built. If the handler failed, the client gets an
+         * internal server error instead and the connection is closed after it.
+         *
+         * @return HTTP response
+         */
+        public HttpResponse getResponse() {
+            try {
+                return response.join();
+            } catch (CompletionException e) {
+                LOGGER.error("Error handling request: ", e.getCause());
+                return new HttpResponse.Builder()
+                        .httpVersion(request.getHttpVersion().literal)
+                        .statusCode(HttpStatusCode.SERVER_ERROR_500_INTERNAL_SERVER_ERROR)
+                        .addHeader(HttpHeaderFieldName.CONNECTION, "close")
+                        .addHeader(HttpHeaderFieldName.CONTENT_LENGTH, "0")
+                        .build();
+            }
+        }
+
+        /**
+         * Check if the connection stays open after the response. Only meaningful once the response is complete.
+         *
+         * @return false if the request asked to close the connection or its handler failed
+         */
+        public boolean isKeepAlive() {
+            return keepAlive && !response.isCompletedExceptionally();
+        }
+    }
+}
@@ -0,0 +1,475 @@
+package com.server.core;
+
+import com.server.core.io.FileCache;
+import com.server.core.io.MappedFileCache;
+import com.server.http.ChunkedBody;
+import com.server.ws.OutboundBacklog;
+import com.server.ws.PerMessageDeflatePolicy;
+import com.server.ws.SlowConsumerPolicy;
+import com.server.ws.WebSocketMessageAssembler;
+
+/**
+ * Holds the settings of the server.
+ */
+public class ServerConfig {
+    public static final long DEFAULT_SEND_FILE_THRESHOLD = FileCache.DEFAULT_MAX_FILE_SIZE;
+    private final int port;
+    private final String webroot;
+    private final IoMode ioMode;
+    private final int selectorThreads;
+    private final ExecutionMode executionMode;
+    private final int workerPoolSize;
+    private final int keepAliveTimeoutMillis;
+    private final int maxKeepAliveRequests;
+    private final int maxPipelinedRequests;
+    private final long maxRequestBodySize;
+    private final int requestBodyBufferSize;
+    private final int requestBodyTimeoutMillis;
+    private final long fileCacheSize;
+    private final long fileCacheMaxFileSize;
+    private final long sendFileThreshold;
+    private final long mappedFileCacheSize;
+    private final long mappedFileMaxSize;
+    private final CacheControlPolicy cacheControlPolicy;
+    private final CompressionPolicy compressionPolicy;
+    private final int chunkSize;
+    private final int maxWebSocketMessageSize;
+    private final PerMessageDeflatePolicy perMessageDeflatePolicy;
+    private final long webSocketHighWaterMark;
+    private final SlowConsumerPolicy slowConsumerPolicy;
+
+    private ServerConfig(Builder builder) {
+        this.port = builder.port;
+        this.webroot = builder.webroot;
+        this.ioMode = builder.ioMode;
+        this.selectorThreads = builder.selectorThreads;
+        this.executionMode = builder.executionMode;
+        this.workerPoolSize = builder.workerPoolSize;
+        this.keepAliveTimeoutMillis = builder.keepAliveTimeoutMillis;
+        this.maxKeepAliveRequests = builder.maxKeepAliveRequests;
+        this.maxPipelinedRequests = builder.maxPipelinedRequests;
+        this.maxRequestBodySize = builder.maxRequestBodySize;
+        this.requestBodyBufferSize = builder.requestBodyBufferSize;
+        this.requestBodyTimeoutMillis = builder.requestBodyTimeoutMillis;
+        this.fileCacheSize = builder.fileCacheSize;
+        this.fileCacheMaxFileSize = builder.fileCacheMaxFileSize;
+        this.sendFileThreshold = builder.sendFileThreshold;
+        this.mappedFileCacheSize = builder.mappedFileCacheSize;
+        this.mappedFileMaxSize = builder.mappedFileMaxSize;
+        this.cacheControlPolicy = builder.cacheControlPolicy;
+        this.compressionPolicy = builder.compressionPolicy;
+        this.chunkSize = builder.chunkSize;
+        this.maxWebSocketMessageSize = builder.maxWebSocketMessageSize;
+        this.perMessageDeflatePolicy = builder.perMessageDeflatePolicy;
+        this.webSocketHighWaterMark = builder.webSocketHighWaterMark;
+        this.slowConsumerPolicy = builder.slowConsumerPolicy;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public String getWebroot() {
+        return webroot;
+    }
+
+    public IoMode getIoMode() {
+        return ioMode;
+    }
+
+    public int getSelectorThreads() {
+        return selectorThreads;
+    }
+
+    public ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
+    public int getWorkerPoolSize() {
+        return workerPoolSize;
+    }
+
+    public int getKeepAliveTimeoutMillis() {
+        return keepAliveTimeoutMillis;
+    }
+
+    public int getMaxKeepAliveRequests() {
+        return maxKeepAliveRequests;
+    }
+
+    public int getMaxPipelinedRequests() {
+        return maxPipelinedRequests;
+    }
+
+    public long getMaxRequestBodySize() {
+        return maxRequestBodySize;
+    }
+
+    public int getRequestBodyBufferSize() {
+        return requestBodyBufferSize;
+    }
+
+    public int getRequestBodyTimeoutMillis() {
+        return requestBodyTimeoutMillis;
+    }
+
+    public long getFileCacheSize() {
+        return fileCacheSize;
+    }
+
+    public long getFileCacheMaxFileSize() {
+        return fileCacheMaxFileSize;
+    }
+
+    public long getSendFileThreshold() {
+        return sendFileThreshold;
+    }
+
+    public long getMappedFileCacheSize() {
+        return mappedFileCacheSize;
+    }
+
+    public long getMappedFileMaxSize() {
+        return mappedFileMaxSize;
+    }
+
+    public CacheControlPolicy getCacheControlPolicy() {
+        return cacheControlPolicy;
+    }
+
+    public CompressionPolicy getCompressionPolicy() {
+        return compressionPolicy;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public int getMaxWebSocketMessageSize() {
+        return maxWebSocketMessageSize;
+    }
+
+    public PerMessageDeflatePolicy getPerMessageDeflatePolicy() {
+        return perMessageDeflatePolicy;
+    }
+
+    public long getWebSocketHighWaterMark() {
+        return webSocketHighWaterMark;
+    }
+
+    public SlowConsumerPolicy getSlowConsumerPolicy() {
+        return slowConsumerPolicy;
+    }
+
+    /**
+     * Builder of a ServerConfig object.
+     */
+    public static class Builder {
+        private int port = 8080;
+        private String webroot = "webroot";
+        private IoMode ioMode = IoMode.BLOCKING;
+        private int selectorThreads = Runtime.getRuntime().availableProcessors();
+        private ExecutionMode executionMode = ExecutionMode.PLATFORM_THREAD;
+        private int workerPoolSize = 200;
+        private int keepAliveTimeoutMillis = 5000;
+        private int maxKeepAliveRequests = 100;
+        private int maxPipelinedRequests = 16;
+        private long maxRequestBodySize = 10 * 1024 * 1024;
+        private int requestBodyBufferSize = 64 * 1024;
+        private int requestBodyTimeoutMillis = 30000;
+        private long fileCacheSize = FileCache.DEFAULT_MAX_SIZE;
+        private long fileCacheMaxFileSize = FileCache.DEFAULT_MAX_FILE_SIZE;
+        private long sendFileThreshold = DEFAULT_SEND_FILE_THRESHOLD;
+        private long mappedFileCacheSize = 0;
+        private long mappedFileMaxSize = MappedFileCache.DEFAULT_MAX_FILE_SIZE;
+        private CacheControlPolicy cacheControlPolicy = new CacheControlPolicy.Builder().build();
+        private CompressionPolicy compressionPolicy = new CompressionPolicy.Builder().build();
+        private int chunkSize = ChunkedBody.DEFAULT_CHUNK_SIZE;
+        private int maxWebSocketMessageSize = WebSocketMessageAssembler.DEFAULT_MAX_MESSAGE_SIZE;
+        private PerMessageDeflatePolicy perMessageDeflatePolicy = new PerMessageDeflatePolicy.Builder().build();
+        private long webSocketHighWaterMark = OutboundBacklog.DEFAULT_HIGH_WATER_MARK;
+        private SlowConsumerPolicy slowConsumerPolicy = SlowConsumerPolicy.DISCONNECT;
+
+        public Builder port(int port) {
+            this.port = port;
+            return this;
+        }
+
+        public Builder webroot(String webroot) {
+            this.webroot = webroot;
+            return this;
+        }
+
+        public Builder ioMode(IoMode ioMode) {
+            this.ioMode = ioMode;
+            return this;
+        }
+
+        /**
+         * Set the number of selector loops used in the NIO mode. About one per core is a good default.
+         *
+         * @param selectorThreads number of selector loops
+         */
+        public Builder selectorThreads(int selectorThreads) {
+            this.selectorThreads = selectorThreads;
+            return this;
+        }
+
+        public Builder executionMode(ExecutionMode executionMode) {
+            this.executionMode = executionMode;
+            return this;
+        }
+
+        /**
+         * Set the number of threads used by {@link ExecutionMode#BOUNDED_POOL}.
+         *
+         * @param workerPoolSize number of worker threads
+         */
+        public Builder workerPoolSize(int workerPoolSize) {
+            this.workerPoolSize = workerPoolSize;
+            return this;
+        }
+
+        /**
+         * Set how long a persistent HTTP connection may stay idle between two requests before it is closed.
+         *
+         * @param keepAliveTimeoutMillis idle timeout in milliseconds
+         */
+        public Builder keepAliveTimeoutMillis(int keepAliveTimeoutMillis) {
+            this.keepAliveTimeoutMillis = keepAliveTimeoutMillis;
+            return this;
+        }
+
+        /**
+         * Set how many requests a persistent HTTP connection may serve before it is closed.
+         *
+         * @param maxKeepAliveRequests max. number of requests per connection
+         */
+        public Builder maxKeepAliveRequests(int maxKeepAliveRequests) {
+            this.maxKeepAliveRequests = maxKeepAliveRequests;
+            return this;
+        }
+
+        /**
+         * Set how many pipelined requests of a connection may be processed before their responses are written.
+         *
+         * @param maxPipelinedRequests max. number of outstanding requests per connection
+         */
+        public Builder maxPipelinedRequests(int maxPipelinedRequests) {
+            this.maxPipelinedRequests = maxPipelinedRequests;
+            return this;
+        }
+
+        /**
+         * Set the max. size of a request body. Larger bodies are rejected with 413.
+         *
+         * @param maxRequestBodySize max. body size in bytes
+         */
+        public Builder maxRequestBodySize(long maxRequestBodySize) {
+            this.maxRequestBodySize = maxRequestBodySize;
+            return this;
+        }
+
+        /**
+         * Set how many body bytes the NIO mode buffers per request before it stops reading from the connection until
+         * the handler catches up.
+         *
+         * @param requestBodyBufferSize body buffer size in bytes
+         */
+        public Builder requestBodyBufferSize(int requestBodyBufferSize) {
+            this.requestBodyBufferSize = requestBodyBufferSize;
+            return this;
+        }
+
+        /**
+         * Set how long the client may send nothing while the server waits for the rest of a request body before the
+         * connection is closed.
+         *
+         * @param requestBodyTimeoutMillis read timeout of request bodies in milliseconds
+         */
+        public Builder requestBodyTimeoutMillis(int requestBodyTimeoutMillis) {
+            this.requestBodyTimeoutMillis = requestBodyTimeoutMillis;
+            return this;
+        }
+
+        /**
+         * Set the byte budget of the static file cache. 0 disables the cache.
+         *
+         * @param fileCacheSize max. total size of the cached files in bytes
+         */
+        public Builder fileCacheSize(long fileCacheSize) {
+            this.fileCacheSize = fileCacheSize;
+            return this;
+        }
+
+        /**
+         * Set the size of the largest file kept in the static file cache. Larger files are read on every request.
+         *
+         * @param fileCacheMaxFileSize max. size of a cached file in bytes
+         */
+        public Builder fileCacheMaxFileSize(long fileCacheMaxFileSize) {
+            this.fileCacheMaxFileSize = fileCacheMaxFileSize;
+            return this;
+        }
+
+        /**
+         * Set the size above which a static file is sent from the disk with {@code FileChannel.transferTo} instead of
+         * being read into memory.
+         *
+         * @param sendFileThreshold file size in bytes
+         */
+        public Builder sendFileThreshold(long sendFileThreshold) {
+            this.sendFileThreshold = sendFileThreshold;
+            return this;
+        }
+
+        /**
+         * Set the budget of the memory-mapped file set. Files above the send file threshold that fit are kept mapped
+         * and written from the mapping. 0, the default, disables it.
+         *
+         * @param mappedFileCacheSize max. total size of the mapped files in bytes
+         */
+        public Builder mappedFileCacheSize(long mappedFileCacheSize) {
+            this.mappedFileCacheSize = mappedFileCacheSize;
+            return this;
+        }
+
+        /**
+         * Set the size of the largest file kept mapped. Larger files are transferred from the disk.
+         *
+         * @param mappedFileMaxSize max. size of a mapped file in bytes
+         */
+        public Builder mappedFileMaxSize(long mappedFileMaxSize) {
+            this.mappedFileMaxSize = mappedFileMaxSize;
+            return this;
+        }
+
+        /**
+         * Set the policy choosing the Cache-Control header field of static files. By default they have none.
+         *
+         * @param cacheControlPolicy Cache-Control policy
+         */
+        public Builder cacheControlPolicy(CacheControlPolicy cacheControlPolicy) {
+            this.cacheControlPolicy = cacheControlPolicy;
+            return this;
+        }
+
+        /**
+         * Set the policy choosing which static files are sent compressed to clients accepting it. By default text
+         * files of 1 KB and more are.
+         *
+         * @param compressionPolicy compression policy
+         */
+        public Builder compressionPolicy(CompressionPolicy compressionPolicy) {
+            this.compressionPolicy = compressionPolicy;
+            return this;
+        }
+
+        /**
+         * Set the largest chunk of a response body sent with the chunked transfer coding. Whatever the body has ready
+         * is coalesced into one chunk up to this size.
+         *
+         * @param chunkSize max. number of data bytes per chunk
+         */
+        public Builder chunkSize(int chunkSize) {
+            this.chunkSize = chunkSize;
+            return this;
+        }
+
+        /**
+         * Set the max. size of a WebSocket message reassembled from its fragments. The connection of a client sending
+         * a larger one is closed.
+         *
+         * @param maxWebSocketMessageSize max. message size in bytes
+         */
+        public Builder maxWebSocketMessageSize(int maxWebSocketMessageSize) {
+            this.maxWebSocketMessageSize = maxWebSocketMessageSize;
+            return this;
+        }
+
+        /**
+         * Set the policy agreeing on permessage-deflate compression with WebSocket clients. By default it is agreed
+         * with every client offering it, for messages of 256 bytes and more.
+         *
+         * @param perMessageDeflatePolicy WebSocket compression policy
+         */
+        public Builder perMessageDeflatePolicy(PerMessageDeflatePolicy perMessageDeflatePolicy) {
+            this.perMessageDeflatePolicy = perMessageDeflatePolicy;
+            return this;
+        }
+
+        /**
+         * Set the number of bytes queued to a WebSocket client but not written yet, from which frames published to
+         * it are handled by the slow consumer policy. A connection also stops reading its client while it is behind.
+         *
+         * @param webSocketHighWaterMark high-water mark in bytes
+         */
+        public Builder webSocketHighWaterMark(long webSocketHighWaterMark) {
+            this.webSocketHighWaterMark = webSocketHighWaterMark;
+            return this;
+        }
+
+        /**
+         * Set what happens to frames published to a WebSocket client that is behind by the high-water mark. By
+         * default the client is disconnected.
+         *
+         * @param slowConsumerPolicy slow consumer policy
+         */
+        public Builder slowConsumerPolicy(SlowConsumerPolicy slowConsumerPolicy) {
+            this.slowConsumerPolicy = slowConsumerPolicy;
+            return this;
+        }
+
+        public ServerConfig build() {
+            if (selectorThreads < 1) {
+                throw new IllegalArgumentException("selectorThreads must be positive");
+            }
+            if (workerPoolSize < 1) {
+                throw new IllegalArgumentException("workerPoolSize must be positive");
+            }
+            if (keepAliveTimeoutMillis < 1) {
+                throw new IllegalArgumentException("keepAliveTimeoutMillis must be positive");
+            }
+            if (maxKeepAliveRequests < 1) {
+                throw new IllegalArgumentException("maxKeepAliveRequests must be positive");
+            }
+            if (maxPipelinedRequests < 1) {
+                throw new IllegalArgumentException("maxPipelinedRequests must be positive");
+            }
+            if (maxRequestBodySize < 0) {
+                throw new IllegalArgumentException("maxRequestBodySize must not be negative");
+            }
+            if (requestBodyBufferSize < 1) {
+                throw new IllegalArgumentException("requestBodyBufferSize must be positive");
+            }
+            if (requestBodyTimeoutMillis < 1) {
+                throw new IllegalArgumentException("requestBodyTimeoutMillis must be positive");
+            }
+            if (fileCacheSize < 0) {
+                throw new IllegalArgumentException("fileCacheSize must not be negative");
+            }
+            if (fileCacheMaxFileSize < 0) {
+                throw new IllegalArgumentException("fileCacheMaxFileSize must not be negative");
+            }
+            if (sendFileThreshold < 0) {
+                throw new IllegalArgumentException("sendFileThreshold must not be negative");
+            }
+            if (mappedFileCacheSize < 0) {
+                throw new IllegalArgumentException("mappedFileCacheSize must not be negative");
+            }
+            if (mappedFileMaxSize < 0) {
+                throw new IllegalArgumentException("mappedFileMaxSize must not be negative");
+            }
+            if (chunkSize < 1) {
+                throw new IllegalArgumentException("chunkSize must be positive");
+            }
+            if (maxWebSocketMessageSize < 0) {
+                throw new IllegalArgumentException("maxWebSocketMessageSize must not be negative");
+            }
+            if (webSocketHighWaterMark < 1) {
+                throw new IllegalArgumentException("webSocketHighWaterMark must be positive");
+            }
+            return new ServerConfig(this);
+        }
+    }
+}
@@ -1,13 +1,23 @@
 package com.server.core;
 
+import com.server.core.io.FileCache;
+import com.server.core.io.MappedFileCache;
 import com.server.core.io.WebRootHandler;
 import com.server.core.io.WebRootNotFoundException;
+import com.server.http.DateHeader;
+import com.server.ws.WebSocketHub;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
 
 /**
  * Thread handles TCP socket connection.
@@ -16,11 +26,61 @@ public class ServerListenerThread extends Thread {
 
     private final static Logger LOGGER = LoggerFactory.getLogger(ServerListenerThread.class);
     private final ServerSocket serverSocket;
-    private final WebRootHandler webRootHandler;
+    private final ServerConfig config;
+    private final HttpRequestHandler requestHandler;
+    private final ExecutorService connectionExecutor;
+    private final ExecutorService requestExecutor;
+    private final WebSocketHub webSocketHub = new WebSocketHub();
+    private final ScheduledExecutorService pingScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "server-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     public ServerListenerThread(int port, String webroot) throws IOException, WebRootNotFoundException {
-        this.webRootHandler = new WebRootHandler(webroot);
-        this.serverSocket = new ServerSocket(port);
+        this(new ServerConfig.Builder().port(port).webroot(webroot).build());
+    }
+
+    public ServerListenerThread(ServerConfig config) throws IOException, WebRootNotFoundException {
+        this.config = config;
+        WebRootHandler webRootHandler = new WebRootHandler(config.getWebroot(),
+                new FileCache(config.getFileCacheSize(), config.getFileCacheMaxFileSize()),
+                new MappedFileCache(config.getMappedFileCacheSize(), config.getMappedFileMaxSize()));
+        webRootHandler.startWatching();
+        this.requestHandler = new HttpRequestHandler(webRootHandler, config);
+        this.connectionExecutor = config.getExecutionMode().newExecutor(config.getWorkerPoolSize());
+        // Separate from the connection executor, so pipelined requests and WebSocket writes never wait for a thread
+        // held by a connection
+        this.requestExecutor = config.getExecutionMode().newExecutor(config.getWorkerPoolSize());
+        // Opened as a channel, so accepted sockets have a channel that file bodies can be transferred to
+        this.serverSocket = ServerSocketChannel.open().bind(new InetSocketAddress(config.getPort())).socket();
+        // WebSocket pings share the scheduler with the Date header tick
+        DateHeader.scheduleRefresh(pingScheduler);
+    }
+
+    /**
+     * Get the hub of the WebSocket sessions, to publish to their topics from outside of a connection.
+     *
+     * @return WebSocket hub of the server
+     */
+    public WebSocketHub getWebSocketHub() {
+        return webSocketHub;
+    }
+
+    /**
+     * Get the port the server is listening on, e.g. the one picked for port 0.
+     *
+     * @return local port of the server socket
+     */
+    public int getLocalPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Stop accepting connections. Connections already accepted are served until they end.
+     */
+    public void close() throws IOException {
+        serverSocket.close();
     }
 
     @Override
@@ -31,18 +91,28 @@ public class ServerListenerThread extends Thread {
             while (serverSocket.isBound() && !serverSocket.isClosed()) {
                 Socket socket = serverSocket.accept();
                 LOGGER.info("Connection accepted: ", socket.getInetAddress());
-                HttpConnectionWorkerThread workerThread = new HttpConnectionWorkerThread(socket, webRootHandler);
-                workerThread.start();
+                try {
+                    connectionExecutor.execute(new HttpConnectionWorkerThread(socket, requestHandler, config, requestExecutor, pingScheduler, webSocketHub));
+                } catch (RejectedExecutionException e) {
+                    LOGGER.warn("Connection rejected: ", e);
+                    socket.close();
+                }
             }
         } catch (IOException e) {
-            e.printStackTrace();
-            LOGGER.error(e.getMessage(), e);
+            if (serverSocket.isClosed()) {
+                LOGGER.info("Server socket closed");
+            } else {
+                LOGGER.error(e.getMessage(), e);
+            }
         } finally {
             try {
                 serverSocket.close();
             } catch (IOException e) {
                 LOGGER.warn("Failed to close socket: ", e);
             }
+            connectionExecutor.shutdown();
+            requestExecutor.shutdown();
+            pingScheduler.shutdownNow();
         }
     }
 }
@@ -0,0 +1,118 @@
+package com.server.core;
+
+import com.server.util.Duck;
+import com.server.ws.Opcode;
+import com.server.ws.WebSocketFrame;
+import com.server.ws.WebSocketHub;
+import com.server.ws.WebSocketParsingException;
+import com.server.ws.WebSocketSession;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Decides how the server answers a WebSocket frame. Shared by the blocking workers and the NIO selector loops.
+ * <p>
+ * A text message is answered by the duck, unless it is one of the topic commands {@code /subscribe <topic>},
+ * {@code /unsubscribe <topic>} or {@code /publish <topic> <text>}, which go to the hub of the server. Binary messages
+ * are accepted and ignored.
+ */
+public class WebSocketFrameHandler {
+    private final static Logger LOGGER = LoggerFactory.getLogger(WebSocketFrameHandler.class);
+    private final WebSocketHub hub;
+    private final WebSocketSession session;
+
+    /**
+     * @param hub     hub shared by all connections of the server
+     * @param session connection the frames come from
+     */
+    public WebSocketFrameHandler(WebSocketHub hub, WebSocketSession session) {
+        this.hub = hub;
+        this.session = session;
+    }
+
+    /**
+     * Build a ping frame sent periodically to the client.
+     *
+     * @return ping frame
+     */
+    public WebSocketFrame createPingFrame() {
+        return new WebSocketFrame.Builder().fin(true).opcode(Opcode.PING).build();
+    }
+
+    /**
+     * Handle the WebSocket frame sent by the client and build the response based on the opcode.
+     *
+     * @param clientFrame WebSocket frame from the client
+     * @return frame to be sent back to the client, or null if nothing should be sent
+     */
+    @Nullable
+    public WebSocketFrame handleFrame(WebSocketFrame clientFrame) throws WebSocketParsingException {
+        WebSocketFrame serverFrame = null;
+        switch (clientFrame.getOpcode()) {
+            case Opcode.TEXT -> {
+                String text = clientFrame.getPayloadAsString();
+                LOGGER.info("Payload string: {}", text);
+                if (text.startsWith("/")) {
+                    serverFrame = handleTopicCommand(text);
+                }
+                if (serverFrame == null) {
+                    // Build a "duck say" payload based on the client frame payload
+                    final byte[] serverPayload = Duck.Say(clientFrame.getPayload());
+                    serverFrame = new WebSocketFrame.Builder().fin(true).opcode(Opcode.TEXT).payload(serverPayload).build();
+                }
+            }
+            case Opcode.CLOSE -> {
+                LOGGER.info("Close frame received.");
+                // Build a close response frame
+                serverFrame = new WebSocketFrame.Builder().fin(true).opcode(Opcode.CLOSE).build();
+            }
+            case Opcode.PING -> {
+                LOGGER.info("Ping frame received.");
+                // Answer with a pong carrying the same application data
+                serverFrame = new WebSocketFrame.Builder().fin(true).opcode(Opcode.PONG).payload(clientFrame.getPayload()).build();
+            }
+            case Opcode.PONG -> LOGGER.info("Pong frame received.");
+            // Reassembled by the connection, up to the max. message size, but the server has no use for them
+            case Opcode.BINARY -> LOGGER.info("Binary message of {} bytes ignored.", clientFrame.getPayload().length);
+            default -> throw new WebSocketParsingException("Unknown opcode " + clientFrame.getOpcode());
+        }
+        return serverFrame;
+    }
+
+    /**
+     * Run a topic command.
+     *
+     * @param command text message starting with a slash
+     * @return answer to the command, or null if the text is no command
+     */
+    @Nullable
+    private WebSocketFrame handleTopicCommand(String command) {
+        String[] parts = command.split(" ", 3);
+        String answer;
+        switch (parts[0]) {
+            case "/subscribe" -> {
+                if (parts.length < 2) return null;
+                hub.subscribe(session, parts[1]);
+                answer = "Subscribed to " + parts[1];
+            }
+            case "/unsubscribe" -> {
+                if (parts.length < 2) return null;
+                hub.unsubscribe(session, parts[1]);
+                answer = "Unsubscribed from " + parts[1];
+            }
+            case "/publish" -> {
+                if (parts.length < 3) return null;
+                int sent = hub.publishText(parts[1], parts[2].getBytes(StandardCharsets.UTF_8));
+                answer = "Published to " + sent + " subscribers of " + parts[1];
+            }
+            default -> {
+                return null;
+            }
+        }
+        return new WebSocketFrame.Builder().fin(true).opcode(Opcode.TEXT)
+                .payload(answer.getBytes(StandardCharsets.UTF_8)).build();
+    }
+}
@@ -0,0 +1,242 @@
+package com.server.core;
+
+import com.server.ws.OutboundBacklog;
+import com.server.ws.PerMessageDeflate;
+import com.server.ws.WebSocketFrame;
+import com.server.ws.WebSocketFrameEncoder;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Outbound queue of a blocking WebSocket connection. The reader, the ping scheduler and publishers only queue frames,
+ * so none of them waits for a slow client. The first frame queued while the connection is idle submits a drain task to
+ * the executor, which writes until the queue is empty; at most one drain runs at a time, so frames never interleave on
+ * the wire. Whatever was queued while the previous write was under way goes out with one gathering write, or one flush
+ * of the output stream if the socket has no channel.
+ */
+class WebSocketWriter {
+    private final static Logger LOGGER = LoggerFactory.getLogger(WebSocketWriter.class);
+    private static final ByteBuffer[] EMPTY_BUFFERS = new ByteBuffer[0];
+
+    private final Socket socket;
+    private final OutputStream outputStream;
+    @Nullable
+    private final SocketChannel channel;
+    // Published frames are read-only, without a socket channel they are copied into the stream by a channel over it
+    private final WritableByteChannel streamTarget;
+    @Nullable
+    private final PerMessageDeflate perMessageDeflate;
+    private final OutboundBacklog backlog;
+    private final Executor executor;
+    // Guarded by this
+    private final WebSocketFrameEncoder frameEncoder = new WebSocketFrameEncoder();
+    private final List<ByteBuffer> encodedBuffers = new ArrayList<>();
+    private final ArrayDeque<ByteBuffer> queue = new ArrayDeque<>();
+    private boolean shutdown = false;
+    private boolean draining = false;
+    // Only used by the drain task
+    private final List<ByteBuffer> gathered = new ArrayList<>();
+
+    /**
+     * @param socket            WebSocket connection
+     * @param outputStream      buffered output stream of the socket, used if it has no channel
+     * @param perMessageDeflate compression agreed in the handshake, or null
+     * @param backlog           backlog of the connection
+     * @param executor          executor the drain tasks are submitted to
+     */
+    WebSocketWriter(Socket socket, OutputStream outputStream, @Nullable PerMessageDeflate perMessageDeflate,
+                    OutboundBacklog backlog, Executor executor) {
+        this.socket = socket;
+        this.outputStream = outputStream;
+        this.channel = socket.getChannel();
+        this.streamTarget = Channels.newChannel(outputStream);
+        this.perMessageDeflate = perMessageDeflate;
+        this.backlog = backlog;
+        this.executor = executor;
+    }
+
+    /**
+     * Queue a frame of the connection itself, compressed if it qualifies. It is queued whatever the backlog.
+     *
+     * @param frame frame to send
+     * @return false if the writer is already shut down
+     */
+    boolean queueFrame(WebSocketFrame frame) {
+        synchronized (this) {
+            if (shutdown) return false;
+            // Compressed in the order the frames are sent, the context of the client follows it
+            if (perMessageDeflate != null) {
+                frame = perMessageDeflate.compress(frame);
+            }
+            frameEncoder.encode(frame, encodedBuffers);
+            long length = 0;
+            for (ByteBuffer buffer : encodedBuffers) {
+                queue.add(buffer);
+                length += buffer.remaining();
+            }
+            encodedBuffers.clear();
+            backlog.add(length);
+            if (!startDrain()) return true;
+        }
+        submitDrain();
+        return true;
+    }
+
+    /**
+     * Queue a frame sent from another thread, applying the slow consumer policy of the backlog.
+     *
+     * @param frame whole encoded frame in read mode
+     * @return false if the frame was dropped
+     * @throws IOException if the client is too slow and should be disconnected
+     */
+    boolean queueEncoded(ByteBuffer frame) throws IOException {
+        // Admitted before taking the lock, a publisher may wait for the client here
+        if (!backlog.admit(frame.remaining(), true)) return false;
+        synchronized (this) {
+            if (shutdown) return false;
+            queue.add(frame);
+            if (!startDrain()) return true;
+        }
+        submitDrain();
+        return true;
+    }
+
+    /**
+     * Stop accepting frames. Frames already queued are still written.
+     */
+    void shutdown() {
+        synchronized (this) {
+            shutdown = true;
+        }
+        backlog.close();
+    }
+
+    /**
+     * Wait until the queued frames are written or writing them failed.
+     *
+     * @param timeoutMillis max. time to wait
+     */
+    synchronized void awaitDrained(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        long remaining = timeoutMillis;
+        while (draining && remaining > 0) {
+            wait(remaining);
+            remaining = deadline - System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Claim the drain if none is running.
+     *
+     * @return true if the caller has to submit the drain task
+     */
+    private boolean startDrain() {
+        if (draining) return false;
+        draining = true;
+        return true;
+    }
+
+    private void submitDrain() {
+        try {
+            executor.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            fail(e.toString());
+        }
+    }
+
+    /**
+     * Write the queued buffers until the queue is empty.
+     */
+    private void drain() {
+        try {
+            while (takeQueued()) {
+                long written = write();
+                gathered.clear();
+                backlog.release(written);
+            }
+        } catch (IOException e) {
+            gathered.clear();
+            fail(e.toString());
+        }
+    }
+
+    /**
+     * Move all queued buffers to the gathered list, or end the drain if there are none.
+     *
+     * @return false if the queue is empty and the drain ended
+     */
+    private synchronized boolean takeQueued() {
+        if (queue.isEmpty()) {
+            // No header encoded so far is waiting to be written any more
+            frameEncoder.reset();
+            draining = false;
+            notifyAll();
+            return false;
+        }
+        gathered.addAll(queue);
+        queue.clear();
+        return true;
+    }
+
+    /**
+     * Drop the queue and close the socket, the reader fails and ends the worker.
+     *
+     * @param reason why nothing more can be written
+     */
+    private void fail(String reason) {
+        LOGGER.info("Failed to write to WebSocket client: {}", reason);
+        synchronized (this) {
+            shutdown = true;
+            queue.clear();
+            draining = false;
+            notifyAll();
+        }
+        backlog.close();
+        try {
+            socket.close();
+        } catch (IOException ex) {
+            LOGGER.warn("Failed to close socket: ", ex);
+        }
+    }
+
+    /**
+     * Write the gathered buffers completely.
+     *
+     * @return number of bytes written
+     */
+    private long write() throws IOException {
+        long written = 0;
+        if (channel != null) {
+            ByteBuffer[] buffers = gathered.toArray(EMPTY_BUFFERS);
+            int offset = 0;
+            while (offset < buffers.length) {
+                written += channel.write(buffers, offset, buffers.length - offset);
+                while (offset < buffers.length && !buffers[offset].hasRemaining()) {
+                    offset++;
+                }
+            }
+        } else {
+            for (ByteBuffer buffer : gathered) {
+                while (buffer.hasRemaining()) {
+                    written += streamTarget.write(buffer);
+                }
+            }
+            outputStream.flush();
+        }
+        return written;
+    }
+}
@@ -1,53 +1,128 @@
 package com.server.core;
 
-import com.server.util.Duck;
 import com.server.ws.Opcode;
+import com.server.ws.OutboundBacklog;
+import com.server.ws.PerMessageDeflate;
 import com.server.ws.WebSocketFrame;
+import com.server.ws.WebSocketHub;
+import com.server.ws.WebSocketMessageAssembler;
 import com.server.ws.WebSocketParser;
 import com.server.ws.WebSocketParsingException;
+import com.server.ws.WebSocketSession;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.net.Socket;
-import java.util.concurrent.Executors;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 /**
- * Thread handles WebSocket messages.
+ * Worker handles WebSocket messages. Runs on the thread of the connection that completed the handshake, the frames of
+ * the connection are written by drain tasks on the request executor, see {@link WebSocketWriter}. The worker stops
+ * reading while the client is behind by the high-water mark.
  */
-public class WebsocketWorkerThread extends Thread {
+public class WebsocketWorkerThread implements Runnable, WebSocketSession {
     private final static Logger LOGGER = LoggerFactory.getLogger(WebsocketWorkerThread.class);
+    private static final int OUTPUT_BUFFER_SIZE = 8 * 1024;
+    private static final int PAYLOAD_BUFFER_SIZE = 64 * 1024;
+    // How long the frames still queued at the end, like the close frame, may take to be written
+    private static final long WRITER_DRAIN_TIMEOUT_MILLIS = 5000;
     private final Socket socket;
     private final WebSocketParser parser = new WebSocketParser();
-    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    private final int maxMessageSize;
+    // Created by run(), the handler keeps a reference to this session
+    private WebSocketFrameHandler frameHandler;
+    private WebSocketMessageAssembler messageAssembler;
+    @Nullable
+    private final PerMessageDeflate perMessageDeflate;
+    private final byte[] payloadBuffer = new byte[PAYLOAD_BUFFER_SIZE];
+    private final ScheduledExecutorService pingScheduler;
+    private final WebSocketHub webSocketHub;
+    private final OutboundBacklog backlog;
+    private final WebSocketWriter writer;
+    private ScheduledFuture<?> pingTask;
     InputStream inputStream;
     OutputStream outputStream;
 
-    public WebsocketWorkerThread(Socket socket) throws IOException {
+    public WebsocketWorkerThread(Socket socket, ServerConfig config, Executor writeExecutor,
+                                 ScheduledExecutorService pingScheduler, WebSocketHub webSocketHub) throws IOException {
+        this(socket, socket.getInputStream(), config, null, writeExecutor, pingScheduler, webSocketHub);
+    }
+
+    /**
+     * Create a worker reading frames from the provided stream, e.g. one that first replays bytes the HTTP worker read
+     * past the handshake.
+     *
+     * @param socket            WebSocket connection
+     * @param inputStream       stream of the client frames
+     * @param config            server settings
+     * @param perMessageDeflate compression agreed in the handshake, or null
+     * @param writeExecutor     executor running the tasks that write the queued frames
+     * @param pingScheduler     scheduler shared by all connections to send pings
+     * @param webSocketHub      hub shared by all connections to publish to topics
+     */
+    public WebsocketWorkerThread(Socket socket, InputStream inputStream, ServerConfig config,
+                                 @Nullable PerMessageDeflate perMessageDeflate, Executor writeExecutor,
+                                 ScheduledExecutorService pingScheduler, WebSocketHub webSocketHub) throws IOException {
         this.socket = socket;
-        this.inputStream = socket.getInputStream();
-        this.outputStream = socket.getOutputStream();
+        this.webSocketHub = webSocketHub;
+        this.maxMessageSize = config.getMaxWebSocketMessageSize();
+        this.perMessageDeflate = perMessageDeflate;
+        this.pingScheduler = pingScheduler;
+        this.inputStream = inputStream;
+        this.outputStream = new BufferedOutputStream(socket.getOutputStream(), OUTPUT_BUFFER_SIZE);
+        this.backlog = new OutboundBacklog(config.getWebSocketHighWaterMark(), config.getSlowConsumerPolicy());
+        this.writer = new WebSocketWriter(socket, outputStream, perMessageDeflate, backlog, writeExecutor);
     }
 
     @Override
     public void run() {
+        frameHandler = new WebSocketFrameHandler(webSocketHub, this);
+        // The frame handler takes whole messages
+        messageAssembler = new WebSocketMessageAssembler(maxMessageSize, null, perMessageDeflate);
         try {
             LOGGER.info("WebSocket worker thread started.");
+            webSocketHub.register(this);
             sendPing();
             while (!Thread.currentThread().isInterrupted()) {
-                WebSocketFrame clientFrame = parser.parseWebsocketFrame(inputStream);
-                handleFrame(clientFrame);
-                if (clientFrame.getOpcode() == Opcode.CLOSE) break;
+                // A client that does not read its answers is not read either
+                backlog.awaitBelowHighWaterMark();
+                WebSocketFrame message = readFrame();
+                if (message != null) {
+                    handleFrame(message);
+                    if (message.getOpcode() == Opcode.CLOSE) break;
+                }
             }
+        } catch (EOFException e) {
+            LOGGER.info("WebSocket connection closed by the client.");
         } catch (IOException e) {
             LOGGER.error("Error in WebSocket worker thread: ", e);
         } catch (WebSocketParsingException e) {
             LOGGER.error("WebSocket parsing error: ", e);
         } finally {
+            webSocketHub.unregister(this);
+            if (pingTask != null) {
+                pingTask.cancel(false);
+            }
+            writer.shutdown();
+            try {
+                writer.awaitDrained(WRITER_DRAIN_TIMEOUT_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (perMessageDeflate != null) {
+                perMessageDeflate.close();
+            }
             try {
                 socket.close();
             } catch (IOException e) {
@@ -57,27 +132,65 @@ public class WebsocketWorkerThread extends Thread {
     }
 
     /**
-     * Send WebSocket frame and flush the output stream.
+     * Read the next frame, passing its payload on in parts of the payload buffer size so that no frame is ever held
+     * as a whole.
      *
-     * @param frame frame to be sent
+     * @return control frame or complete message to handle, or null if the frame only continued a message
      */
-    private void sendFrame(WebSocketFrame frame) throws IOException {
-        outputStream.write(frame.generateFrameBytes());
-        outputStream.flush();
+    @Nullable
+    private WebSocketFrame readFrame() throws WebSocketParsingException, IOException {
+        messageAssembler.beginFrame(parser.parseFrameHeader(inputStream));
+        WebSocketFrame message;
+        do {
+            int length = (int) Math.min(payloadBuffer.length, messageAssembler.getFrameRemaining());
+            int read = inputStream.read(payloadBuffer, 0, length);
+            if (read == -1) {
+                throw new WebSocketParsingException("Unexpected end of stream");
+            }
+            // Fragments are collected until their message is complete
+            message = messageAssembler.addPayload(ByteBuffer.wrap(payloadBuffer, 0, read));
+        } while (messageAssembler.isInFrame());
+        return message;
     }
 
     /**
-     * Set the scheduler to send a ping frame to the client every 5 sec.
+     * Queue a frame published to the hub for the writer, applying the slow consumer policy.
+     *
+     * @param frame whole encoded frame in read mode
      */
-    private void sendPing() {
-        executor.scheduleAtFixedRate(() -> {
-            WebSocketFrame pingFrame = new WebSocketFrame.Builder().fin(true).opcode(Opcode.PING).build();
+    @Override
+    public void sendEncoded(ByteBuffer frame) {
+        try {
+            if (!writer.queueEncoded(frame)) {
+                LOGGER.debug("Published frame dropped.");
+            }
+        } catch (InterruptedIOException e) {
+            LOGGER.debug("Published frame dropped: {}", e.getMessage());
+        } catch (IOException e) {
+            LOGGER.info("Disconnecting slow WebSocket client: {}", e.getMessage());
+            writer.shutdown();
             try {
-                sendFrame(pingFrame);
-            } catch (IOException e) {
-                throw new RuntimeException(e);
+                // The reader fails and ends the worker
+                socket.close();
+            } catch (IOException ex) {
+                LOGGER.warn("Failed to close socket: ", ex);
+            }
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !socket.isClosed();
+    }
+
+    /**
+     * Set the scheduler to send a ping frame to the client every 5 sec. The scheduler is shared by all connections.
+     */
+    private void sendPing() {
+        pingTask = pingScheduler.scheduleAtFixedRate(() -> {
+            if (writer.queueFrame(frameHandler.createPingFrame())) {
+                LOGGER.info("Ping frame queued.");
             }
-            LOGGER.info("Ping frame sent.");
         }, 0, 5, TimeUnit.SECONDS);
     }
 
@@ -87,25 +200,9 @@ public class WebsocketWorkerThread extends Thread {
      * @param clientFrame WebSocket frame from the client
      */
     private void handleFrame(WebSocketFrame clientFrame) throws WebSocketParsingException, IOException {
-        WebSocketFrame serverFrame = null;
-        switch (clientFrame.getOpcode()) {
-            case Opcode.TEXT -> {
-                LOGGER.info("Payload string: {}", clientFrame.getPayloadAsString());
-                // Build a "duck say" payload based on the client frame payload
-                final byte[] serverPayload = Duck.Say(clientFrame.getPayload());
-                serverFrame = new WebSocketFrame.Builder().fin(true).opcode(Opcode.TEXT).payload(serverPayload).build();
-            }
-            case Opcode.CLOSE -> {
-                LOGGER.info("Close frame received.");
-                // Build a close response frame
-                serverFrame = new WebSocketFrame.Builder().fin(true).opcode(Opcode.CLOSE).build();
-            }
-            case Opcode.PONG -> LOGGER.info("Pong frame received.");
-            default -> throw new WebSocketParsingException("Unknown opcode " + clientFrame.getOpcode());
-        }
-
+        WebSocketFrame serverFrame = frameHandler.handleFrame(clientFrame);
         if (serverFrame != null) {
-            sendFrame(serverFrame);
+            writer.queueFrame(serverFrame);
         }
     }
 }
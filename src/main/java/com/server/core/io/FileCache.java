@@ -0,0 +1,222 @@
+package com.server.core.io;
+
+import com.server.http.ContentEncoding;
+import com.server.http.DeflaterBody;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Size-bounded cache of file contents, shared by every connection.
+ * <p>
+ * Files up to the per-file threshold are kept until the total size exceeds the budget, then the least recently used
+ * ones are evicted down to 7/8 of the budget, so the next misses do not have to evict again. Every lookup compares the
+ * modification time, size and file key of the file with the cached ones, so a changed or replaced file is read again.
+ * <p>
+ * A hit takes no lock: the entries are kept in a concurrent map, and recency is approximate. A clock ticks on every
+ * insertion and a hit stamps its entry with the current tick, so entries hit between the same two insertions count as
+ * used at the same time. Only insertions and evictions take the lock. Files are read outside of it, two threads
+ * missing the same file at once both read it.
+ * <p>
+ * Compressed variants of a file are cached next to its content under the same budget and validation, so a file is
+ * compressed once per version and coding.
+ */
+public class FileCache {
+    public static final long DEFAULT_MAX_SIZE = 64 * 1024 * 1024;
+    public static final long DEFAULT_MAX_FILE_SIZE = 1024 * 1024;
+
+    private final long maxSize;
+    private final long maxFileSize;
+    private final ConcurrentHashMap<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong clock = new AtomicLong();
+    // Guarded by this
+    private long size;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public FileCache() {
+        this(DEFAULT_MAX_SIZE, DEFAULT_MAX_FILE_SIZE);
+    }
+
+    /**
+     * @param maxSize     max. total size of the cached files in bytes, 0 disables the cache
+     * @param maxFileSize max. size of a single cached file in bytes, larger files are always read from the disk
+     */
+    public FileCache(long maxSize, long maxFileSize) {
+        this.maxSize = maxSize;
+        this.maxFileSize = Math.min(maxFileSize, maxSize);
+    }
+
+    /**
+     * Get the content of the file, from the cache if the cached copy is still current.
+     *
+     * @param path path to the file
+     * @return content of the file, shared with other callers and must not be modified
+     */
+    public byte[] get(Path path) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        return get(path, attributes.size(), attributes.lastModifiedTime().toMillis(), attributes.fileKey());
+    }
+
+    /**
+     * Get the content of an indexed file, validated against its metadata instead of the file system.
+     *
+     * @param fileInfo metadata of the file
+     * @return content of the file, shared with other callers and must not be modified
+     */
+    public byte[] get(FileInfo fileInfo) throws IOException {
+        return get(fileInfo.getPath(), fileInfo.getSize(), fileInfo.getLastModifiedMillis(), fileInfo.getFileKey());
+    }
+
+    /**
+     * Get the content of an indexed file compressed with a content coding, compressing it only if the cache has no
+     * current copy.
+     *
+     * @param fileInfo metadata of the file
+     * @param encoding content coding
+     * @param level    compression level from 0 to 9
+     * @return compressed content, shared with other callers and must not be modified
+     */
+    public byte[] getCompressed(FileInfo fileInfo, ContentEncoding encoding, int level) throws IOException {
+        Key key = new Key(fileInfo.getPath(), encoding);
+        byte[] compressed = getCached(key, fileInfo.getSize(), fileInfo.getLastModifiedMillis(), fileInfo.getFileKey());
+        if (compressed != null) {
+            return compressed;
+        }
+        byte[] data = get(fileInfo);
+        compressed = DeflaterBody.compress(data, encoding, level);
+        if (data.length == fileInfo.getSize() && data.length <= maxFileSize) {
+            put(key, new Entry(compressed, fileInfo.getLastModifiedMillis(), fileInfo.getSize(), fileInfo.getFileKey()));
+        }
+        return compressed;
+    }
+
+    private byte[] get(Path path, long size, long lastModifiedMillis, Object fileKey) throws IOException {
+        Key key = new Key(path, null);
+        byte[] data = getCached(key, size, lastModifiedMillis, fileKey);
+        if (data != null) {
+            return data;
+        }
+        data = Files.readAllBytes(path);
+        // A file that changed while it was read has a newer mtime, so the entry is replaced on the next lookup
+        if (data.length == size && data.length <= maxFileSize) {
+            put(key, new Entry(data, lastModifiedMillis, size, fileKey));
+        }
+        return data;
+    }
+
+    @Nullable
+    private byte[] getCached(Key key, long size, long lastModifiedMillis, Object fileKey) {
+        // Files that are never cached are neither hits nor misses
+        if (size > maxFileSize) return null;
+        Entry entry = entries.get(key);
+        if (entry != null && entry.isCurrent(size, lastModifiedMillis, fileKey)) {
+            entry.touch(clock.get());
+            hits.increment();
+            return entry.data;
+        }
+        misses.increment();
+        return null;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Get the total size of the cached files.
+     *
+     * @return size in bytes
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    private synchronized void put(Key key, Entry entry) {
+        entry.touch(clock.getAndIncrement());
+        Entry previous = entries.put(key, entry);
+        if (previous != null) {
+            size -= previous.data.length;
+        }
+        size += entry.data.length;
+        if (size > maxSize) {
+            evict(maxSize - maxSize / 8);
+        }
+    }
+
+    /**
+     * Evict the least recently used entries until the cache fits the target size.
+     *
+     * @param targetSize total size to shrink to in bytes
+     */
+    private void evict(long targetSize) {
+        // Hits keep stamping entries meanwhile, so the stamps are read once before sorting
+        List<Candidate> candidates = new ArrayList<>(entries.size());
+        entries.forEach((key, entry) -> candidates.add(new Candidate(key, entry, entry.lastAccess)));
+        candidates.sort(Comparator.comparingLong(Candidate::lastAccess));
+        for (Candidate candidate : candidates) {
+            if (size <= targetSize) return;
+            if (entries.remove(candidate.key, candidate.entry)) {
+                size -= candidate.entry.data.length;
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * Cache key of a file, or of one of its compressed variants.
+     */
+    private record Key(Path path, @Nullable ContentEncoding encoding) {
+    }
+
+    private record Candidate(Key key, Entry entry, long lastAccess) {
+    }
+
+    private static class Entry {
+        private final byte[] data;
+        private final long lastModifiedMillis;
+        private final long size;
+        private final Object fileKey;
+        // Tick of the clock when the entry was last used, written by hits without a lock
+        private volatile long lastAccess;
+
+        private Entry(byte[] data, long lastModifiedMillis, long size, Object fileKey) {
+            this.data = data;
+            this.lastModifiedMillis = lastModifiedMillis;
+            this.size = size;
+            this.fileKey = fileKey;
+        }
+
+        boolean isCurrent(long size, long lastModifiedMillis, Object fileKey) {
+            return this.lastModifiedMillis == lastModifiedMillis
+                    && this.size == size
+                    && Objects.equals(this.fileKey, fileKey);
+        }
+
+        void touch(long tick) {
+            // Hot entries are only written once per tick
+            if (lastAccess != tick) {
+                lastAccess = tick;
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.server.core.io;
+
+import com.server.http.ContentEncoding;
+import com.server.http.DateHeader;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.file.Path;
+
+/**
+ * Metadata of a file in the webroot, with the validators of its HTTP responses computed once per version of the file.
+ */
+public class FileInfo {
+    private final Path path;
+    private final long size;
+    private final long lastModifiedMillis;
+    private final Object fileKey;
+    private final String mimeType;
+    private final String eTag;
+    // By ordinal of the content coding, a compressed representation needs its own strong entity tag
+    private final String[] encodedETags;
+    private final String lastModified;
+
+    /**
+     * @param path               path to the file
+     * @param size               size of the file in bytes
+     * @param lastModifiedMillis modification time in milliseconds since the epoch
+     * @param fileKey            key identifying the file, or null if the file system has none
+     * @param mimeType           MIME type of the file
+     */
+    public FileInfo(Path path, long size, long lastModifiedMillis, Object fileKey, String mimeType) {
+        this.path = path;
+        this.size = size;
+        this.lastModifiedMillis = lastModifiedMillis;
+        this.fileKey = fileKey;
+        this.mimeType = mimeType;
+        // Same form as nginx, strong because the content of a size and mtime is not expected to change
+        this.eTag = "\"" + Long.toHexString(lastModifiedMillis / 1000) + "-" + Long.toHexString(size) + "\"";
+        this.lastModified = DateHeader.format(lastModifiedMillis);
+        ContentEncoding[] encodings = ContentEncoding.values();
+        this.encodedETags = new String[encodings.length];
+        for (ContentEncoding encoding : encodings) {
+            encodedETags[encoding.ordinal()] = eTag.substring(0, eTag.length() - 1) + "-" + encoding.literal + "\"";
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getLastModifiedMillis() {
+        return lastModifiedMillis;
+    }
+
+    public Object getFileKey() {
+        return fileKey;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    /**
+     * Get the entity tag of the file.
+     *
+     * @return quoted strong entity tag
+     */
+    public String getETag() {
+        return eTag;
+    }
+
+    /**
+     * Get the entity tag of a representation of the file.
+     *
+     * @param encoding content coding of the representation, or null for the file as is
+     * @return quoted strong entity tag
+     */
+    public String getETag(@Nullable ContentEncoding encoding) {
+        return encoding == null ? eTag : encodedETags[encoding.ordinal()];
+    }
+
+    /**
+     * Get the modification time as an HTTP date.
+     *
+     * @return value of the Last-Modified header field
+     */
+    public String getLastModified() {
+        return lastModified;
+    }
+}
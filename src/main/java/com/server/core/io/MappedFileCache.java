@@ -0,0 +1,280 @@
+package com.server.core.io;
+
+import com.server.http.ResponseBody;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Size-bounded set of files kept mapped read-only, shared by every connection. Responses are written straight from
+ * the mapping, which shares the OS page cache, so serving a hot file copies nothing into the heap and needs no open
+ * or read per request.
+ * <p>
+ * Files are validated by modification time, size and file key like in {@link FileCache}. A changed or evicted
+ * mapping is unmapped as soon as the last response still sending it is closed; a response that is dropped without
+ * being closed leaves its mapping to the garbage collector.
+ */
+public class MappedFileCache {
+    private final static Logger LOGGER = LoggerFactory.getLogger(MappedFileCache.class);
+    public static final long DEFAULT_MAX_FILE_SIZE = 64 * 1024 * 1024;
+    @Nullable
+    private static final MethodHandle INVOKE_CLEANER = findInvokeCleaner();
+
+    private final long maxSize;
+    private final long maxFileSize;
+    // Access-ordered, the eldest entry is the least recently used one
+    private final LinkedHashMap<Path, MappedFile> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long size;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxSize     max. total size of the mapped files in bytes, 0 disables the mapping
+     * @param maxFileSize max. size of a single mapped file in bytes
+     */
+    public MappedFileCache(long maxSize, long maxFileSize) {
+        this.maxSize = maxSize;
+        this.maxFileSize = Math.min(maxFileSize, maxSize);
+    }
+
+    /**
+     * Get a body that sends the file from its mapping, mapping it first if it is not yet or has changed.
+     *
+     * @param path path to the file
+     * @return body to send and close, or null if the file is empty or too large to map
+     */
+    @Nullable
+    public ResponseBody get(Path path) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        return get(path, attributes.size(), attributes.lastModifiedTime().toMillis(), attributes.fileKey());
+    }
+
+    /**
+     * Get a body that sends an indexed file from its mapping, validated against its metadata instead of the file
+     * system.
+     *
+     * @param fileInfo metadata of the file
+     * @return body to send and close, or null if the file is empty or too large to map
+     */
+    @Nullable
+    public ResponseBody get(FileInfo fileInfo) throws IOException {
+        return get(fileInfo.getPath(), fileInfo.getSize(), fileInfo.getLastModifiedMillis(), fileInfo.getFileKey());
+    }
+
+    @Nullable
+    private ResponseBody get(Path path, long size, long lastModifiedMillis, Object fileKey) throws IOException {
+        if (size == 0 || size > maxFileSize) {
+            return null;
+        }
+        synchronized (this) {
+            MappedFile mappedFile = entries.get(path);
+            if (mappedFile != null && mappedFile.isCurrent(size, lastModifiedMillis, fileKey)) {
+                hits.increment();
+                return mappedFile.newBody();
+            }
+        }
+        misses.increment();
+        MappedByteBuffer buffer;
+        try (FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // Mapping beyond the end of a file that shrank meanwhile would fault on access
+            if (fileChannel.size() != size) {
+                return null;
+            }
+            buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        MappedFile mappedFile = new MappedFile(buffer, lastModifiedMillis, size, fileKey);
+        synchronized (this) {
+            ResponseBody body = mappedFile.newBody();
+            put(path, mappedFile);
+            return body;
+        }
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Drop the mapping of a file that changed or was deleted, so it does not keep its mapping and budget share until
+     * it is requested again. Responses still sending it keep the mapping until they are closed.
+     *
+     * @param path path to the file, as passed to {@link #get}
+     */
+    public synchronized void invalidate(Path path) {
+        MappedFile mappedFile = entries.remove(path);
+        if (mappedFile != null) {
+            size -= mappedFile.buffer.capacity();
+            release(mappedFile);
+        }
+    }
+
+    /**
+     * Get the total size of the mapped files in the set.
+     *
+     * @return size in bytes
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    private synchronized void put(Path path, MappedFile mappedFile) {
+        MappedFile previous = entries.put(path, mappedFile);
+        if (previous != null) {
+            size -= previous.buffer.capacity();
+            release(previous);
+        }
+        size += mappedFile.buffer.capacity();
+        Iterator<Map.Entry<Path, MappedFile>> eldest = entries.entrySet().iterator();
+        while (size > maxSize) {
+            MappedFile evicted = eldest.next().getValue();
+            eldest.remove();
+            size -= evicted.buffer.capacity();
+            release(evicted);
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Drop a reference to the mapping, and unmap it once the set and every response let go of it.
+     *
+     * @param mappedFile mapped file
+     */
+    private synchronized void release(MappedFile mappedFile) {
+        if (--mappedFile.references == 0) {
+            unmap(mappedFile.buffer);
+        }
+    }
+
+    private static void unmap(MappedByteBuffer buffer) {
+        if (INVOKE_CLEANER == null) return;
+        try {
+            INVOKE_CLEANER.invoke(buffer);
+        } catch (Throwable e) {
+            LOGGER.warn("Failed to unmap file: ", e);
+        }
+    }
+
+    /**
+     * Look up {@code Unsafe.invokeCleaner}, the only way to unmap a buffer before it is garbage collected. The
+     * memory segments of the FFM API would do it safely, but they are still a preview in Java 21.
+     *
+     * @return bound method handle, or null if the JDK does not provide it
+     */
+    @Nullable
+    private static MethodHandle findInvokeCleaner() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(theUnsafe.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOGGER.warn("Mapped files are only unmapped by the garbage collector: ", e);
+            return null;
+        }
+    }
+
+    /**
+     * A mapping with the attributes of the file it was made from. Referenced by the set while it is cached, and by
+     * every body sending it.
+     */
+    private final class MappedFile {
+        private final MappedByteBuffer buffer;
+        private final long lastModifiedMillis;
+        private final long fileSize;
+        private final Object fileKey;
+        // Guarded by the cache
+        private int references = 1;
+
+        MappedFile(MappedByteBuffer buffer, long lastModifiedMillis, long fileSize, Object fileKey) {
+            this.buffer = buffer;
+            this.lastModifiedMillis = lastModifiedMillis;
+            this.fileSize = fileSize;
+            this.fileKey = fileKey;
+        }
+
+        boolean isCurrent(long size, long lastModifiedMillis, Object fileKey) {
+            return this.lastModifiedMillis == lastModifiedMillis
+                    && this.fileSize == size
+                    && Objects.equals(this.fileKey, fileKey);
+        }
+
+        /**
+         * Create a body over the mapping. Only called while the set still holds its reference.
+         *
+         * @return body that releases the mapping when closed
+         */
+        ResponseBody newBody() {
+            references++;
+            return new MappedFileBody(this, buffer.duplicate());
+        }
+    }
+
+    /**
+     * Body written straight from the mapping, with its own position.
+     */
+    private final class MappedFileBody implements ResponseBody {
+        private final MappedFile mappedFile;
+        private final ByteBuffer content;
+        private boolean closed = false;
+
+        MappedFileBody(MappedFile mappedFile, ByteBuffer content) {
+            this.mappedFile = mappedFile;
+            this.content = content;
+        }
+
+        @Override
+        public long getLength() {
+            return content.capacity();
+        }
+
+        @Override
+        public boolean hasRemaining() {
+            return content.hasRemaining();
+        }
+
+        @Override
+        public long transferTo(WritableByteChannel target) throws IOException {
+            if (closed) {
+                throw new IOException("Body already closed");
+            }
+            return target.write(content);
+        }
+
+        @Override
+        public void close() {
+            if (closed) return;
+            closed = true;
+            release(mappedFile);
+        }
+    }
+}
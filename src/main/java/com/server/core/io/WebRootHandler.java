@@ -1,22 +1,52 @@
 package com.server.core.io;
 
+import com.server.http.ContentEncoding;
+import com.server.http.ResponseBody;
+import org.jetbrains.annotations.Nullable;
+
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.net.URLConnection;
+import java.nio.file.NoSuchFileException;
 
 /**
- * Handles file operations within a specified web root directory for a web server.
+ * Handles file operations within a specified web root directory for a web server. Paths are resolved through an
+ * in-memory {@link WebRootIndex} of the webroot.
  */
 public class WebRootHandler {
-    private final File webRoot;
+    private final FileCache fileCache;
+    private final MappedFileCache mappedFileCache;
+    private final WebRootIndex index;
 
     public WebRootHandler(String webRootPath) throws WebRootNotFoundException {
-        webRoot = new File(webRootPath);
+        this(webRootPath, new FileCache());
+    }
+
+    public WebRootHandler(String webRootPath, FileCache fileCache) throws WebRootNotFoundException {
+        this(webRootPath, fileCache, new MappedFileCache(0, 0));
+    }
+
+    public WebRootHandler(String webRootPath, FileCache fileCache, MappedFileCache mappedFileCache)
+            throws WebRootNotFoundException {
+        this.fileCache = fileCache;
+        this.mappedFileCache = mappedFileCache;
+        File webRoot = new File(webRootPath);
         if (!webRoot.exists() || !webRoot.isDirectory()) {
             throw new WebRootNotFoundException("Webroot provided does not exist or is not a folder");
         }
+        try {
+            // A changed or deleted file is unmapped right away instead of when it is requested again
+            index = new WebRootIndex(webRoot.toPath(), mappedFileCache::invalidate);
+        } catch (IOException e) {
+            throw new WebRootNotFoundException("Webroot provided cannot be indexed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Keep the index current with the changes of the webroot, until the process exits.
+     */
+    public void startWatching() throws IOException {
+        index.startWatching();
     }
 
     /**
@@ -27,17 +57,7 @@ public class WebRootHandler {
      */
     @SuppressWarnings("BooleanMethodIsAlwaysInverted")
     private boolean doesProvidedRelativePathExists(String relativePath) {
-        File file = new File(webRoot, relativePath);
-        if (!file.exists())
-            return false;
-        try {
-            if (file.getCanonicalPath().startsWith(webRoot.getCanonicalPath())) {
-                return true;
-            }
-        } catch (IOException e) {
-            return false;
-        }
-        return false;
+        return index.get(relativePath) != null;
     }
 
     /**
@@ -47,46 +67,113 @@ public class WebRootHandler {
      * @return MIME type of the file
      */
     public String getFileMimeType(String relativePath) throws FileNotFoundException {
-        File file = getFileByPath(relativePath);
-        String mimeType = URLConnection.getFileNameMap().getContentTypeFor(file.getName());
-        if (mimeType == null) {
-            return "application/octet-stream";
+        return getFileInfo(relativePath).getMimeType();
+    }
+
+    /**
+     * Get the metadata of the target file in the given path from the index.
+     *
+     * @param relativePath The relative path to the file
+     * @return metadata of the file
+     */
+    public FileInfo getFileInfo(String relativePath) throws FileNotFoundException {
+        FileInfo fileInfo = index.get(relativePath);
+        if (fileInfo == null) {
+            throw new FileNotFoundException("File not found: " + relativePath);
         }
-        return mimeType;
+        return fileInfo;
     }
 
     /**
-     * Returns a byte array of the content of a file.
+     * Returns a byte array of the content of a file. Small files are served from the file cache while they are
+     * unchanged, the array is shared and must not be modified.
      *
      * @param relativePath The relative path to the file
      * @return a byte array of the data
      */
     public byte[] getFileByteArrayData(String relativePath) throws FileNotFoundException, ReadFileException {
-        File file = getFileByPath(relativePath);
-        FileInputStream fileInputStream = new FileInputStream(file);
-        byte[] fileBytes = new byte[(int) file.length()];
+        return getFileByteArrayData(getFileInfo(relativePath));
+    }
+
+    /**
+     * Returns a byte array of the content of an indexed file, see {@link #getFileByteArrayData(String)}.
+     *
+     * @param fileInfo metadata of the file
+     * @return a byte array of the data
+     */
+    public byte[] getFileByteArrayData(FileInfo fileInfo) throws FileNotFoundException, ReadFileException {
         try {
-            fileInputStream.read(fileBytes);
-            fileInputStream.close();
+            return fileCache.get(fileInfo);
+        } catch (NoSuchFileException e) {
+            // Deleted before the index caught up
+            throw new FileNotFoundException("File not found: " + fileInfo.getPath());
         } catch (IOException e) {
             throw new ReadFileException(e);
         }
-        return fileBytes;
     }
 
     /**
-     * Get the target file by relative path in the webroot.
+     * Returns the content of an indexed file compressed with a content coding. Small files are compressed once and
+     * kept in the file cache while they are unchanged, the array is shared and must not be modified.
      *
-     * @param relativePath The relative path to the file
-     * @return File object created from the relative path
+     * @param fileInfo metadata of the file
+     * @param encoding content coding
+     * @param level    compression level from 1 to 9
+     * @return a byte array of the compressed data
      */
-    private File getFileByPath(String relativePath) throws FileNotFoundException {
-        if (relativePath.endsWith("/")) {
-            relativePath += "index.html"; // By default, serve the index.html if it exists.
+    public byte[] getCompressedByteArrayData(FileInfo fileInfo, ContentEncoding encoding, int level)
+            throws FileNotFoundException, ReadFileException {
+        try {
+            return fileCache.getCompressed(fileInfo, encoding, level);
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException("File not found: " + fileInfo.getPath());
+        } catch (IOException e) {
+            throw new ReadFileException(e);
         }
-        if (!doesProvidedRelativePathExists(relativePath)) {
-            throw new FileNotFoundException("File not found: " + relativePath);
+    }
+
+    /**
+     * Find the gzip-compressed copy of a file, {@code index.html.gz} for {@code index.html}. A copy older than the
+     * file is ignored, it was not made from the current version.
+     *
+     * @param fileInfo metadata of the file
+     * @return metadata of the compressed copy, or null if there is no current one
+     */
+    @Nullable
+    public FileInfo getPrecompressedFile(FileInfo fileInfo) {
+        FileInfo precompressed = index.getSibling(fileInfo, ".gz");
+        if (precompressed == null || precompressed.getLastModifiedMillis() < fileInfo.getLastModifiedMillis()) {
+            return null;
+        }
+        return precompressed;
+    }
+
+    /**
+     * Get a body that sends an indexed file from its memory mapping, if the file fits into the mapped file set.
+     *
+     * @param fileInfo metadata of the file
+     * @return body to send and close, or null if the file is not mapped
+     */
+    @Nullable
+    public ResponseBody getMappedFileBody(FileInfo fileInfo) throws FileNotFoundException, ReadFileException {
+        try {
+            return mappedFileCache.get(fileInfo);
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException("File not found: " + fileInfo.getPath());
+        } catch (IOException e) {
+            throw new ReadFileException(e);
         }
-        return new File(webRoot, relativePath);
+    }
+
+    public FileCache getFileCache() {
+        return fileCache;
+    }
+
+    public MappedFileCache getMappedFileCache() {
+        return mappedFileCache;
+    }
+
+    public WebRootIndex getIndex() {
+        return index;
     }
 }
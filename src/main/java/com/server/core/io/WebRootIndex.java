@@ -0,0 +1,297 @@
+package com.server.core.io;
+
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.net.URLConnection;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * In-memory index of the files in the webroot by their normalized relative path, e.g. {@code images/duck.jpg}.
+ * <p>
+ * The webroot is walked once at startup, and the path-traversal check runs once per file while indexing it, so
+ * resolving a request target is a map lookup. {@link #startWatching()} keeps the index current with a
+ * {@link WatchService}; without it the index keeps the state of the last walk.
+ */
+public class WebRootIndex implements Closeable {
+    private final static Logger LOGGER = LoggerFactory.getLogger(WebRootIndex.class);
+    private static final String INDEX_FILE = "index.html";
+
+    private final Path root;
+    private final Consumer<Path> changeListener;
+    private final Map<String, FileInfo> files = new ConcurrentHashMap<>();
+    private final Map<WatchKey, Path> watchedDirectories = new ConcurrentHashMap<>();
+    @Nullable
+    private volatile WatchService watchService;
+
+    /**
+     * Index every file under the root.
+     *
+     * @param root webroot directory
+     */
+    public WebRootIndex(Path root) throws IOException {
+        this(root, path -> {
+        });
+    }
+
+    /**
+     * Index every file under the root, and report the files that change while watching.
+     *
+     * @param root           webroot directory
+     * @param changeListener called on the watcher thread with the path of every indexed file that is modified or
+     *                       deleted, e.g. to drop what is cached of it
+     */
+    public WebRootIndex(Path root, Consumer<Path> changeListener) throws IOException {
+        this.root = root.toRealPath();
+        this.changeListener = changeListener;
+        indexTree(this.root);
+    }
+
+    /**
+     * Look up the file a request target refers to.
+     *
+     * @param requestTarget request target, a directory stands for its index.html
+     * @return metadata of the file, or null if there is no such file inside the webroot
+     */
+    @Nullable
+    public FileInfo get(String requestTarget) {
+        String relativePath = requestTarget.endsWith("/") ? requestTarget + INDEX_FILE : requestTarget;
+        int start = 0;
+        while (start < relativePath.length() && relativePath.charAt(start) == '/') {
+            start++;
+        }
+        relativePath = relativePath.substring(start);
+        FileInfo fileInfo = files.get(relativePath);
+        if (fileInfo != null) {
+            return fileInfo;
+        }
+        // Targets with dot segments are normalized in memory, those leaving the webroot are never in the index
+        try {
+            Path resolved = root.resolve(relativePath).normalize();
+            return resolved.startsWith(root) ? files.get(toKey(resolved)) : null;
+        } catch (InvalidPathException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Look up a file stored next to an indexed one under the same name with an added extension, e.g. its
+     * precompressed {@code .gz} copy.
+     *
+     * @param fileInfo  metadata of the indexed file
+     * @param extension extension added to the file name, with the dot
+     * @return metadata of the file, or null if there is none
+     */
+    @Nullable
+    public FileInfo getSibling(FileInfo fileInfo, String extension) {
+        return files.get(toKey(fileInfo.getPath()) + extension);
+    }
+
+    /**
+     * Get the number of indexed files.
+     *
+     * @return number of files
+     */
+    public int size() {
+        return files.size();
+    }
+
+    /**
+     * Watch every directory of the webroot and apply the changes on a daemon thread.
+     */
+    public synchronized void startWatching() throws IOException {
+        if (watchService != null) return;
+        watchService = root.getFileSystem().newWatchService();
+        // Index again while registering, files created before the registration would be missed otherwise
+        indexTree(root);
+        Thread watcher = new Thread(this::watch, "webroot-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+            watchService = null;
+        }
+    }
+
+    /**
+     * Walk the whole webroot again, e.g. after change events were lost. The walk goes over the current entries and
+     * only removes the files it did not find afterwards, so files that still exist are found throughout.
+     */
+    void reindex() {
+        Set<String> indexed = indexTree(root);
+        removeIf(key -> !indexed.contains(key));
+    }
+
+    private void watch() {
+        WatchService service = watchService;
+        try {
+            while (service != null) {
+                WatchKey key = service.take();
+                Path directory = watchedDirectories.get(key);
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        LOGGER.warn("Webroot events lost, indexing the webroot again");
+                        reindex();
+                    } else if (directory != null) {
+                        update(directory.resolve((Path) event.context()));
+                    }
+                }
+                if (!key.reset()) {
+                    watchedDirectories.remove(key);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            LOGGER.info("Stopped watching the webroot");
+        }
+    }
+
+    /**
+     * Apply a change of a path to the index.
+     *
+     * @param path created, modified or deleted path
+     */
+    private void update(Path path) {
+        if (Files.isDirectory(path)) {
+            // A new or moved directory, its files were never seen
+            indexTree(path);
+            return;
+        }
+        // A changed file is overwritten in place, requests get the previous version until then instead of nothing
+        if (Files.exists(path) && indexFile(path)) {
+            changeListener.accept(path);
+            return;
+        }
+        String key = toKey(path);
+        FileInfo removed = files.remove(key);
+        if (removed != null) {
+            changeListener.accept(removed.getPath());
+        } else {
+            // Not a file, so a deleted directory, which takes its files with it
+            String prefix = key + "/";
+            removeIf(indexed -> indexed.startsWith(prefix));
+        }
+    }
+
+    /**
+     * Remove the files whose keys match, reporting each of them to the change listener.
+     *
+     * @param condition condition on the key
+     */
+    private void removeIf(Predicate<String> condition) {
+        files.entrySet().removeIf(entry -> {
+            if (!condition.test(entry.getKey())) return false;
+            changeListener.accept(entry.getValue().getPath());
+            return true;
+        });
+    }
+
+    /**
+     * Index every file under a directory.
+     *
+     * @param directory directory to walk
+     * @return keys of the files found
+     */
+    private Set<String> indexTree(Path directory) {
+        Set<String> indexed = new HashSet<>();
+        try {
+            Files.walkFileTree(directory, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) {
+                    register(dir);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                    if (indexFile(file)) {
+                        indexed.add(toKey(file));
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    LOGGER.warn("Failed to index {}: ", file, e);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            LOGGER.warn("Failed to index {}: ", directory, e);
+        }
+        return indexed;
+    }
+
+    private void register(Path directory) {
+        WatchService service = watchService;
+        if (service == null) return;
+        try {
+            watchedDirectories.put(directory.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY), directory);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to watch {}: ", directory, e);
+        }
+    }
+
+    /**
+     * Add a regular file, or a link to one, if its real path is inside the webroot.
+     *
+     * @param file path of the file under the root
+     * @return true if the file was indexed
+     */
+    private boolean indexFile(Path file) {
+        try {
+            if (!file.toRealPath().startsWith(root)) {
+                LOGGER.warn("Not serving {}, it links outside the webroot", file);
+                return false;
+            }
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            if (!attributes.isRegularFile()) return false;
+            files.put(toKey(file), new FileInfo(file, attributes.size(), attributes.lastModifiedTime().toMillis(),
+                    attributes.fileKey(), getMimeType(file.getFileName().toString())));
+            return true;
+        } catch (NoSuchFileException e) {
+            // Deleted again before it was indexed
+        } catch (IOException e) {
+            LOGGER.warn("Failed to index {}: ", file, e);
+        }
+        return false;
+    }
+
+    private String toKey(Path path) {
+        String key = root.relativize(path).toString();
+        return File.separatorChar == '/' ? key : key.replace(File.separatorChar, '/');
+    }
+
+    static String getMimeType(String fileName) {
+        String mimeType = URLConnection.getFileNameMap().getContentTypeFor(fileName);
+        if (mimeType == null) {
+            return "application/octet-stream";
+        }
+        return mimeType;
+    }
+}
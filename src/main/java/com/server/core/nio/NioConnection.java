@@ -0,0 +1,530 @@
+package com.server.core.nio;
+
+import com.server.core.OrderedResponseQueue;
+import com.server.core.ServerConfig;
+import com.server.core.WebSocketFrameHandler;
+import com.server.http.HttpBodyDecoder;
+import com.server.http.HttpHeaderFieldName;
+import com.server.http.HttpParsingException;
+import com.server.http.HttpRequest;
+import com.server.http.HttpResponse;
+import com.server.http.HttpResponseEncoder;
+import com.server.http.IncrementalHttpParser;
+import com.server.http.ResponseBody;
+import com.server.ws.Opcode;
+import com.server.ws.OutboundBacklog;
+import com.server.ws.PerMessageDeflate;
+import com.server.ws.WebSocketFrame;
+import com.server.ws.WebSocketFrameEncoder;
+import com.server.ws.WebSocketFrameHeader;
+import com.server.ws.WebSocketHub;
+import com.server.ws.WebSocketMessageAssembler;
+import com.server.ws.WebSocketParser;
+import com.server.ws.WebSocketParsingException;
+import com.server.ws.WebSocketSession;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * State of a single non-blocking connection. Starts speaking HTTP, keeps the connection open between requests when
+ * the client allows it, and switches to WebSocket after a successful handshake. Only ever touched by the owning
+ * selector loop thread.
+ * <p>
+ * Pipelined HTTP requests are handed to the request executor as soon as they are parsed. Their responses are
+ * collected in request order and written with a single gathering write whenever the head of the queue is ready.
+ * <p>
+ * Frames published to the hub are the only input from other threads, they are handed over to the loop thread once the
+ * outbound backlog admitted them. While the client is behind by the high-water mark, it is not read either.
+ */
+class NioConnection implements WebSocketSession {
+    private final static Logger LOGGER = LoggerFactory.getLogger(NioConnection.class);
+    private static final int INITIAL_BUFFER_SIZE = 8 * 1024;
+
+    private final SelectorLoop loop;
+    private final SelectionKey key;
+    private final SocketChannel channel;
+    private final ServerConfig config;
+    private final IncrementalHttpParser httpParser = new IncrementalHttpParser();
+    private final WebSocketParser webSocketParser = new WebSocketParser();
+    private final OrderedResponseQueue responseQueue = new OrderedResponseQueue();
+    private final HttpResponseEncoder responseEncoder;
+    private final WebSocketFrameEncoder frameEncoder = new WebSocketFrameEncoder();
+    // Created by the handshake
+    private WebSocketFrameHandler frameHandler;
+    private WebSocketMessageAssembler messageAssembler;
+    private OutboundBacklog backlog;
+    @Nullable
+    private PerMessageDeflate perMessageDeflate;
+    private final WriteQueue writeQueue = new WriteQueue();
+    private final List<ByteBuffer> encodedBuffers = new ArrayList<>();
+    private ByteBuffer readBuffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    private boolean isWebsocketConnection = false;
+    // No further request is read after the one that closes the connection
+    private boolean lastRequestReceived = false;
+    // The last response or frame is queued, close as soon as the write queue is empty
+    private boolean closeAfterWrite = false;
+    // Handshake waiting for the responses of the requests pipelined before it
+    @Nullable
+    private HttpRequest pendingUpgrade;
+    // Body of the last request, while it is still arriving
+    @Nullable
+    private NioRequestBody requestBody;
+    // The last request body was malformed or too large, close once the handler answered it
+    private boolean requestBodyFailed = false;
+    private ScheduledFuture<?> pingTask;
+    private int handledRequests = 0;
+    private long lastActivityNanos = System.nanoTime();
+
+    NioConnection(SelectorLoop loop, SelectionKey key, SocketChannel channel) {
+        this.loop = loop;
+        this.key = key;
+        this.channel = channel;
+        this.config = loop.getConfig();
+        this.responseEncoder = new HttpResponseEncoder(HttpResponseEncoder.DEFAULT_HEAD_BUFFER_SIZE, config.getChunkSize());
+    }
+
+    /**
+     * Read what the socket has and process every complete HTTP request or WebSocket frame in the buffer.
+     */
+    void onReadable() throws IOException {
+        if (!readBuffer.hasRemaining()) {
+            growReadBuffer(readBuffer.capacity() * 2);
+        }
+        int read = channel.read(readBuffer);
+        if (read == -1) {
+            close();
+            return;
+        }
+        lastActivityNanos = System.nanoTime();
+        processInput();
+    }
+
+    /**
+     * Write as much of the pending output as the socket accepts.
+     */
+    void onWritable() throws IOException {
+        flushWriteQueue();
+    }
+
+    /**
+     * Process the buffered input and write whatever output it produced.
+     */
+    private void processInput() throws IOException {
+        readBuffer.flip();
+        try {
+            if (isWebsocketConnection) {
+                processWebSocketFrames();
+            } else {
+                processHttpRequests();
+            }
+        } catch (HttpParsingException | WebSocketParsingException e) {
+            LOGGER.error("Error processing request: ", e);
+            close();
+            return;
+        } finally {
+            readBuffer.compact();
+        }
+        flushWriteQueue();
+    }
+
+    /**
+     * Parse every HTTP request whose whole header section arrived, up to the max. number of outstanding requests, and
+     * pass the bytes of a request body on to its handler.
+     */
+    private void processHttpRequests() throws HttpParsingException, WebSocketParsingException, IOException {
+        if (pendingUpgrade != null) {
+            if (!responseQueue.isEmpty()) return;
+            HttpRequest request = pendingUpgrade;
+            pendingUpgrade = null;
+            upgradeToWebSocket(request);
+            return;
+        }
+
+        while (true) {
+            if (requestBody != null) {
+                // The next request starts after the body, which may have to wait for the handler to read it
+                try {
+                    if (!requestBody.offer(readBuffer)) return;
+                } catch (HttpParsingException e) {
+                    // The handler gets the error from the body stream and answers it, nothing after it is readable
+                    LOGGER.info("Malformed request body: {}", e.getMessage());
+                    requestBodyFailed = true;
+                    lastRequestReceived = true;
+                }
+                requestBody = null;
+            }
+            if (lastRequestReceived || responseQueue.size() >= config.getMaxPipelinedRequests()) return;
+
+            // The parser consumes partial heads and resumes with the next read
+            IncrementalHttpParser.Result result = httpParser.parse(readBuffer);
+            if (result == IncrementalHttpParser.Result.NEED_MORE) {
+                return;
+            }
+            if (result == IncrementalHttpParser.Result.ERROR) {
+                throw httpParser.getError();
+            }
+            HttpRequest request = httpParser.getRequest();
+            httpParser.reset();
+            handledRequests++;
+            if (request.isWebsocketHandshake()) {
+                LOGGER.info("WebSocket Upgrade Request detected.");
+                if (responseQueue.isEmpty()) {
+                    upgradeToWebSocket(request);
+                } else {
+                    pendingUpgrade = request;
+                }
+                return;
+            }
+
+            boolean keepAlive = request.isKeepAlive() && handledRequests < config.getMaxKeepAliveRequests();
+            HttpBodyDecoder bodyDecoder;
+            try {
+                bodyDecoder = HttpBodyDecoder.forRequest(request, config.getMaxRequestBodySize());
+            } catch (HttpParsingException e) {
+                // The body cannot be skipped, so the connection is closed after the error response
+                HttpResponse errorResponse = loop.getRequestHandler().handleBadRequest(request, e.getErrorCode());
+                responseQueue.add(request, CompletableFuture.completedFuture(errorResponse), false);
+                loop.execute(this::writeCompletedResponses);
+                lastRequestReceived = true;
+                return;
+            }
+            NioRequestBody body = null;
+            if (bodyDecoder != null) {
+                body = new NioRequestBody(bodyDecoder, config.getRequestBodyBufferSize(),
+                        () -> loop.execute(this::onBodyDrained));
+                request.setBody(body);
+                requestBody = body;
+            }
+
+            CompletableFuture<HttpResponse> response = CompletableFuture.supplyAsync(
+                    () -> loop.getRequestHandler().handleRequest(request, keepAlive), loop.getRequestExecutor());
+            responseQueue.add(request, response, keepAlive);
+            NioRequestBody handledBody = body;
+            response.whenComplete((r, e) -> loop.execute(() -> {
+                // Whatever the handler did not read is dropped as it arrives
+                if (handledBody != null) handledBody.discard();
+                writeCompletedResponses();
+            }));
+            lastRequestReceived = !keepAlive;
+        }
+    }
+
+    /**
+     * Move the responses at the head of the queue that are ready into the write queue, then continue with input that
+     * was held back by the pipelining limit or a pending handshake.
+     */
+    private void writeCompletedResponses() {
+        if (!channel.isOpen()) return;
+        try {
+            OrderedResponseQueue.Entry entry;
+            while ((entry = responseQueue.pollCompleted()) != null) {
+                HttpResponse response = entry.getResponse();
+                queueResponse(response);
+                closeAfterWrite = !entry.isKeepAlive() || response.isDelimitedByClose()
+                        || (requestBodyFailed && responseQueue.isEmpty());
+                if (closeAfterWrite) {
+                    // Nothing pipelined behind the last response is answered
+                    responseQueue.clear();
+                    lastRequestReceived = true;
+                    pendingUpgrade = null;
+                    break;
+                }
+            }
+            processInput();
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Error writing responses: ", e);
+            close();
+        }
+    }
+
+    /**
+     * Encode the response into the write queue, followed by its response body if it has one.
+     *
+     * @param response HTTP response to send
+     */
+    private void queueResponse(HttpResponse response) {
+        ResponseBody responseBody = responseEncoder.encode(response, encodedBuffers);
+        for (ByteBuffer buffer : encodedBuffers) {
+            writeQueue.add(buffer);
+        }
+        encodedBuffers.clear();
+        if (responseBody != null) {
+            writeQueue.add(responseBody);
+        }
+    }
+
+    /**
+     * Continue with the body bytes held back while the body buffer was full.
+     */
+    private void onBodyDrained() {
+        if (!channel.isOpen()) return;
+        // Reading resumes now, the time the handler took does not count against the client
+        lastActivityNanos = System.nanoTime();
+        try {
+            processInput();
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Error reading request body: ", e);
+            close();
+        }
+    }
+
+    /**
+     * Answer the handshake and treat everything after it as WebSocket frames.
+     *
+     * @param request WebSocket handshake from the client
+     */
+    private void upgradeToWebSocket(HttpRequest request) throws HttpParsingException, WebSocketParsingException, IOException {
+        perMessageDeflate = config.getPerMessageDeflatePolicy()
+                .negotiate(request.getHeaders().get(HttpHeaderFieldName.SEC_WEBSOCKET_EXTENSIONS));
+        frameHandler = new WebSocketFrameHandler(loop.getWebSocketHub(), this);
+        // The frame handler takes whole messages
+        messageAssembler = new WebSocketMessageAssembler(config.getMaxWebSocketMessageSize(), null, perMessageDeflate);
+        HttpResponse handshakeResponse = loop.getRequestHandler().handleWebSocketUpgradeRequest(request, perMessageDeflate);
+        queueResponse(handshakeResponse);
+        // Counts everything still waiting to be written from now on
+        backlog = new OutboundBacklog(config.getWebSocketHighWaterMark(), config.getSlowConsumerPolicy());
+        backlog.add(writeQueue.getBufferedBytes());
+        isWebsocketConnection = true;
+        loop.getWebSocketHub().register(this);
+        startPing();
+        // The client may already have sent frames right behind the handshake
+        processWebSocketFrames();
+    }
+
+    /**
+     * Parse and handle the WebSocket frames in the read buffer. Payloads are passed on as they arrive, so the buffer
+     * never has to hold a whole frame.
+     */
+    private void processWebSocketFrames() throws WebSocketParsingException, IOException {
+        while (!closeAfterWrite) {
+            if (!messageAssembler.isInFrame()) {
+                WebSocketFrameHeader header = webSocketParser.parseFrameHeader(readBuffer);
+                if (header == null) {
+                    return;
+                }
+                messageAssembler.beginFrame(header);
+            }
+            int length = (int) Math.min(readBuffer.remaining(), messageAssembler.getFrameRemaining());
+            ByteBuffer payload = readBuffer.slice(readBuffer.position(), length);
+            readBuffer.position(readBuffer.position() + length);
+            // Fragments are collected until their message is complete
+            WebSocketFrame message = messageAssembler.addPayload(payload);
+            if (message != null) {
+                WebSocketFrame serverFrame = frameHandler.handleFrame(message);
+                if (message.getOpcode() == Opcode.CLOSE) {
+                    closeAfterWrite = true;
+                }
+                if (serverFrame != null) {
+                    queueFrame(serverFrame);
+                }
+            }
+            if (messageAssembler.isInFrame()) {
+                // The rest of the payload has not arrived yet
+                return;
+            }
+        }
+    }
+
+    /**
+     * Encode the frame into the write queue, its header and payload are sent with one gathering write.
+     *
+     * @param frame WebSocket frame to send
+     */
+    private void queueFrame(WebSocketFrame frame) {
+        if (perMessageDeflate != null) {
+            frame = perMessageDeflate.compress(frame);
+        }
+        frameEncoder.encode(frame, encodedBuffers);
+        long length = 0;
+        for (ByteBuffer buffer : encodedBuffers) {
+            writeQueue.add(buffer);
+            length += buffer.remaining();
+        }
+        encodedBuffers.clear();
+        backlog.add(length);
+    }
+
+    /**
+     * Queue a frame published to the hub, applying the slow consumer policy. Called from the publishing thread, the
+     * frame is queued on the loop thread. A publisher on a selector loop never waits for the client.
+     *
+     * @param frame whole encoded frame in read mode
+     */
+    @Override
+    public void sendEncoded(ByteBuffer frame) {
+        try {
+            if (!backlog.admit(frame.remaining(), !(Thread.currentThread() instanceof SelectorLoop))) {
+                LOGGER.debug("Published frame dropped.");
+                return;
+            }
+        } catch (InterruptedIOException e) {
+            LOGGER.debug("Published frame dropped: {}", e.getMessage());
+            return;
+        } catch (IOException e) {
+            LOGGER.info("Disconnecting slow WebSocket client: {}", e.getMessage());
+            loop.execute(this::close);
+            return;
+        }
+        loop.execute(() -> {
+            if (!channel.isOpen() || closeAfterWrite) return;
+            writeQueue.add(frame);
+            try {
+                flushWriteQueue();
+            } catch (IOException e) {
+                LOGGER.error("Failed to send published frame: ", e);
+                close();
+            }
+        });
+    }
+
+    @Override
+    public boolean isOpen() {
+        return channel.isOpen();
+    }
+
+    /**
+     * Send a ping frame to the client every 5 sec. The scheduler only hands the work over to the loop thread.
+     */
+    private void startPing() {
+        pingTask = loop.getPingScheduler().scheduleAtFixedRate(() -> loop.execute(() -> {
+            if (!channel.isOpen() || closeAfterWrite) return;
+            try {
+                queueFrame(frameHandler.createPingFrame());
+                flushWriteQueue();
+                LOGGER.info("Ping frame sent.");
+            } catch (IOException e) {
+                LOGGER.error("Failed to send ping: ", e);
+                close();
+            }
+        }), 0, 5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Write the queued buffers and response bodies, as far as the socket accepts.
+     */
+    private void flushWriteQueue() throws IOException {
+        if (!channel.isOpen()) return;
+        long bufferedBytes = writeQueue.getBufferedBytes();
+        if (!writeQueue.isEmpty() && writeQueue.writeTo(channel)) {
+            responseEncoder.reset();
+            frameEncoder.reset();
+            // The keep-alive timeout runs from the last response, not from the request
+            lastActivityNanos = System.nanoTime();
+        }
+        if (backlog != null) {
+            backlog.release(bufferedBytes - writeQueue.getBufferedBytes());
+        }
+        if (writeQueue.isEmpty() && closeAfterWrite) {
+            close();
+            return;
+        }
+        ResponseBody waitingBody = writeQueue.getWaitingBody();
+        if (waitingBody != null) {
+            // The producer wakes the loop up, polling the socket for writability would spin
+            waitingBody.onReady(() -> loop.execute(this::onBodyReady));
+        }
+        updateInterestOps();
+    }
+
+    /**
+     * Continue writing a streamed response body that has bytes ready again.
+     */
+    private void onBodyReady() {
+        try {
+            flushWriteQueue();
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Error writing response body: ", e);
+            close();
+        }
+    }
+
+    /**
+     * Read only while more input can be processed, and wait for writability only while output is pending. Once the
+     * connection is going to be closed, anything else the client sends is ignored.
+     */
+    private void updateInterestOps() {
+        int ops = 0;
+        boolean canProcessInput;
+        if (isWebsocketConnection) {
+            // A client that does not read its answers is not read either
+            canProcessInput = !backlog.isAboveHighWaterMark();
+        } else if (requestBody != null) {
+            // Stop reading while the handler is behind, so a large upload is never buffered as a whole
+            canProcessInput = !requestBody.isFull();
+        } else {
+            canProcessInput = !lastRequestReceived && pendingUpgrade == null
+                    && responseQueue.size() < config.getMaxPipelinedRequests();
+        }
+        if (!closeAfterWrite && canProcessInput) {
+            ops |= SelectionKey.OP_READ;
+        }
+        if (!writeQueue.isEmpty() && writeQueue.getWaitingBody() == null) {
+            ops |= SelectionKey.OP_WRITE;
+        }
+        key.interestOps(ops);
+    }
+
+    /**
+     * Check if the connection waits for the next HTTP request longer than the keep-alive timeout, or for the rest of
+     * a request body longer than the request body timeout.
+     *
+     * @param now current time from {@link System#nanoTime()}
+     * @return True if the connection should be closed
+     */
+    boolean isIdle(long now) {
+        if (isWebsocketConnection) return false;
+        if (requestBody != null) {
+            // While the body buffer is full the handler is behind, not the client
+            return !requestBody.isFull()
+                    && now - lastActivityNanos > config.getRequestBodyTimeoutMillis() * 1_000_000L;
+        }
+        return writeQueue.isEmpty()
+                && responseQueue.isEmpty()
+                && now - lastActivityNanos > config.getKeepAliveTimeoutMillis() * 1_000_000L;
+    }
+
+    void close() {
+        if (!channel.isOpen()) return;
+        if (pingTask != null) {
+            pingTask.cancel(false);
+        }
+        if (requestBody != null) {
+            requestBody.abort();
+        }
+        if (perMessageDeflate != null) {
+            perMessageDeflate.close();
+        }
+        if (isWebsocketConnection) {
+            loop.getWebSocketHub().unregister(this);
+            backlog.close();
+        }
+        responseQueue.clear();
+        writeQueue.clear();
+        key.cancel();
+        try {
+            channel.close();
+            LOGGER.info("Socket closed");
+        } catch (IOException e) {
+            LOGGER.error("Error closing socket", e);
+        }
+    }
+
+    private void growReadBuffer(int capacity) {
+        ByteBuffer grown = ByteBuffer.allocate(capacity);
+        readBuffer.flip();
+        grown.put(readBuffer);
+        readBuffer = grown;
+    }
+}
@@ -0,0 +1,136 @@
+package com.server.core.nio;
+
+import com.server.http.HttpBodyDecoder;
+import com.server.http.HttpParsingException;
+import com.server.http.RequestBodyException;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Request body passed from a selector loop to the thread handling the request, through a buffer of fixed size.
+ * <p>
+ * The loop decodes body bytes into the buffer as they arrive and stops reading from the connection while it is full;
+ * the handler thread blocks until bytes are available. Once the response is built, the rest of the body is decoded
+ * and dropped, so the next request of the connection can be parsed.
+ */
+class NioRequestBody extends InputStream {
+    private final HttpBodyDecoder decoder;
+    // Decoded body bytes in write mode
+    private final ByteBuffer buffer;
+    private final Runnable onDrained;
+    private boolean discarding = false;
+    private boolean aborted = false;
+    @Nullable
+    private HttpParsingException error;
+
+    /**
+     * Create the body of a request.
+     *
+     * @param decoder    decoder of the body framing
+     * @param bufferSize max. number of decoded bytes held at once
+     * @param onDrained  called on the handler thread when a full buffer got room again
+     */
+    NioRequestBody(HttpBodyDecoder decoder, int bufferSize, Runnable onDrained) {
+        this.decoder = decoder;
+        this.buffer = ByteBuffer.allocate(bufferSize);
+        this.onDrained = onDrained;
+    }
+
+    /**
+     * Decode body bytes from the read buffer of the connection, as far as there is room. Called by the loop thread.
+     *
+     * @param input read buffer in read mode
+     * @return True if the whole body has been received
+     */
+    synchronized boolean offer(ByteBuffer input) throws HttpParsingException {
+        try {
+            if (discarding) {
+                while (input.hasRemaining() && !decoder.isComplete()) {
+                    buffer.clear();
+                    decoder.decode(input, buffer);
+                }
+                buffer.clear();
+            } else {
+                decoder.decode(input, buffer);
+            }
+        } catch (HttpParsingException e) {
+            error = e;
+            throw e;
+        } finally {
+            notifyAll();
+        }
+        return decoder.isComplete();
+    }
+
+    /**
+     * Check if no more bytes can be taken until the handler reads some.
+     *
+     * @return True if reading from the connection should pause
+     */
+    synchronized boolean isFull() {
+        return !discarding && !buffer.hasRemaining();
+    }
+
+    /**
+     * Drop the unread rest of the body, as the handler is done with the request.
+     */
+    synchronized void discard() {
+        discarding = true;
+        buffer.clear();
+    }
+
+    /**
+     * Wake up a handler waiting for bytes that will never arrive, as the connection is closed.
+     */
+    synchronized void abort() {
+        aborted = true;
+        notifyAll();
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        boolean wasFull;
+        int read;
+        synchronized (this) {
+            while (buffer.position() == 0) {
+                if (error != null) {
+                    throw new RequestBodyException(error.getErrorCode());
+                }
+                if (aborted || discarding) {
+                    throw new IOException("Connection closed in the middle of the request body");
+                }
+                if (decoder.isComplete()) {
+                    return -1;
+                }
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+            }
+            wasFull = !buffer.hasRemaining();
+            buffer.flip();
+            read = Math.min(len, buffer.remaining());
+            buffer.get(b, off, read);
+            buffer.compact();
+        }
+        if (wasFull) {
+            onDrained.run();
+        }
+        return read;
+    }
+}
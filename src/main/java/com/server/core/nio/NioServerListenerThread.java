@@ -0,0 +1,112 @@
+package com.server.core.nio;
+
+import com.server.core.HttpRequestHandler;
+import com.server.core.ServerConfig;
+import com.server.core.io.FileCache;
+import com.server.core.io.MappedFileCache;
+import com.server.core.io.WebRootHandler;
+import com.server.core.io.WebRootNotFoundException;
+import com.server.http.DateHeader;
+import com.server.ws.WebSocketHub;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Thread accepts TCP connections and hands them over to a fixed set of selector loops in round-robin order.
+ */
+public class NioServerListenerThread extends Thread {
+    private final static Logger LOGGER = LoggerFactory.getLogger(NioServerListenerThread.class);
+    private final ServerSocketChannel serverChannel;
+    private final SelectorLoop[] loops;
+    private final ExecutorService requestExecutor;
+    private final WebSocketHub webSocketHub = new WebSocketHub();
+    private final ScheduledExecutorService pingScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "server-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public NioServerListenerThread(ServerConfig config) throws IOException, WebRootNotFoundException {
+        WebRootHandler webRootHandler = new WebRootHandler(config.getWebroot(),
+                new FileCache(config.getFileCacheSize(), config.getFileCacheMaxFileSize()),
+                new MappedFileCache(config.getMappedFileCacheSize(), config.getMappedFileMaxSize()));
+        webRootHandler.startWatching();
+        HttpRequestHandler requestHandler = new HttpRequestHandler(webRootHandler, config);
+        this.requestExecutor = config.getExecutionMode().newExecutor(config.getWorkerPoolSize());
+        this.loops = new SelectorLoop[config.getSelectorThreads()];
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new SelectorLoop(i, requestHandler, config, requestExecutor, pingScheduler, webSocketHub);
+        }
+        this.serverChannel = ServerSocketChannel.open();
+        this.serverChannel.bind(new InetSocketAddress(config.getPort()));
+        // WebSocket pings share the scheduler with the Date header tick
+        DateHeader.scheduleRefresh(pingScheduler);
+    }
+
+    /**
+     * Get the hub of the WebSocket sessions, to publish to their topics from outside of a connection.
+     *
+     * @return WebSocket hub of the server
+     */
+    public WebSocketHub getWebSocketHub() {
+        return webSocketHub;
+    }
+
+    /**
+     * Get the port the server is listening on, e.g. the one picked for port 0.
+     *
+     * @return local port of the server channel
+     */
+    public int getLocalPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Stop accepting connections. The selector loops close their connections and end.
+     */
+    public void close() throws IOException {
+        serverChannel.close();
+    }
+
+    @Override
+    public void run() {
+        for (SelectorLoop loop : loops) {
+            loop.start();
+        }
+
+        int next = 0;
+        try {
+            // Accepting stays blocking: the listener has nothing else to do, and the loops never wait on it.
+            while (serverChannel.isOpen()) {
+                SocketChannel channel = serverChannel.accept();
+                LOGGER.info("Connection accepted: {}", channel.getRemoteAddress());
+                loops[next].register(channel);
+                next = (next + 1) % loops.length;
+            }
+        } catch (ClosedChannelException e) {
+            LOGGER.info("Server channel closed");
+        } catch (IOException e) {
+            LOGGER.error(e.getMessage(), e);
+        } finally {
+            try {
+                serverChannel.close();
+            } catch (IOException e) {
+                LOGGER.warn("Failed to close server channel: ", e);
+            }
+            for (SelectorLoop loop : loops) {
+                loop.interrupt();
+            }
+            requestExecutor.shutdown();
+            pingScheduler.shutdownNow();
+        }
+    }
+}
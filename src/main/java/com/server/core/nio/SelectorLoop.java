@@ -0,0 +1,188 @@
+package com.server.core.nio;
+
+import com.server.core.HttpRequestHandler;
+import com.server.core.ServerConfig;
+import com.server.ws.WebSocketHub;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Thread owns a selector and every connection registered to it. All reads, writes and protocol handling of those
+ * connections happen on this thread, so connection state needs no synchronization.
+ */
+public class SelectorLoop extends Thread {
+    private final static Logger LOGGER = LoggerFactory.getLogger(SelectorLoop.class);
+    private static final long IDLE_CHECK_INTERVAL_MILLIS = 1000;
+    private final Selector selector;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final HttpRequestHandler requestHandler;
+    private final ServerConfig config;
+    private final ExecutorService requestExecutor;
+    private final ScheduledExecutorService pingScheduler;
+    private final WebSocketHub webSocketHub;
+    private long lastIdleCheckNanos = System.nanoTime();
+
+    public SelectorLoop(int index, HttpRequestHandler requestHandler, ServerConfig config,
+                        ExecutorService requestExecutor, ScheduledExecutorService pingScheduler,
+                        WebSocketHub webSocketHub) throws IOException {
+        super("selector-loop-" + index);
+        this.selector = Selector.open();
+        this.requestHandler = requestHandler;
+        this.config = config;
+        this.requestExecutor = requestExecutor;
+        this.pingScheduler = pingScheduler;
+        this.webSocketHub = webSocketHub;
+    }
+
+    HttpRequestHandler getRequestHandler() {
+        return requestHandler;
+    }
+
+    ServerConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Get the executor requests are handled on, so that reading files never blocks the loop.
+     *
+     * @return request executor
+     */
+    ExecutorService getRequestExecutor() {
+        return requestExecutor;
+    }
+
+    ScheduledExecutorService getPingScheduler() {
+        return pingScheduler;
+    }
+
+    WebSocketHub getWebSocketHub() {
+        return webSocketHub;
+    }
+
+    /**
+     * Hand over an accepted channel to this loop. Safe to call from any thread.
+     *
+     * @param channel accepted socket channel
+     */
+    public void register(SocketChannel channel) {
+        execute(() -> {
+            try {
+                channel.configureBlocking(false);
+                SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                key.attach(new NioConnection(this, key, channel));
+            } catch (IOException e) {
+                LOGGER.error("Failed to register channel: ", e);
+                try {
+                    channel.close();
+                } catch (IOException ex) {
+                    LOGGER.warn("Failed to close channel: ", ex);
+                }
+            }
+        });
+    }
+
+    /**
+     * Run the task on this loop's thread. Safe to call from any thread.
+     *
+     * @param task task to run
+     */
+    public void execute(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                selector.select(IDLE_CHECK_INTERVAL_MILLIS);
+                runTasks();
+                Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+                while (iterator.hasNext()) {
+                    SelectionKey key = iterator.next();
+                    iterator.remove();
+                    processKey(key);
+                }
+                closeIdleConnections();
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            LOGGER.error("Selector loop stopped: ", e);
+        } finally {
+            closeAll();
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                LOGGER.error("Error running selector task: ", e);
+            }
+        }
+    }
+
+    /**
+     * Dispatch the ready operations of the key to its connection. A failure only closes that connection.
+     *
+     * @param key selected key
+     */
+    private void processKey(SelectionKey key) {
+        NioConnection connection = (NioConnection) key.attachment();
+        try {
+            if (key.isValid() && key.isReadable()) {
+                connection.onReadable();
+            }
+            if (key.isValid() && key.isWritable()) {
+                connection.onWritable();
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Error processing connection: ", e);
+            connection.close();
+        }
+    }
+
+    /**
+     * Close HTTP connections that have been waiting for their next request longer than the keep-alive timeout, or for
+     * the rest of a request body longer than the request body timeout.
+     * Checked at most once per interval, so the loop does not walk every key after each event.
+     */
+    private void closeIdleConnections() {
+        long now = System.nanoTime();
+        if (now - lastIdleCheckNanos < IDLE_CHECK_INTERVAL_MILLIS * 1_000_000) {
+            return;
+        }
+        lastIdleCheckNanos = now;
+        for (SelectionKey key : selector.keys()) {
+            if (key.attachment() instanceof NioConnection connection && connection.isIdle(now)) {
+                LOGGER.info("Closing idle connection.");
+                connection.close();
+            }
+        }
+    }
+
+    private void closeAll() {
+        for (SelectionKey key : selector.keys()) {
+            if (key.attachment() instanceof NioConnection connection) {
+                connection.close();
+            }
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            LOGGER.warn("Failed to close selector: ", e);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.server.core.nio;
+
+import com.server.http.ResponseBody;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Output of a connection waiting to be written, in order: encoded buffers, and response bodies transferred to the
+ * socket between them. Consecutive buffers are written with one gathering write. Only touched by the owning selector loop
+ * thread.
+ * <p>
+ * A streamed body at the head of the queue may have nothing ready, then the queue waits for the body instead of the
+ * socket, see {@link #getWaitingBody()}.
+ */
+class WriteQueue {
+    private final static Logger LOGGER = LoggerFactory.getLogger(WriteQueue.class);
+    private static final ByteBuffer[] EMPTY_BUFFERS = new ByteBuffer[0];
+
+    // Either ByteBuffer or ResponseBody
+    private final ArrayDeque<Object> entries = new ArrayDeque<>();
+    private final List<ByteBuffer> gathered = new ArrayList<>();
+    // Remaining bytes of the queued buffers, response bodies are not counted
+    private long bufferedBytes = 0;
+
+    void add(ByteBuffer buffer) {
+        entries.add(buffer);
+        bufferedBytes += buffer.remaining();
+    }
+
+    void add(ResponseBody responseBody) {
+        entries.add(responseBody);
+    }
+
+    boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * Write as much of the queue as the channel accepts.
+     *
+     * @param channel non-blocking socket channel
+     * @return true if the whole queue was written
+     */
+    boolean writeTo(SocketChannel channel) throws IOException {
+        while (!entries.isEmpty()) {
+            if (entries.peek() instanceof ResponseBody responseBody) {
+                if (responseBody.isReady()) {
+                    responseBody.transferTo(channel);
+                }
+                if (responseBody.hasRemaining()) return false;
+                entries.poll();
+                close(responseBody);
+                continue;
+            }
+            // Gather the buffers up to the next response body
+            for (Object entry : entries) {
+                if (!(entry instanceof ByteBuffer buffer)) break;
+                gathered.add(buffer);
+            }
+            bufferedBytes -= channel.write(gathered.toArray(EMPTY_BUFFERS));
+            gathered.clear();
+            while (entries.peek() instanceof ByteBuffer buffer && !buffer.hasRemaining()) {
+                entries.poll();
+            }
+            if (entries.peek() instanceof ByteBuffer) return false;
+        }
+        return true;
+    }
+
+    long getBufferedBytes() {
+        return bufferedBytes;
+    }
+
+    /**
+     * Get the response body the queue waits for, i.e. the one at its head if it has nothing ready to write.
+     *
+     * @return streamed body that is not ready, or null if the queue waits for the socket or is empty
+     */
+    @Nullable
+    ResponseBody getWaitingBody() {
+        if (entries.peek() instanceof ResponseBody responseBody && !responseBody.isReady()) {
+            return responseBody;
+        }
+        return null;
+    }
+
+    /**
+     * Drop everything not written yet and close the response bodies.
+     */
+    void clear() {
+        for (Object entry : entries) {
+            if (entry instanceof ResponseBody responseBody) {
+                close(responseBody);
+            }
+        }
+        entries.clear();
+        bufferedBytes = 0;
+    }
+
+    private static void close(ResponseBody responseBody) {
+        try {
+            responseBody.close();
+        } catch (IOException e) {
+            LOGGER.warn("Failed to close response body: ", e);
+        }
+    }
+}
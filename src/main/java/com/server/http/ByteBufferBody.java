@@ -0,0 +1,37 @@
+package com.server.http;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Response body written from a buffer, for the parts of a {@link SequenceBody} that are generated in memory.
+ */
+public class ByteBufferBody implements ResponseBody {
+    private final ByteBuffer content;
+    private final long length;
+
+    public ByteBufferBody(ByteBuffer content) {
+        this.content = content;
+        this.length = content.remaining();
+    }
+
+    @Override
+    public long getLength() {
+        return length;
+    }
+
+    @Override
+    public boolean hasRemaining() {
+        return content.hasRemaining();
+    }
+
+    @Override
+    public long transferTo(WritableByteChannel target) throws IOException {
+        return target.write(content);
+    }
+
+    @Override
+    public void close() {
+    }
+}
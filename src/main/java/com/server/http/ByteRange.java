@@ -0,0 +1,102 @@
+package com.server.http;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Byte range of a representation, requested by the Range header field. Both ends are inclusive, as in the header.
+ */
+public class ByteRange {
+    public static final int MAX_RANGES = 16;
+    private static final String BYTES_UNIT = "bytes=";
+
+    private final long first;
+    private final long last;
+
+    public ByteRange(long first, long last) {
+        this.first = first;
+        this.last = last;
+    }
+
+    /**
+     * Parse a Range header field value against the size of the representation.
+     *
+     * @param rangeHeader value of the Range header field
+     * @param size        size of the representation in bytes
+     * @return satisfiable ranges in request order, empty if none is satisfiable, or null if the field is malformed,
+     * asks for another unit or for more than {@link #MAX_RANGES} ranges, in which case it is ignored
+     */
+    @Nullable
+    public static List<ByteRange> parse(String rangeHeader, long size) {
+        if (!rangeHeader.regionMatches(true, 0, BYTES_UNIT, 0, BYTES_UNIT.length())) {
+            return null;
+        }
+        String[] specs = rangeHeader.substring(BYTES_UNIT.length()).split(",");
+        if (specs.length > MAX_RANGES) {
+            return null;
+        }
+        List<ByteRange> ranges = new ArrayList<>(specs.length);
+        for (String spec : specs) {
+            spec = spec.trim();
+            int dash = spec.indexOf('-');
+            if (dash == -1) return null;
+            long first = parseNumber(spec, 0, dash);
+            long last = parseNumber(spec, dash + 1, spec.length());
+            if (dash == 0) {
+                // Suffix range: the last n bytes
+                if (last < 0) return null;
+                if (last > 0 && size > 0) {
+                    ranges.add(new ByteRange(Math.max(0, size - last), size - 1));
+                }
+                continue;
+            }
+            if (first < 0 || (dash + 1 < spec.length() && (last < 0 || last < first))) {
+                return null;
+            }
+            if (first < size) {
+                ranges.add(new ByteRange(first, last < 0 ? size - 1 : Math.min(last, size - 1)));
+            }
+        }
+        return ranges;
+    }
+
+    public long getFirst() {
+        return first;
+    }
+
+    public long getLast() {
+        return last;
+    }
+
+    public long getLength() {
+        return last - first + 1;
+    }
+
+    /**
+     * Format the range as the value of a Content-Range header field.
+     *
+     * @param size size of the representation in bytes
+     * @return content range, e.g. {@code bytes 0-499/1234}
+     */
+    public String toContentRange(long size) {
+        return "bytes " + first + "-" + last + "/" + size;
+    }
+
+    /**
+     * Parse a decimal number without sign.
+     *
+     * @return the number, or -1 if the text is empty, not a number or too large
+     */
+    private static long parseNumber(String text, int start, int end) {
+        if (start == end || end - start > 18) return -1;
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+}
@@ -0,0 +1,132 @@
+package com.server.http;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Frames a body of unknown length with the chunked transfer coding. Whatever the source has ready is coalesced into
+ * one chunk of up to the chunk size, so many small writes do not each pay for a chunk header, and the last chunk is
+ * appended to the final data chunk.
+ */
+public class ChunkedBody implements ResponseBody {
+    public static final int DEFAULT_CHUNK_SIZE = 16 * 1024;
+    private static final byte[] LAST_CHUNK = "0\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+    // Room for the size in hex of an int and CRLF
+    private static final int HEADER_ROOM = 10;
+
+    private final ResponseBody source;
+    private final int chunkSize;
+    private final ByteBuffer chunk;
+    private final WritableByteChannel chunkChannel = new ChunkChannel();
+    private boolean lastChunkQueued = false;
+
+    /**
+     * @param source    body to frame
+     * @param chunkSize max. number of data bytes per chunk
+     */
+    public ChunkedBody(ResponseBody source, int chunkSize) {
+        this.source = source;
+        this.chunkSize = chunkSize;
+        this.chunk = ByteBuffer.allocate(HEADER_ROOM + chunkSize + 2 + LAST_CHUNK.length);
+        this.chunk.limit(0);
+    }
+
+    /**
+     * @return -1, the length is only known once the source is sent
+     */
+    @Override
+    public long getLength() {
+        return -1;
+    }
+
+    @Override
+    public boolean hasRemaining() {
+        return chunk.hasRemaining() || !lastChunkQueued;
+    }
+
+    @Override
+    public boolean isReady() {
+        return chunk.hasRemaining() || !source.hasRemaining() || source.isReady();
+    }
+
+    @Override
+    public void onReady(Runnable callback) {
+        if (chunk.hasRemaining() || !source.hasRemaining()) {
+            callback.run();
+        } else {
+            source.onReady(callback);
+        }
+    }
+
+    @Override
+    public long transferTo(WritableByteChannel target) throws IOException {
+        if (!chunk.hasRemaining() && !fillChunk()) {
+            return 0;
+        }
+        return target.write(chunk);
+    }
+
+    /**
+     * Frame whatever the source has ready as the next chunk.
+     *
+     * @return false if the source has nothing ready yet
+     */
+    private boolean fillChunk() throws IOException {
+        if (lastChunkQueued) return false;
+        chunk.clear();
+        chunk.position(HEADER_ROOM).limit(HEADER_ROOM + chunkSize);
+        while (chunk.hasRemaining() && source.hasRemaining() && source.isReady()) {
+            if (source.transferTo(chunkChannel) == 0) break;
+        }
+        int length = chunk.position() - HEADER_ROOM;
+        chunk.limit(chunk.capacity());
+        int start = HEADER_ROOM;
+        if (length > 0) {
+            byte[] header = (Integer.toHexString(length) + "\r\n").getBytes(StandardCharsets.US_ASCII);
+            start -= header.length;
+            chunk.put(start, header);
+            chunk.put((byte) '\r').put((byte) '\n');
+        }
+        if (!source.hasRemaining()) {
+            chunk.put(LAST_CHUNK);
+            lastChunkQueued = true;
+        }
+        chunk.limit(chunk.position()).position(start);
+        if (!chunk.hasRemaining()) {
+            // Nothing ready yet
+            chunk.limit(0);
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        source.close();
+    }
+
+    /**
+     * Target of the source that fills the data part of the chunk.
+     */
+    private class ChunkChannel implements WritableByteChannel {
+        @Override
+        public int write(ByteBuffer src) {
+            int length = Math.min(src.remaining(), chunk.remaining());
+            chunk.put(chunk.position(), src, src.position(), length);
+            chunk.position(chunk.position() + length);
+            src.position(src.position() + length);
+            return length;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.server.http;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Locale;
+
+/**
+ * Content codings the server can compress a response with.
+ */
+public enum ContentEncoding {
+    GZIP("gzip"),
+    DEFLATE("deflate");
+    public final String literal;
+
+    ContentEncoding(String literal) {
+        this.literal = literal;
+    }
+
+    /**
+     * Choose the coding the client accepts with the highest quality value, gzip on a tie. A coding the header does
+     * not list is only acceptable through {@code *}.
+     *
+     * @param acceptEncoding value of the Accept-Encoding header field, or null if the request has none
+     * @return preferred coding, or null if the response should not be compressed
+     */
+    @Nullable
+    public static ContentEncoding negotiate(@Nullable String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return null;
+        }
+        float gzip = -1;
+        float deflate = -1;
+        float any = -1;
+        for (String element : acceptEncoding.split(",")) {
+            int semicolon = element.indexOf(';');
+            String coding = (semicolon == -1 ? element : element.substring(0, semicolon)).trim().toLowerCase(Locale.ROOT);
+            float quality = semicolon == -1 ? 1 : parseQuality(element.substring(semicolon + 1));
+            switch (coding) {
+                // x-gzip is an alias kept for old clients
+                case "gzip", "x-gzip" -> gzip = Math.max(gzip, quality);
+                case "deflate" -> deflate = Math.max(deflate, quality);
+                case "*" -> any = quality;
+                default -> {
+                }
+            }
+        }
+        if (gzip == -1) gzip = any;
+        if (deflate == -1) deflate = any;
+        if (gzip <= 0 && deflate <= 0) {
+            return null;
+        }
+        return gzip >= deflate ? GZIP : DEFLATE;
+    }
+
+    /**
+     * Parse the weight of an Accept-Encoding element.
+     *
+     * @param parameters parameters after the coding, e.g. {@code q=0.5}
+     * @return quality value, 0 if it is malformed
+     */
+    private static float parseQuality(String parameters) {
+        String parameter = parameters.trim();
+        if (parameter.length() < 2 || Character.toLowerCase(parameter.charAt(0)) != 'q' || parameter.charAt(1) != '=') {
+            // Any other parameter leaves the default weight
+            return 1;
+        }
+        try {
+            float quality = Float.parseFloat(parameter.substring(2).trim());
+            return quality >= 0 && quality <= 1 ? quality : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.server.http;
+
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Server-wide {@code Date} header field, encoded once per second instead of once per response.
+ * <p>
+ * The field holds the time it was last refreshed, {@link #scheduleRefresh(ScheduledExecutorService)} keeps it current.
+ */
+public final class DateHeader {
+    // IMF-fixdate of RFC 9110, RFC_1123_DATE_TIME would drop the leading zero of the day
+    private static final DateTimeFormatter IMF_FIXDATE =
+            DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US).withZone(ZoneOffset.UTC);
+    private static volatile byte[] encoded = encode(System.currentTimeMillis());
+
+    private DateHeader() {
+    }
+
+    /**
+     * Get the encoded header field, name, value and CRLF. The array is shared and must not be modified.
+     *
+     * @return US-ASCII bytes of the field
+     */
+    public static byte[] get() {
+        return encoded;
+    }
+
+    /**
+     * Encode the current time into the field.
+     */
+    public static void refresh() {
+        encoded = encode(System.currentTimeMillis());
+    }
+
+    /**
+     * Refresh the field at the start of every second.
+     *
+     * @param scheduler scheduler to run the refresh on
+     * @return scheduled refresh
+     */
+    public static ScheduledFuture<?> scheduleRefresh(ScheduledExecutorService scheduler) {
+        refresh();
+        long delay = 1000 - System.currentTimeMillis() % 1000;
+        return scheduler.scheduleAtFixedRate(DateHeader::refresh, delay, 1000, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Format a time as an HTTP date.
+     *
+     * @param epochMillis milliseconds since the epoch
+     * @return date in the IMF-fixdate format
+     */
+    public static String format(long epochMillis) {
+        return IMF_FIXDATE.format(Instant.ofEpochMilli(epochMillis));
+    }
+
+    /**
+     * Parse an HTTP date in the IMF-fixdate format.
+     *
+     * @param date HTTP date
+     * @return milliseconds since the epoch, or -1 if the date is not valid
+     */
+    public static long parse(String date) {
+        try {
+            return Instant.from(IMF_FIXDATE.parse(date)).toEpochMilli();
+        } catch (DateTimeException e) {
+            return -1;
+        }
+    }
+
+    private static byte[] encode(long epochMillis) {
+        return (HttpHeaderFieldName.DATE.headerName + ": " + format(epochMillis) + "\r\n").getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,140 @@
+package com.server.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Response body compressed with a {@link Deflater} while it is sent, one buffer at a time, so the compressed content
+ * never exists as a whole. The length is not known before the end, see {@link ResponseBody#getLength()}.
+ * <p>
+ * gzip framing is written around a raw deflate stream, deflate is the zlib format of RFC 1950, which is what HTTP
+ * calls deflate.
+ */
+public class DeflaterBody implements ResponseBody {
+    public static final int DEFAULT_LEVEL = 6;
+    private static final int BUFFER_SIZE = 32 * 1024;
+    // Magic number, deflate method, no flags, no mtime, no extra flags, unknown OS
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private final ReadableByteChannel source;
+    private final ContentEncoding encoding;
+    private final Deflater deflater;
+    private final CRC32 crc = new CRC32();
+    private final ByteBuffer input = ByteBuffer.allocate(BUFFER_SIZE);
+    private final ByteBuffer output = ByteBuffer.allocate(BUFFER_SIZE);
+    private boolean inputDone = false;
+    private boolean finished = false;
+
+    /**
+     * @param source   content to compress, closed with the body
+     * @param encoding content coding
+     * @param level    compression level from 0 to 9
+     */
+    public DeflaterBody(ReadableByteChannel source, ContentEncoding encoding, int level) {
+        this.source = source;
+        this.encoding = encoding;
+        this.deflater = new Deflater(level, encoding == ContentEncoding.GZIP);
+        if (encoding == ContentEncoding.GZIP) {
+            output.put(GZIP_HEADER);
+        }
+        output.flip();
+        input.flip();
+    }
+
+    /**
+     * Compress the whole content at once.
+     *
+     * @param data     content to compress
+     * @param encoding content coding
+     * @param level    compression level from 0 to 9
+     * @return compressed content
+     */
+    public static byte[] compress(byte[] data, ContentEncoding encoding, int level) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(data.length / 2 + 64);
+        WritableByteChannel target = Channels.newChannel(compressed);
+        try (DeflaterBody body = new DeflaterBody(Channels.newChannel(new ByteArrayInputStream(data)), encoding, level)) {
+            while (body.hasRemaining()) {
+                body.transferTo(target);
+            }
+        } catch (IOException e) {
+            // Neither channel is backed by I/O
+            throw new IllegalStateException(e);
+        }
+        return compressed.toByteArray();
+    }
+
+    /**
+     * @return -1, the compressed length is only known once the body is sent
+     */
+    @Override
+    public long getLength() {
+        return -1;
+    }
+
+    @Override
+    public boolean hasRemaining() {
+        return output.hasRemaining() || !finished;
+    }
+
+    @Override
+    public long transferTo(WritableByteChannel target) throws IOException {
+        if (!output.hasRemaining()) {
+            if (finished) return 0;
+            fillOutput();
+        }
+        return target.write(output);
+    }
+
+    /**
+     * Compress until the output buffer has something to send, reading the source as the deflater needs it.
+     */
+    private void fillOutput() throws IOException {
+        output.clear();
+        while (output.position() == 0 && !finished) {
+            if (deflater.finished()) {
+                if (encoding == ContentEncoding.GZIP) {
+                    putIntLittleEndian((int) crc.getValue());
+                    // ISIZE is the input length modulo 2^32
+                    putIntLittleEndian((int) deflater.getBytesRead());
+                }
+                finished = true;
+            } else if (deflater.needsInput() && !inputDone) {
+                input.clear();
+                int read = source.read(input);
+                input.flip();
+                if (read == -1) {
+                    inputDone = true;
+                    deflater.finish();
+                } else {
+                    if (encoding == ContentEncoding.GZIP) {
+                        crc.update(input.duplicate());
+                    }
+                    deflater.setInput(input);
+                }
+            } else {
+                deflater.deflate(output);
+            }
+        }
+        output.flip();
+    }
+
+    private void putIntLittleEndian(int value) {
+        output.put((byte) value)
+                .put((byte) (value >>> 8))
+                .put((byte) (value >>> 16))
+                .put((byte) (value >>> 24));
+    }
+
+    @Override
+    public void close() throws IOException {
+        deflater.end();
+        source.close();
+    }
+}
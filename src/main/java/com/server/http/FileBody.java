@@ -0,0 +1,86 @@
+package com.server.http;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Response body sent from a region of a file with {@link FileChannel#transferTo}. When the target is a socket channel
+ * the kernel copies the file to the socket itself (sendfile), so the content never passes through the Java heap and
+ * the size is not limited to an array.
+ * <p>
+ * The file is only opened by the first transfer and is closed once the region is sent, so a response that is never
+ * written holds no file handle.
+ */
+public class FileBody implements ResponseBody {
+    private final Path path;
+    private final long length;
+    private final long end;
+    private long position;
+    @Nullable
+    private FileChannel fileChannel;
+
+    /**
+     * @param path     path to the file
+     * @param position offset of the first byte to send
+     * @param length   number of bytes to send
+     */
+    public FileBody(Path path, long position, long length) {
+        this.path = path;
+        this.length = length;
+        this.position = position;
+        this.end = position + length;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    public long getLength() {
+        return length;
+    }
+
+    @Override
+    public boolean hasRemaining() {
+        return position < end;
+    }
+
+    /**
+     * Transfer as much of the rest of the region as the target accepts.
+     *
+     * @param target channel to write to
+     * @return number of bytes transferred, 0 if a non-blocking target is full
+     * @throws EOFException if the file became shorter than the region, after the length was already promised
+     */
+    @Override
+    public long transferTo(WritableByteChannel target) throws IOException {
+        if (!hasRemaining()) return 0;
+        if (fileChannel == null) {
+            fileChannel = FileChannel.open(path, StandardOpenOption.READ);
+        }
+        long transferred = fileChannel.transferTo(position, end - position, target);
+        if (transferred == 0 && position >= fileChannel.size()) {
+            close();
+            throw new EOFException("File truncated while sending: " + path);
+        }
+        position += transferred;
+        if (!hasRemaining()) {
+            close();
+        }
+        return transferred;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (fileChannel != null) {
+            fileChannel.close();
+            fileChannel = null;
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.server.http;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Resumable decoder of a request body framed by {@code Content-Length} or {@code Transfer-Encoding: chunked}.
+ * <p>
+ * Raw bytes are fed in chunks of any size and the body bytes are copied into an output buffer as far as it has room,
+ * so a body of any length is decoded in the memory of the two buffers. The decoder never reads past the end of the
+ * body, whatever follows it stays in the input buffer for the next request.
+ */
+public class HttpBodyDecoder {
+    private static final int MAX_CHUNK_LINE_LENGTH = 4096;
+    private static final byte CR = 0x0D;
+    private static final byte LF = 0x0A;
+
+    private enum State {
+        DATA,
+        CHUNK_SIZE,
+        CHUNK_SIZE_LF,
+        CHUNK_DATA_CR,
+        CHUNK_DATA_LF,
+        TRAILER,
+        TRAILER_LF,
+        DONE
+    }
+
+    private final boolean chunked;
+    private final long maxBodySize;
+    private State state;
+    // Bytes left in the body, or in the current chunk
+    private long remaining;
+    private long decodedLength = 0;
+    private long chunkSize;
+    private int chunkSizeDigits;
+    private int lineLength;
+    private boolean inChunkExtension;
+    @Nullable
+    private HttpParsingException error;
+
+    private HttpBodyDecoder(long contentLength, boolean chunked, long maxBodySize) {
+        this.chunked = chunked;
+        this.maxBodySize = maxBodySize;
+        this.remaining = contentLength;
+        this.state = chunked ? State.CHUNK_SIZE : State.DATA;
+    }
+
+    /**
+     * Create the decoder for the body announced by the request head.
+     *
+     * @param request     parsed request head
+     * @param maxBodySize max. number of body bytes accepted
+     * @return body decoder, or null if the request has no body
+     */
+    @Nullable
+    public static HttpBodyDecoder forRequest(HttpRequest request, long maxBodySize) throws HttpParsingException {
+        String transferEncoding = request.getHeaderFields(HttpHeaderFieldName.TRANSFER_ENCODING);
+        String contentLength = request.getHeaderFields(HttpHeaderFieldName.CONTENT_LENGTH);
+        if (transferEncoding != null) {
+            // Both framings at once is a classic request smuggling vector
+            if (contentLength != null) {
+                throw new HttpParsingException(HttpStatusCode.CLIENT_ERROR_400_BAD_REQUEST);
+            }
+            if (!transferEncoding.trim().equalsIgnoreCase("chunked")) {
+                throw new HttpParsingException(HttpStatusCode.SERVER_ERROR_501_NOT_IMPLEMENTED);
+            }
+            return new HttpBodyDecoder(0, true, maxBodySize);
+        }
+        if (contentLength == null) {
+            return null;
+        }
+
+        long length = parseContentLength(contentLength);
+        if (length > maxBodySize) {
+            throw new HttpParsingException(HttpStatusCode.CLIENT_ERROR_413_CONTENT_TOO_LARGE);
+        }
+        return length == 0 ? null : new HttpBodyDecoder(length, false, maxBodySize);
+    }
+
+    public boolean isComplete() {
+        return state == State.DONE;
+    }
+
+    /**
+     * Get the number of body bytes decoded so far.
+     *
+     * @return decoded length
+     */
+    public long getDecodedLength() {
+        return decodedLength;
+    }
+
+    /**
+     * Decode body bytes from the input into the output until the body is complete, the input is empty or the output
+     * is full.
+     *
+     * @param input  raw bytes in read mode
+     * @param output body bytes in write mode
+     */
+    public void decode(ByteBuffer input, ByteBuffer output) throws HttpParsingException {
+        if (error != null) {
+            throw error;
+        }
+        try {
+            while (state != State.DONE && input.hasRemaining()) {
+                if (state == State.DATA) {
+                    if (!copyData(input, output)) return;
+                } else {
+                    decodeFraming(input.get());
+                }
+            }
+        } catch (HttpParsingException e) {
+            error = e;
+            throw e;
+        }
+    }
+
+    /**
+     * Copy the data of the body or current chunk in bulk.
+     *
+     * @return false if the output is full
+     */
+    private boolean copyData(ByteBuffer input, ByteBuffer output) {
+        int length = (int) Math.min(remaining, Math.min(input.remaining(), output.remaining()));
+        if (length == 0) {
+            return false;
+        }
+        output.put(output.position(), input, input.position(), length);
+        output.position(output.position() + length);
+        input.position(input.position() + length);
+        remaining -= length;
+        decodedLength += length;
+        if (remaining == 0) {
+            state = chunked ? State.CHUNK_DATA_CR : State.DONE;
+        }
+        return true;
+    }
+
+    /**
+     * Process a byte of the chunked framing: chunk size lines, the CRLF after each chunk and the trailer section.
+     *
+     * @param b next input byte
+     */
+    private void decodeFraming(byte b) throws HttpParsingException {
+        if (++lineLength > MAX_CHUNK_LINE_LENGTH) {
+            throw new HttpParsingException(HttpStatusCode.CLIENT_ERROR_400_BAD_REQUEST);
+        }
+        switch (state) {
+            case CHUNK_SIZE -> {
+                int digit = Character.digit(b, 16);
+                if (b == CR) {
+                    state = State.CHUNK_SIZE_LF;
+                } else if (inChunkExtension) {
+                    // Chunk extensions are ignored
+                } else if (b == ';') {
+                    inChunkExtension = true;
+                } else if (digit != -1 && chunkSizeDigits < 15) {
+                    chunkSize = chunkSize * 16 + digit;
+                    chunkSizeDigits++;
+                } else {
+                    throw new HttpParsingException(HttpStatusCode.CLIENT_ERROR_400_BAD_REQUEST);
+                }
+            }
+            case CHUNK_SIZE_LF -> {
+                expect(b, LF);
+                if (chunkSizeDigits == 0) {
+                    throw new HttpParsingException(HttpStatusCode.CLIENT_ERROR_400_BAD_REQUEST);
+                }
+                if (decodedLength + chunkSize > maxBodySize) {
+                    throw new HttpParsingException(HttpStatusCode.CLIENT_ERROR_413_CONTENT_TOO_LARGE);
+                }
+                remaining = chunkSize;
+                state = chunkSize == 0 ? State.TRAILER : State.DATA;
+                startLine();
+            }
+            case CHUNK_DATA_CR -> {
+                expect(b, CR);
+                state = State.CHUNK_DATA_LF;
+            }
+            case CHUNK_DATA_LF -> {
+                expect(b, LF);
+                state = State.CHUNK_SIZE;
+                startLine();
+            }
+            case TRAILER -> {
+                // Trailer fields are ignored, only the empty line ending them matters
+                if (b == CR) {
+                    state = State.TRAILER_LF;
+                }
+            }
+            case TRAILER_LF -> {
+                expect(b, LF);
+                state = lineLength == 2 ? State.DONE : State.TRAILER;
+                startLine();
+            }
+            default -> throw new IllegalStateException("Unexpected state: " + state);
+        }
+    }
+
+    private void startLine() {
+        chunkSize = 0;
+        chunkSizeDigits = 0;
+        inChunkExtension = false;
+        lineLength = 0;
+    }
+
+    private static void expect(byte actual, byte expected) throws HttpParsingException {
+        if (actual != expected) {
+            throw new HttpParsingException(HttpStatusCode.CLIENT_ERROR_400_BAD_REQUEST);
+        }
+    }
+
+    /**
+     * Parse the value of the `Content-Length` header field, which must be a plain decimal number.
+     *
+     * @param value header field value
+     * @return body length
+     */
+    private static long parseContentLength(String value) throws HttpParsingException {
+        if (value.isEmpty() || value.length() > 18) {
+            throw new HttpParsingException(HttpStatusCode.CLIENT_ERROR_400_BAD_REQUEST);
+        }
+        long length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new HttpParsingException(HttpStatusCode.CLIENT_ERROR_400_BAD_REQUEST);
+            }
+            length = length * 10 + (c - '0');
+        }
+        return length;
+    }
+}
@@ -0,0 +1,80 @@
+package com.server.http;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Request body read from a blocking connection. The body is decoded straight from the read buffer of the connection
+ * into the caller's array, and the buffer is refilled from the socket only when it runs out, so the body is never
+ * held in memory as a whole.
+ */
+public class HttpBodyInputStream extends InputStream {
+    private final HttpBodyDecoder decoder;
+    private final ByteBuffer buffer;
+    private final InputStream source;
+
+    /**
+     * Create the body stream of a request.
+     *
+     * @param decoder decoder of the body framing
+     * @param buffer  read buffer of the connection in read mode, positioned right after the request head
+     * @param source  input stream of the socket
+     */
+    public HttpBodyInputStream(HttpBodyDecoder decoder, ByteBuffer buffer, InputStream source) {
+        this.decoder = decoder;
+        this.buffer = buffer;
+        this.source = source;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        ByteBuffer output = ByteBuffer.wrap(b, off, len);
+        while (!decoder.isComplete()) {
+            try {
+                decoder.decode(buffer, output);
+            } catch (HttpParsingException e) {
+                throw new RequestBodyException(e.getErrorCode());
+            }
+            if (output.position() > off) {
+                return output.position() - off;
+            }
+            if (!decoder.isComplete()) {
+                fill();
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Check if the whole body has been read.
+     *
+     * @return True if the next request starts at the buffer position
+     */
+    public boolean isComplete() {
+        return decoder.isComplete();
+    }
+
+    /**
+     * Read more bytes from the socket into the buffer, which the decoder has fully consumed.
+     */
+    private void fill() throws IOException {
+        buffer.clear();
+        int read = source.read(buffer.array(), buffer.arrayOffset(), buffer.capacity());
+        if (read == -1) {
+            buffer.limit(0);
+            throw new EOFException("Connection closed in the middle of the request body");
+        }
+        buffer.limit(read);
+    }
+}
@@ -1,11 +1,92 @@
 package com.server.http;
 
+import com.server.util.Bytes;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Well-known header field names. {@link HttpHeaders} stores them as a slot number, so looking them up compares ints
+ * instead of strings.
+ */
 public enum HttpHeaderFieldName {
+    HOST("Host"),
     CONTENT_TYPE("Content-Type"),
-    CONTENT_LENGTH("Content-Length");
+    CONTENT_LENGTH("Content-Length"),
+    CONNECTION("Connection"),
+    KEEP_ALIVE("Keep-Alive"),
+    TRANSFER_ENCODING("Transfer-Encoding"),
+    ALLOW("Allow"),
+    DATE("Date"),
+    SERVER("Server"),
+    ETAG("ETag"),
+    LAST_MODIFIED("Last-Modified"),
+    CACHE_CONTROL("Cache-Control"),
+    IF_NONE_MATCH("If-None-Match"),
+    IF_MODIFIED_SINCE("If-Modified-Since"),
+    RANGE("Range"),
+    IF_RANGE("If-Range"),
+    ACCEPT_RANGES("Accept-Ranges"),
+    CONTENT_RANGE("Content-Range"),
+    CONTENT_ENCODING("Content-Encoding"),
+    VARY("Vary"),
+    UPGRADE("Upgrade"),
+    ORIGIN("Origin"),
+    USER_AGENT("User-Agent"),
+    ACCEPT("Accept"),
+    ACCEPT_ENCODING("Accept-Encoding"),
+    ACCEPT_LANGUAGE("Accept-Language"),
+    COOKIE("Cookie"),
+    SEC_WEBSOCKET_KEY("Sec-WebSocket-Key"),
+    SEC_WEBSOCKET_VERSION("Sec-WebSocket-Version"),
+    SEC_WEBSOCKET_ACCEPT("Sec-WebSocket-Accept"),
+    SEC_WEBSOCKET_EXTENSIONS("Sec-WebSocket-Extensions"),
+    SEC_WEBSOCKET_PROTOCOL("Sec-WebSocket-Protocol");
+    private static final HttpHeaderFieldName[] VALUES = values();
     public final String headerName;
+    // Name followed by the colon and space, as written into a response head
+    final byte[] encodedName;
 
     HttpHeaderFieldName(String headerName) {
         this.headerName = headerName;
+        this.encodedName = (headerName + ": ").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Find the well-known name equal to the provided one, ignoring case.
+     *
+     * @param name header field name
+     * @return matching well-known name, or null if there is none
+     */
+    @Nullable
+    public static HttpHeaderFieldName fromName(String name) {
+        for (HttpHeaderFieldName fieldName : VALUES) {
+            if (fieldName.headerName.length() == name.length() && fieldName.headerName.equalsIgnoreCase(name)) {
+                return fieldName;
+            }
+        }
+        return null;
+    }
+
+    static HttpHeaderFieldName fromOrdinal(int ordinal) {
+        return VALUES[ordinal];
+    }
+
+    /**
+     * Find the well-known name equal to the raw bytes, ignoring case, without decoding them.
+     *
+     * @param array  source array
+     * @param offset start of the name
+     * @param length length of the name
+     * @return matching well-known name, or null if there is none
+     */
+    @Nullable
+    public static HttpHeaderFieldName fromBytes(byte[] array, int offset, int length) {
+        for (HttpHeaderFieldName fieldName : VALUES) {
+            if (Bytes.equalsIgnoreCaseAscii(array, offset, length, fieldName.headerName)) {
+                return fieldName;
+            }
+        }
+        return null;
     }
 }
@@ -0,0 +1,241 @@
+package com.server.http;
+
+import com.server.util.Bytes;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Header fields of an HTTP message, kept in insertion order in flat arrays.
+ * <p>
+ * Each field has a slot: the ordinal of its {@link HttpHeaderFieldName} for well-known names, or {@code OTHER}.
+ * Lookups by a well-known name only compare slots, other names are compared ignoring ASCII case, so no lookup
+ * allocates. A name may occur several times, every value is kept.
+ * <p>
+ * Fields of a parsed request stay slices of the raw head; their names and values are only decoded when asked for.
+ */
+public class HttpHeaders {
+    private static final byte OTHER = -1;
+    private static final int INITIAL_CAPACITY = 8;
+
+    // Raw head and four ints per parsed field (name offset, name length, value offset, value length), if parsed
+    @Nullable
+    private final byte[] source;
+    private final int[] sourceSlices;
+    private String[] names;
+    private String[] values;
+    private byte[] slots;
+    private int size;
+
+    public HttpHeaders() {
+        this.source = null;
+        this.sourceSlices = new int[0];
+        this.names = new String[INITIAL_CAPACITY];
+        this.values = new String[INITIAL_CAPACITY];
+        this.slots = new byte[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Create the header fields of a parsed request head. Only the slots are resolved here.
+     *
+     * @param source raw head
+     * @param slices four ints per field: name offset, name length, value offset, value length
+     * @param count  number of fields
+     */
+    HttpHeaders(byte[] source, int[] slices, int count) {
+        this.source = source;
+        this.sourceSlices = slices;
+        int capacity = Math.max(count, INITIAL_CAPACITY);
+        this.names = new String[capacity];
+        this.values = new String[capacity];
+        this.slots = new byte[capacity];
+        for (int i = 0; i < count; i++) {
+            HttpHeaderFieldName fieldName = HttpHeaderFieldName.fromBytes(source, slices[i * 4], slices[i * 4 + 1]);
+            slots[i] = fieldName != null ? (byte) fieldName.ordinal() : OTHER;
+        }
+        this.size = count;
+    }
+
+    /**
+     * Create a copy of the header fields.
+     *
+     * @param other header fields to copy
+     */
+    public HttpHeaders(HttpHeaders other) {
+        this.source = other.source;
+        this.sourceSlices = other.sourceSlices;
+        this.names = Arrays.copyOf(other.names, other.names.length);
+        this.values = Arrays.copyOf(other.values, other.values.length);
+        this.slots = Arrays.copyOf(other.slots, other.slots.length);
+        this.size = other.size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the name of the field at the index. Well-known names are returned in their canonical form.
+     *
+     * @param index index of the field in insertion order
+     * @return header field name
+     */
+    public String getName(int index) {
+        if (names[index] == null) {
+            names[index] = slots[index] != OTHER
+                    ? HttpHeaderFieldName.fromOrdinal(slots[index]).headerName
+                    : decode(sourceSlices[index * 4], sourceSlices[index * 4 + 1]);
+        }
+        return names[index];
+    }
+
+    /**
+     * Get the well-known name of the field at the index.
+     *
+     * @param index index of the field in insertion order
+     * @return well-known name, or null if the name is not one
+     */
+    @Nullable
+    public HttpHeaderFieldName getWellKnownName(int index) {
+        return slots[index] != OTHER ? HttpHeaderFieldName.fromOrdinal(slots[index]) : null;
+    }
+
+    /**
+     * Get the value of the field at the index.
+     *
+     * @param index index of the field in insertion order
+     * @return header field value
+     */
+    public String getValue(int index) {
+        if (values[index] == null) {
+            values[index] = decode(sourceSlices[index * 4 + 2], sourceSlices[index * 4 + 3]);
+        }
+        return values[index];
+    }
+
+    /**
+     * Append a header field. A name that is already present gets another value instead of being replaced.
+     *
+     * @param fieldName  Header field name
+     * @param fieldValue Header field value
+     */
+    public void add(String fieldName, String fieldValue) {
+        HttpHeaderFieldName wellKnown = HttpHeaderFieldName.fromName(fieldName);
+        append(fieldName, fieldValue, wellKnown != null ? (byte) wellKnown.ordinal() : OTHER);
+    }
+
+    public void add(HttpHeaderFieldName fieldName, String fieldValue) {
+        append(fieldName.headerName, fieldValue, (byte) fieldName.ordinal());
+    }
+
+    /**
+     * Get the value of the header field. Several fields with the name are combined into one comma separated value,
+     * as defined for list-based fields by RFC 9110.
+     *
+     * @param fieldName Target header field name, case-insensitive
+     * @return Header field value, or null if there is none
+     */
+    @Nullable
+    public String get(String fieldName) {
+        HttpHeaderFieldName wellKnown = HttpHeaderFieldName.fromName(fieldName);
+        return wellKnown != null ? get(wellKnown) : combine(fieldName, OTHER);
+    }
+
+    @Nullable
+    public String get(HttpHeaderFieldName fieldName) {
+        return combine(fieldName.headerName, (byte) fieldName.ordinal());
+    }
+
+    /**
+     * Get every value of the header field, in the order they were received.
+     *
+     * @param fieldName Target header field name, case-insensitive
+     * @return values of all fields with the name
+     */
+    public List<String> getAll(String fieldName) {
+        HttpHeaderFieldName wellKnown = HttpHeaderFieldName.fromName(fieldName);
+        byte slot = wellKnown != null ? (byte) wellKnown.ordinal() : OTHER;
+        List<String> all = new ArrayList<>();
+        for (int i = indexOf(fieldName, slot, 0); i != -1; i = indexOf(fieldName, slot, i + 1)) {
+            all.add(getValue(i));
+        }
+        return all;
+    }
+
+    public boolean contains(HttpHeaderFieldName fieldName) {
+        return indexOf(fieldName.headerName, (byte) fieldName.ordinal(), 0) != -1;
+    }
+
+    /**
+     * Get the distinct names of all fields.
+     *
+     * @return lower-cased header field names
+     */
+    public Set<String> names() {
+        Set<String> distinct = new LinkedHashSet<>();
+        for (int i = 0; i < size; i++) {
+            distinct.add(getName(i).toLowerCase(Locale.ROOT));
+        }
+        return distinct;
+    }
+
+    @Nullable
+    private String combine(String fieldName, byte slot) {
+        int first = indexOf(fieldName, slot, 0);
+        if (first == -1) {
+            return null;
+        }
+        int next = indexOf(fieldName, slot, first + 1);
+        if (next == -1) {
+            return getValue(first);
+        }
+        StringBuilder combined = new StringBuilder(getValue(first));
+        for (; next != -1; next = indexOf(fieldName, slot, next + 1)) {
+            combined.append(", ").append(getValue(next));
+        }
+        return combined.toString();
+    }
+
+    /**
+     * Find the next field with the name.
+     *
+     * @param fieldName header field name, only compared if the slot is {@code OTHER}
+     * @param slot      slot of the name
+     * @param from      index to start from
+     * @return index of the field, or -1 if there is none
+     */
+    private int indexOf(String fieldName, byte slot, int from) {
+        for (int i = from; i < size; i++) {
+            if (slots[i] != slot) continue;
+            if (slot != OTHER) return i;
+            boolean matches = names[i] != null
+                    ? names[i].equalsIgnoreCase(fieldName)
+                    : Bytes.equalsIgnoreCaseAscii(source, sourceSlices[i * 4], sourceSlices[i * 4 + 1], fieldName);
+            if (matches) return i;
+        }
+        return -1;
+    }
+
+    private void append(String fieldName, String fieldValue, byte slot) {
+        if (size == slots.length) {
+            int capacity = size * 2;
+            names = Arrays.copyOf(names, capacity);
+            values = Arrays.copyOf(values, capacity);
+            slots = Arrays.copyOf(slots, capacity);
+        }
+        names[size] = fieldName;
+        values[size] = fieldValue;
+        slots[size] = slot;
+        size++;
+    }
+
+    private String decode(int offset, int length) {
+        return new String(source, offset, length, StandardCharsets.US_ASCII);
+    }
+}
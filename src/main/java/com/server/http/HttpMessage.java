@@ -2,29 +2,38 @@ package com.server.http;
 
 import org.jetbrains.annotations.Nullable;
 
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Set;
 
 /**
  * Abstract class for HTTP response and request.
  */
 public abstract class HttpMessage {
-    private final HashMap<String, String> headerFields = new HashMap<>();
+    private HttpHeaders headers = new HttpHeaders();
     private byte[] messageBody = new byte[0];
 
     public String toString() {
         String res = "";
-        for (Map.Entry<String, String> entry : headerFields.entrySet()) {
-            String key = entry.getKey();
-            Object value = entry.getValue();
-            res = String.format("%s%s: %s\n", res, key, value);
+        for (int i = 0; i < headers.size(); i++) {
+            res = String.format("%s%s: %s\n", res, headers.getName(i), headers.getValue(i));
         }
         return res;
     }
 
+    public HttpHeaders getHeaders() {
+        return headers;
+    }
+
+    void setHeaders(HttpHeaders headers) {
+        this.headers = headers;
+    }
+
+    /**
+     * Get the distinct header field names.
+     *
+     * @return lower-cased header field names
+     */
     public Set<String> getHeaderFieldNames() {
-        return headerFields.keySet();
+        return headers.names();
     }
 
     public byte[] getMessageBody() {
@@ -36,23 +45,32 @@ public abstract class HttpMessage {
     }
 
     /**
-     * Add new header field.
+     * Add new header field. A field with the same name does not replace the existing one.
      *
      * @param fieldName  Header field name
      * @param fieldValue Header field value
      */
     void addHeaderField(String fieldName, String fieldValue) {
-        headerFields.put(fieldName.toLowerCase(), fieldValue);
+        headers.add(fieldName, fieldValue);
+    }
+
+    void addHeaderField(HttpHeaderFieldName fieldName, String fieldValue) {
+        headers.add(fieldName, fieldValue);
     }
 
     /**
-     * Get header field value by field name.
+     * Get header field value by field name. Values of repeated fields are combined, separated by commas.
      *
      * @param fieldName Target header field name
      * @return Header field value
      */
     @Nullable
     public String getHeaderFields(String fieldName) {
-        return headerFields.get(fieldName.toLowerCase());
+        return headers.get(fieldName);
+    }
+
+    @Nullable
+    public String getHeaderFields(HttpHeaderFieldName fieldName) {
+        return headers.get(fieldName);
     }
 }
@@ -1,9 +1,17 @@
 package com.server.http;
 
+import com.server.util.Bytes;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.charset.StandardCharsets;
+
 public enum HttpMethod {
-    GET;
+    GET,
+    POST,
+    PUT;
 
     public static final int MAX_LENGTH;
+    private final byte[] nameBytes = name().getBytes(StandardCharsets.US_ASCII);
 
     static {
         int tempMaxLength = -1;
@@ -14,4 +22,20 @@ public enum HttpMethod {
         }
         MAX_LENGTH = tempMaxLength;
     }
+
+    /**
+     * Find the method whose name equals the raw bytes, without decoding them.
+     *
+     * @param array  source array
+     * @param offset start of the method token
+     * @param length length of the method token
+     * @return matching method, or null if it is not supported
+     */
+    @Nullable
+    public static HttpMethod fromBytes(byte[] array, int offset, int length) {
+        for (HttpMethod method : values()) {
+            if (Bytes.equals(array, offset, length, method.nameBytes)) return method;
+        }
+        return null;
+    }
 }
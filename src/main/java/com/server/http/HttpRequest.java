@@ -1,7 +1,10 @@
 package com.server.http;
 
 import org.apache.commons.codec.digest.DigestUtils;
+import org.jetbrains.annotations.Nullable;
 
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Base64;
 
 /**
@@ -11,6 +14,12 @@ public class HttpRequest extends HttpMessage {
     private HttpMethod method;
     private String requestTarget;
     private HttpVersion httpVersion;
+    // Raw head holding the request target until it is asked for
+    @Nullable
+    private byte[] rawHead;
+    private int targetOffset;
+    private int targetLength;
+    private InputStream body = InputStream.nullInputStream();
 
     public HttpMethod getMethod() {
         return method;
@@ -33,6 +42,10 @@ public class HttpRequest extends HttpMessage {
         );
     }
 
+    void setMethod(HttpMethod method) {
+        this.method = method;
+    }
+
     public HttpVersion getHttpVersion() {
         return httpVersion;
     }
@@ -46,7 +59,14 @@ public class HttpRequest extends HttpMessage {
         this.httpVersion = HttpVersion.fromString(httpVersionString);
     }
 
+    void setHttpVersion(HttpVersion httpVersion) {
+        this.httpVersion = httpVersion;
+    }
+
     public String getRequestTarget() {
+        if (requestTarget == null && rawHead != null) {
+            requestTarget = new String(rawHead, targetOffset, targetLength, StandardCharsets.US_ASCII);
+        }
         return requestTarget;
     }
 
@@ -57,21 +77,80 @@ public class HttpRequest extends HttpMessage {
         this.requestTarget = requestTarget;
     }
 
+    /**
+     * Set the request target as a slice of the raw head, it is only decoded when asked for.
+     *
+     * @param rawHead raw head of the request
+     * @param offset  start of the request target
+     * @param length  length of the request target
+     */
+    void setRequestTarget(byte[] rawHead, int offset, int length) {
+        this.rawHead = rawHead;
+        this.targetOffset = offset;
+        this.targetLength = length;
+    }
+
+    /**
+     * Get the request body as a stream. It is read from the connection while the request is handled, so it can be
+     * read only once and is never held in memory as a whole.
+     *
+     * @return body stream, empty if the request has no body
+     */
+    public InputStream getBody() {
+        return body;
+    }
+
+    public void setBody(InputStream body) {
+        this.body = body;
+    }
+
     /**
      * Check if the HTTP request is a WebSocket handshake.
      *
      * @return True if it is a WebSocket handshake
      */
     public boolean isWebsocketHandshake() {
-        final String websocketKeyValue = getHeaderFields("Sec-WebSocket-Key");
-        return hasHeaderField("Host")
-                && hasHeaderValue("Upgrade", "websocket")
-                && hasHeaderValue("Connection", "Upgrade")
-                && hasHeaderField("Origin")
-                && hasHeaderField("Sec-WebSocket-Key")
+        final String websocketKeyValue = getHeaderFields(HttpHeaderFieldName.SEC_WEBSOCKET_KEY);
+        return hasHeaderField(HttpHeaderFieldName.HOST)
+                && hasHeaderValue(HttpHeaderFieldName.UPGRADE, "websocket")
+                && hasHeaderValue(HttpHeaderFieldName.CONNECTION, "Upgrade")
+                && hasHeaderField(HttpHeaderFieldName.ORIGIN)
                 && websocketKeyValue != null
                 && websocketKeyValue.length() == 24 // Base64 encoded 16 byte nonce should have 24 characters
-                && "13".equals(getHeaderFields("Sec-WebSocket-Version"));
+                && "13".equals(getHeaderFields(HttpHeaderFieldName.SEC_WEBSOCKET_VERSION));
+    }
+
+    /**
+     * Check if the client wants to keep the connection open after the response. HTTP/1.1 connections are persistent
+     * unless the client sends {@code Connection: close}, HTTP/1.0 connections only if it sends
+     * {@code Connection: keep-alive}.
+     *
+     * @return True if the connection should be kept open
+     */
+    public boolean isKeepAlive() {
+        if (hasConnectionOption("close")) {
+            return false;
+        }
+        return httpVersion == HttpVersion.HTTP_1_1 || hasConnectionOption("keep-alive");
+    }
+
+    /**
+     * Check that the comma separated `Connection` header field contains the option, ignoring case.
+     *
+     * @param option Target connection option
+     * @return True if the option is present
+     */
+    private boolean hasConnectionOption(String option) {
+        String connection = getHeaderFields(HttpHeaderFieldName.CONNECTION);
+        if (connection == null) {
+            return false;
+        }
+        for (String token : connection.split(",")) {
+            if (token.trim().equalsIgnoreCase(option)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
@@ -80,8 +159,8 @@ public class HttpRequest extends HttpMessage {
      * @param fieldName Target header field name
      * @return True if the request has header field
      */
-    private boolean hasHeaderField(String fieldName) {
-        return getHeaderFields(fieldName) != null;
+    private boolean hasHeaderField(HttpHeaderFieldName fieldName) {
+        return getHeaders().contains(fieldName);
     }
 
 
@@ -92,7 +171,7 @@ public class HttpRequest extends HttpMessage {
      * @param value     Target header field value
      * @return True if the request has the value in the header field
      */
-    private boolean hasHeaderValue(String fieldName, String value) {
+    private boolean hasHeaderValue(HttpHeaderFieldName fieldName, String value) {
         String headerValue = getHeaderFields(fieldName);
         return headerValue != null && headerValue.contains(value);
     }
@@ -103,7 +182,7 @@ public class HttpRequest extends HttpMessage {
      * @return Handshake header field value for `Sec-WebSocket-Accept`
      */
     public String generateSecWebsocketAcceptFieldValue() throws HttpParsingException {
-        final String websocketKeyValue = getHeaderFields("Sec-WebSocket-Key");
+        final String websocketKeyValue = getHeaderFields(HttpHeaderFieldName.SEC_WEBSOCKET_KEY);
         if (websocketKeyValue == null || websocketKeyValue.length() != 24) {
             // Base64 encoded 16 byte nonce should have 24 characters
             throw new HttpParsingException(HttpStatusCode.CLIENT_ERROR_400_BAD_REQUEST);
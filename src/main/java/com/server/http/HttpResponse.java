@@ -1,55 +1,94 @@
 package com.server.http;
 
+import org.jetbrains.annotations.Nullable;
+
 /**
  * A class to hold HTTP response data.
  */
 public class HttpResponse extends HttpMessage {
     private final String httpVersion;
+    @Nullable
+    private final HttpVersion version;
     private final HttpStatusCode statusCode;
+    @Nullable
+    private final ResponseBody responseBody;
+    private final boolean delimitedByClose;
 
     private HttpResponse(HttpResponse.Builder builder) {
         this.httpVersion = builder.httpVersion;
+        this.version = HttpVersion.fromLiteral(builder.httpVersion);
         this.statusCode = builder.statusCode;
-        builder.getHeaderFieldNames().forEach(name -> this.addHeaderField(name, builder.getHeaderFields(name)));
         this.setMessageBody(builder.getMessageBody());
+        this.responseBody = builder.responseBody;
+        HttpHeaders builderHeaders = builder.getHeaders();
+        this.delimitedByClose = responseBody != null && responseBody.getLength() == -1
+                && version != HttpVersion.HTTP_1_1
+                && !builderHeaders.contains(HttpHeaderFieldName.CONTENT_LENGTH)
+                && !builderHeaders.contains(HttpHeaderFieldName.TRANSFER_ENCODING);
+        this.setHeaders(delimitedByClose ? withConnectionClose(builderHeaders) : new HttpHeaders(builderHeaders));
     }
 
-    public String getReasonPhrase() {
-        if (statusCode != null) {
-            return statusCode.MESSAGE;
+    /**
+     * Copy the header fields, replacing the Connection field with {@code close}.
+     *
+     * @param headers header fields of the builder
+     * @return copied header fields
+     */
+    private static HttpHeaders withConnectionClose(HttpHeaders headers) {
+        HttpHeaders copy = new HttpHeaders();
+        for (int i = 0; i < headers.size(); i++) {
+            if (headers.getWellKnownName(i) != HttpHeaderFieldName.CONNECTION) {
+                copy.add(headers.getName(i), headers.getValue(i));
+            }
         }
-        return null;
+        copy.add(HttpHeaderFieldName.CONNECTION, "close");
+        return copy;
+    }
+
+    public String getHttpVersion() {
+        return httpVersion;
     }
 
     /**
-     * Generate a byte array to be sent to clients.
+     * Get the version of the response if it is a supported one.
      *
-     * @return Byte array of the response data
+     * @return HTTP version, or null if the version string is not a supported literal
      */
-    public byte[] generateResponseBytes() {
-        StringBuilder responseBuilder = new StringBuilder();
-        String CRLF = "\r\n";
-
-        responseBuilder.append(httpVersion)
-                .append(" ")
-                .append(statusCode.STATUS_CODE)
-                .append(" ")
-                .append(getReasonPhrase())
-                .append(CRLF);
-        for (String headerName : getHeaderFieldNames()) {
-            responseBuilder.append(headerName)
-                    .append(": ")
-                    .append(getHeaderFields(headerName))
-                    .append(CRLF);
+    @Nullable
+    public HttpVersion getVersion() {
+        return version;
+    }
+
+    public HttpStatusCode getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * Get the body to write to the channel after the head, instead of the message body.
+     *
+     * @return response body, or null if the body is the message body
+     */
+    @Nullable
+    public ResponseBody getResponseBody() {
+        return responseBody;
+    }
+
+    /**
+     * Check if only closing the connection delimits the body: its length is unknown, no Content-Length or
+     * Transfer-Encoding is set, and chunked framing needs HTTP/1.1. Such a response always has
+     * {@code Connection: close}, and the connection must be closed once it is sent, whatever the request asked for.
+     *
+     * @return true if the connection has to be closed after the response
+     */
+    public boolean isDelimitedByClose() {
+        return delimitedByClose;
+    }
+
+    public String getReasonPhrase() {
+        if (statusCode != null) {
+            return statusCode.MESSAGE;
         }
-        responseBuilder.append(CRLF);
-        byte[] responseBytes = responseBuilder.toString().getBytes();
-        if (getMessageBody().length == 0)
-            return responseBytes;
-        byte[] responseWithBody = new byte[responseBytes.length + getMessageBody().length];
-        System.arraycopy(responseBytes, 0, responseWithBody, 0, responseBytes.length);
-        System.arraycopy(getMessageBody(), 0, responseWithBody, responseBytes.length, getMessageBody().length);
-        return responseWithBody;
+        return null;
     }
 
     /**
@@ -58,6 +97,8 @@ public class HttpResponse extends HttpMessage {
     public static class Builder extends HttpMessage {
         private String httpVersion;
         private HttpStatusCode statusCode;
+        @Nullable
+        private ResponseBody responseBody;
 
         public Builder httpVersion(String httpVersion) {
             this.httpVersion = httpVersion;
@@ -74,10 +115,26 @@ public class HttpResponse extends HttpMessage {
             return this;
         }
 
+        public Builder addHeader(HttpHeaderFieldName headerName, String headerField) {
+            this.addHeaderField(headerName, headerField);
+            return this;
+        }
+
         public void messageBody(byte[] messageBody) {
             this.setMessageBody(messageBody);
         }
 
+        /**
+         * Send the body from a file or a mapping instead of the message body. The Content-Length is not set by this
+         * method.
+         *
+         * @param responseBody body written to the channel
+         */
+        public Builder responseBody(ResponseBody responseBody) {
+            this.responseBody = responseBody;
+            return this;
+        }
+
         public HttpResponse build() {
             return new HttpResponse(this);
         }
@@ -0,0 +1,145 @@
+package com.server.http;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+
+/**
+ * Encoder of HTTP responses into buffers for a gathering write.
+ * <p>
+ * The status line and header fields are written as ASCII straight into a reusable head buffer, and the body array is
+ * only wrapped, never copied, so a large file costs no more than its own array. The heads of several pipelined
+ * responses share the head buffer until {@link #reset()}.
+ * <p>
+ * Status lines, well-known header names and the {@code Date} and {@code Server} fields are pre-encoded, so they are
+ * copied as bytes. {@code Date} and {@code Server} are added to every response that does not set them itself.
+ * <p>
+ * A {@link ResponseBody} is not encoded, the caller sends the body returned by {@link #encode} after the head. A body
+ * of unknown length without a Content-Length is framed with the chunked transfer coding for HTTP/1.1, older clients
+ * only see its end when the connection is closed.
+ * <p>
+ * Not thread-safe, one encoder per connection.
+ */
+public class HttpResponseEncoder {
+    public static final int DEFAULT_HEAD_BUFFER_SIZE = 4 * 1024;
+    public static final String SERVER_NAME = "barebone-http-ws-server";
+    private static final byte[] SERVER_FIELD =
+            (HttpHeaderFieldName.SERVER.headerName + ": " + SERVER_NAME + "\r\n").getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CHUNKED_FIELD =
+            (HttpHeaderFieldName.TRANSFER_ENCODING.headerName + ": chunked\r\n").getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NO_FIELD = new byte[0];
+    private static final byte SP = 0x20;
+    private static final byte CR = 0x0D;
+    private static final byte LF = 0x0A;
+
+    private final int headBufferSize;
+    private final int chunkSize;
+    private ByteBuffer headBuffer;
+
+    public HttpResponseEncoder() {
+        this(DEFAULT_HEAD_BUFFER_SIZE);
+    }
+
+    public HttpResponseEncoder(int headBufferSize) {
+        this(headBufferSize, ChunkedBody.DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param headBufferSize initial size of the head buffer
+     * @param chunkSize      max. number of data bytes per chunk of a chunked body
+     */
+    public HttpResponseEncoder(int headBufferSize, int chunkSize) {
+        this.headBufferSize = headBufferSize;
+        this.chunkSize = chunkSize;
+        this.headBuffer = ByteBuffer.allocate(headBufferSize);
+    }
+
+    /**
+     * Encode the response and append its buffers, the head followed by the body if there is one, to the output.
+     *
+     * @param response HTTP response
+     * @param output   buffers to write, in read mode
+     * @return response body to send after the buffers, framed if needed, or null if the response has none
+     */
+    @Nullable
+    public ResponseBody encode(HttpResponse response, Collection<ByteBuffer> output) {
+        HttpHeaders headers = response.getHeaders();
+        ResponseBody responseBody = response.getResponseBody();
+        // Read once, so the length and the bytes written agree even if the field is refreshed meanwhile
+        byte[] dateField = headers.contains(HttpHeaderFieldName.DATE) ? NO_FIELD : DateHeader.get();
+        byte[] serverField = headers.contains(HttpHeaderFieldName.SERVER) ? NO_FIELD : SERVER_FIELD;
+        byte[] chunkedField = NO_FIELD;
+        if (responseBody != null && responseBody.getLength() == -1
+                && response.getVersion() == HttpVersion.HTTP_1_1
+                && !headers.contains(HttpHeaderFieldName.CONTENT_LENGTH)
+                && !headers.contains(HttpHeaderFieldName.TRANSFER_ENCODING)) {
+            chunkedField = CHUNKED_FIELD;
+            responseBody = new ChunkedBody(responseBody, chunkSize);
+        }
+        int headLength = headLength(response, headers) + dateField.length + serverField.length + chunkedField.length;
+        if (headBuffer.remaining() < headLength) {
+            // Heads encoded before keep the old buffer, they may still be waiting to be written
+            headBuffer = ByteBuffer.allocate(Math.max(headBufferSize, headLength));
+        }
+
+        int start = headBuffer.position();
+        HttpVersion version = response.getVersion();
+        if (version != null) {
+            headBuffer.put(response.getStatusCode().getStatusLine(version));
+        } else {
+            putAscii(response.getHttpVersion());
+            headBuffer.put(SP);
+            int statusCode = response.getStatusCode().STATUS_CODE;
+            headBuffer.put((byte) ('0' + statusCode / 100))
+                    .put((byte) ('0' + statusCode / 10 % 10))
+                    .put((byte) ('0' + statusCode % 10))
+                    .put(SP);
+            putAscii(response.getReasonPhrase());
+            headBuffer.put(CR).put(LF);
+        }
+        headBuffer.put(dateField).put(serverField).put(chunkedField);
+        for (int i = 0; i < headers.size(); i++) {
+            HttpHeaderFieldName wellKnown = headers.getWellKnownName(i);
+            if (wellKnown != null) {
+                headBuffer.put(wellKnown.encodedName);
+            } else {
+                putAscii(headers.getName(i));
+                headBuffer.put((byte) ':').put(SP);
+            }
+            putAscii(headers.getValue(i));
+            headBuffer.put(CR).put(LF);
+        }
+        headBuffer.put(CR).put(LF);
+        output.add(headBuffer.slice(start, headBuffer.position() - start));
+
+        byte[] body = response.getMessageBody();
+        if (body.length > 0) {
+            output.add(ByteBuffer.wrap(body));
+        }
+        return responseBody;
+    }
+
+    /**
+     * Reuse the head buffer from its start. Only call it once every buffer returned so far has been written.
+     */
+    public void reset() {
+        headBuffer.clear();
+    }
+
+    private int headLength(HttpResponse response, HttpHeaders headers) {
+        // Status line: version SP 3-digit code SP reason CRLF, and the CRLF ending the head
+        int length = response.getHttpVersion().length() + 5 + response.getReasonPhrase().length() + 2 + 2;
+        for (int i = 0; i < headers.size(); i++) {
+            length += headers.getName(i).length() + 2 + headers.getValue(i).length() + 2;
+        }
+        return length;
+    }
+
+    private void putAscii(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            headBuffer.put((byte) value.charAt(i));
+        }
+    }
+}
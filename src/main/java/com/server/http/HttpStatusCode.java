@@ -1,25 +1,52 @@
 package com.server.http;
 
+import java.nio.charset.StandardCharsets;
+
 public enum HttpStatusCode {
+    //    Redirection
+    REDIRECTION_304_NOT_MODIFIED(304, "Not Modified"),
     //    Client Errors
     CLIENT_ERROR_400_BAD_REQUEST(400, "Bad Request"),
     CLIENT_ERROR_401_METHOD_NOT_ALLOWED(401, "Method Not Allowed"),
     CLIENT_ERROR_414_REQUEST(414, "URL TOo Long"),
     CLIENT_ERROR_404_NOT_FOUND(404, "Not Found"),
+    CLIENT_ERROR_405_METHOD_NOT_ALLOWED(405, "Method Not Allowed"),
+    CLIENT_ERROR_413_CONTENT_TOO_LARGE(413, "Content Too Large"),
+    CLIENT_ERROR_416_RANGE_NOT_SATISFIABLE(416, "Range Not Satisfiable"),
+    CLIENT_ERROR_431_REQUEST_HEADER_FIELDS_TOO_LARGE(431, "Request Header Fields Too Large"),
     //    Server Errors
     SERVER_ERROR_500_INTERNAL_SERVER_ERROR(500, "Internal Server Error"),
     SERVER_ERROR_501_NOT_IMPLEMENTED(501, "Not Implemented"),
     SERVER_ERROR_505_HTTP_VERSION_NOT_SUPPORTED(505, "http version not supported"),
     // HTTP OK
     OK(200, "OK"),
+    PARTIAL_CONTENT(206, "Partial Content"),
     WEBSOCKET_UPGRADE(101, "Switching Protocols");
 
     public final int STATUS_CODE;
     public final String MESSAGE;
+    // Status line with its CRLF for each HTTP version, indexed by ordinal
+    private final byte[][] statusLines;
 
     HttpStatusCode(int STATUS_CODE, String MESSAGE) {
         this.STATUS_CODE = STATUS_CODE;
         this.MESSAGE = MESSAGE;
+        HttpVersion[] versions = HttpVersion.values();
+        this.statusLines = new byte[versions.length][];
+        for (HttpVersion version : versions) {
+            statusLines[version.ordinal()] = (version.literal + " " + STATUS_CODE + " " + MESSAGE + "\r\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    /**
+     * Get the pre-encoded status line. The array is shared and must not be modified.
+     *
+     * @param version HTTP version of the response
+     * @return US-ASCII bytes of the status line, CRLF included
+     */
+    byte[] getStatusLine(HttpVersion version) {
+        return statusLines[version.ordinal()];
     }
 }
 
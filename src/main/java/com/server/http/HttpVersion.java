@@ -1,14 +1,21 @@
 package com.server.http;
 
+import com.server.util.Bytes;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.charset.StandardCharsets;
 import java.util.Objects;
 
 public enum HttpVersion {
+    HTTP_1_0("HTTP/1.0"),
     HTTP_1_1("HTTP/1.1");
 
     public final String literal;
+    private final byte[] literalBytes;
 
     HttpVersion(String LITERAL) {
         this.literal = LITERAL;
+        this.literalBytes = LITERAL.getBytes(StandardCharsets.US_ASCII);
     }
 
     public static HttpVersion fromString(String version) throws HttpParsingException {
@@ -17,4 +24,33 @@ public enum HttpVersion {
         }
         throw new HttpParsingException(HttpStatusCode.SERVER_ERROR_505_HTTP_VERSION_NOT_SUPPORTED);
     }
+
+    /**
+     * Find the version with the literal, without failing on an unknown one.
+     *
+     * @param version version literal
+     * @return matching version, or null if there is none
+     */
+    @Nullable
+    public static HttpVersion fromLiteral(String version) {
+        for (HttpVersion versions : values()) {
+            if (versions.literal.equals(version)) return versions;
+        }
+        return null;
+    }
+
+    /**
+     * Find the version whose literal equals the raw bytes, without decoding them.
+     *
+     * @param array  source array
+     * @param offset start of the version token
+     * @param length length of the version token
+     * @return matching version
+     */
+    public static HttpVersion fromBytes(byte[] array, int offset, int length) throws HttpParsingException {
+        for (HttpVersion versions : values()) {
+            if (Bytes.equals(array, offset, length, versions.literalBytes)) return versions;
+        }
+        throw new HttpParsingException(HttpStatusCode.SERVER_ERROR_505_HTTP_VERSION_NOT_SUPPORTED);
+    }
 }
@@ -0,0 +1,246 @@
+package com.server.http;
+
+import com.server.util.Bytes;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Resumable parser of an HTTP request head for non-blocking reads.
+ * <p>
+ * Bytes are fed in chunks of any size as they arrive from the socket. The parser keeps its state between calls, so a
+ * request line or header field split across reads is never scanned twice: each line is validated as soon as its CRLF
+ * arrives, and a bad request line is rejected before the rest of the head is received. Only the bytes of the head are
+ * consumed from a chunk, whatever follows it stays in the buffer.
+ * <p>
+ * Unlike {@link HttpParser}, it never decodes the input char by char. Delimiters are searched in bulk over the raw
+ * bytes, and the request target and header fields are kept as slices of the head, which is copied into an array owned
+ * by the request; strings are only created when a value is asked for.
+ * <p>
+ * After {@link Result#COMPLETE} or {@link Result#ERROR} the parser must be {@link #reset()} before the next request of
+ * the connection.
+ */
+public class IncrementalHttpParser {
+    public static final int DEFAULT_MAX_HEAD_SIZE = 64 * 1024;
+    private static final int INITIAL_HEAD_SIZE = 512;
+    private static final byte SP = 0x20;
+    private static final byte HTAB = 0x09;
+    private static final byte CR = 0x0D;
+    private static final byte LF = 0x0A;
+    private static final byte COLON = ':';
+
+    /**
+     * Outcome of feeding a chunk to the parser.
+     */
+    public enum Result {
+        /** The head is not complete yet, feed the next chunk. */
+        NEED_MORE,
+        /** The head is complete, see {@link #getRequest()}. */
+        COMPLETE,
+        /** The request is malformed or not supported, see {@link #getError()}. */
+        ERROR
+    }
+
+    private enum State {
+        REQUEST_LINE,
+        HEADERS,
+        DONE
+    }
+
+    private final int maxHeadSize;
+    private State state = State.REQUEST_LINE;
+    private byte[] head = new byte[INITIAL_HEAD_SIZE];
+    private int headLength = 0;
+    private int lineStart = 0;
+    private int targetOffset;
+    private int targetLength;
+    // Four ints per header field: name offset, name length, value offset, value length
+    private int[] headerSlices = new int[32];
+    private int headerCount = 0;
+    private HttpRequest request = new HttpRequest();
+    @Nullable
+    private HttpParsingException error;
+
+    public IncrementalHttpParser() {
+        this(DEFAULT_MAX_HEAD_SIZE);
+    }
+
+    public IncrementalHttpParser(int maxHeadSize) {
+        this.maxHeadSize = maxHeadSize;
+    }
+
+    /**
+     * Consume bytes of the request head from the buffer, starting at its position.
+     *
+     * @param buffer buffer in read mode
+     * @return whether the head is complete, malformed, or more bytes are needed
+     */
+    public Result parse(ByteBuffer buffer) {
+        if (state == State.DONE) {
+            return error == null ? Result.COMPLETE : Result.ERROR;
+        }
+        try {
+            while (buffer.hasRemaining()) {
+                int lf = Bytes.indexOf(buffer, LF);
+                int length = lf == -1 ? buffer.remaining() : lf + 1 - buffer.position();
+                if (headLength + length > maxHeadSize) {
+                    throw new HttpParsingException(HttpStatusCode.CLIENT_ERROR_431_REQUEST_HEADER_FIELDS_TOO_LARGE);
+                }
+                append(buffer, length);
+                if (lf == -1) {
+                    return Result.NEED_MORE;
+                }
+
+                int lineEnd = lineEnd();
+                if (state == State.REQUEST_LINE) {
+                    parseRequestLine(lineEnd);
+                    state = State.HEADERS;
+                } else if (lineEnd == lineStart) {
+                    request.setRequestTarget(head, targetOffset, targetLength);
+                    request.setHeaders(new HttpHeaders(head, headerSlices, headerCount));
+                    state = State.DONE;
+                    return Result.COMPLETE;
+                } else {
+                    parseHeaderLine(lineEnd);
+                }
+                lineStart = headLength;
+            }
+            return Result.NEED_MORE;
+        } catch (HttpParsingException e) {
+            error = e;
+            state = State.DONE;
+            return Result.ERROR;
+        }
+    }
+
+    /**
+     * Check if any byte of the next request has been consumed.
+     *
+     * @return True if the parser is in the middle of a request
+     */
+    public boolean hasStarted() {
+        return headLength > 0;
+    }
+
+    /**
+     * Get the request after {@link Result#COMPLETE}. It owns the bytes of its head.
+     *
+     * @return parsed HttpRequest object
+     */
+    public HttpRequest getRequest() {
+        return request;
+    }
+
+    /**
+     * Get the reason of {@link Result#ERROR}.
+     *
+     * @return parsing error, or null if there was none
+     */
+    @Nullable
+    public HttpParsingException getError() {
+        return error;
+    }
+
+    /**
+     * Prepare the parser for the next request of the connection. The head buffer is handed over to the completed
+     * request, so a new one is allocated only in that case.
+     */
+    public void reset() {
+        if (state == State.DONE && error == null) {
+            head = new byte[INITIAL_HEAD_SIZE];
+            headerSlices = new int[32];
+        }
+        state = State.REQUEST_LINE;
+        headLength = 0;
+        lineStart = 0;
+        headerCount = 0;
+        request = new HttpRequest();
+        error = null;
+    }
+
+    /**
+     * Copy bytes from the buffer to the end of the head, growing it if needed.
+     *
+     * @param buffer source buffer in read mode
+     * @param length number of bytes to copy
+     */
+    private void append(ByteBuffer buffer, int length) {
+        if (headLength + length > head.length) {
+            head = Arrays.copyOf(head, Math.min(Math.max(head.length * 2, headLength + length), maxHeadSize));
+        }
+        buffer.get(head, headLength, length);
+        headLength += length;
+    }
+
+    /**
+     * Check the line that just ended. Lines must end with CRLF and must not contain a bare CR.
+     *
+     * @return index of the CR ending the line
+     */
+    private int lineEnd() throws HttpParsingException {
+        int lf = headLength - 1;
+        if (lf == lineStart || head[lf - 1] != CR || Bytes.indexOf(head, lineStart, lf - 1, CR) != -1) {
+            throw new HttpParsingException(HttpStatusCode.CLIENT_ERROR_400_BAD_REQUEST);
+        }
+        return lf - 1;
+    }
+
+    /**
+     * Parse the request line: method SP request-target SP HTTP-version.
+     *
+     * @param lineEnd end of the line
+     */
+    private void parseRequestLine(int lineEnd) throws HttpParsingException {
+        int methodEnd = Bytes.indexOf(head, 0, lineEnd, SP);
+        if (methodEnd > HttpMethod.MAX_LENGTH || (methodEnd == -1 && lineEnd > HttpMethod.MAX_LENGTH)) {
+            throw new HttpParsingException(HttpStatusCode.SERVER_ERROR_501_NOT_IMPLEMENTED);
+        }
+        if (methodEnd == -1) {
+            throw new HttpParsingException(HttpStatusCode.CLIENT_ERROR_400_BAD_REQUEST);
+        }
+        HttpMethod method = HttpMethod.fromBytes(head, 0, methodEnd);
+        if (method == null) {
+            throw new HttpParsingException(HttpStatusCode.SERVER_ERROR_501_NOT_IMPLEMENTED);
+        }
+        int targetEnd = Bytes.indexOf(head, methodEnd + 1, lineEnd, SP);
+        if (targetEnd == -1 || targetEnd == methodEnd + 1 || Bytes.indexOf(head, targetEnd + 1, lineEnd, SP) != -1) {
+            throw new HttpParsingException(HttpStatusCode.CLIENT_ERROR_400_BAD_REQUEST);
+        }
+        request.setMethod(method);
+        request.setHttpVersion(HttpVersion.fromBytes(head, targetEnd + 1, lineEnd - targetEnd - 1));
+        targetOffset = methodEnd + 1;
+        targetLength = targetEnd - methodEnd - 1;
+    }
+
+    /**
+     * Parse a header field line: field-name ":" OWS field-value OWS.
+     *
+     * @param lineEnd end of the line
+     */
+    private void parseHeaderLine(int lineEnd) throws HttpParsingException {
+        int colon = Bytes.indexOf(head, lineStart, lineEnd, COLON);
+        // No whitespace is allowed around the field name, which also rejects obsolete line folding
+        if (colon <= lineStart || isWhitespace(head[lineStart]) || isWhitespace(head[colon - 1])) {
+            throw new HttpParsingException(HttpStatusCode.CLIENT_ERROR_400_BAD_REQUEST);
+        }
+        int valueStart = colon + 1;
+        int valueEnd = lineEnd;
+        while (valueStart < valueEnd && isWhitespace(head[valueStart])) valueStart++;
+        while (valueEnd > valueStart && isWhitespace(head[valueEnd - 1])) valueEnd--;
+
+        if ((headerCount + 1) * 4 > headerSlices.length) {
+            headerSlices = Arrays.copyOf(headerSlices, headerSlices.length * 2);
+        }
+        int slice = headerCount * 4;
+        headerSlices[slice] = lineStart;
+        headerSlices[slice + 1] = colon - lineStart;
+        headerSlices[slice + 2] = valueStart;
+        headerSlices[slice + 3] = valueEnd - valueStart;
+        headerCount++;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == SP || b == HTAB;
+    }
+}
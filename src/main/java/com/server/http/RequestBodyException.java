@@ -0,0 +1,20 @@
+package com.server.http;
+
+import java.io.IOException;
+
+/**
+ * Thrown while reading a request body whose framing is malformed or which exceeds the max. body size. It is an
+ * IOException, so it can be thrown through the {@link java.io.InputStream} the body is read from.
+ */
+public class RequestBodyException extends IOException {
+    private final HttpStatusCode errorCode;
+
+    public RequestBodyException(HttpStatusCode errorCode) {
+        super(errorCode.MESSAGE);
+        this.errorCode = errorCode;
+    }
+
+    public HttpStatusCode getErrorCode() {
+        return errorCode;
+    }
+}
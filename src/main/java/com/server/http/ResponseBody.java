@@ -0,0 +1,48 @@
+package com.server.http;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Response body written to the connection's channel after the head instead of being encoded with it, so the
+ * content can be sent from outside the Java heap. Closed once it is sent or the connection gives up on it.
+ */
+public interface ResponseBody extends Closeable {
+    /**
+     * Get the number of bytes the body sends in total.
+     *
+     * @return length in bytes, or -1 if it is only known once the body is sent, then it is sent chunked to HTTP/1.1
+     * clients and delimited by closing the connection otherwise
+     */
+    long getLength();
+
+    boolean hasRemaining();
+
+    /**
+     * Check if the body has bytes to send right now. A body produced while it is sent may have to wait for them.
+     *
+     * @return true if a transfer can make progress
+     */
+    default boolean isReady() {
+        return true;
+    }
+
+    /**
+     * Run the callback once the body is ready, right away if it is already. The callback may run on the thread that
+     * produces the body, and only the last registered one is run.
+     *
+     * @param callback action to run when the body is ready
+     */
+    default void onReady(Runnable callback) {
+        callback.run();
+    }
+
+    /**
+     * Write as much of the rest of the body as the target accepts.
+     *
+     * @param target channel to write to
+     * @return number of bytes written, 0 if a non-blocking target is full
+     */
+    long transferTo(WritableByteChannel target) throws IOException;
+}
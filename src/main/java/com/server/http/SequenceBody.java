@@ -0,0 +1,74 @@
+package com.server.http;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+
+/**
+ * Response body made of several bodies sent one after another, such as the parts of a multipart/byteranges
+ * response.
+ */
+public class SequenceBody implements ResponseBody {
+    private final List<ResponseBody> parts;
+    private final long length;
+    private int current = 0;
+
+    public SequenceBody(List<ResponseBody> parts) {
+        this.parts = List.copyOf(parts);
+        long length = 0;
+        for (ResponseBody part : parts) {
+            length += part.getLength();
+        }
+        this.length = length;
+    }
+
+    @Override
+    public long getLength() {
+        return length;
+    }
+
+    @Override
+    public boolean hasRemaining() {
+        skipSentParts();
+        return current < parts.size();
+    }
+
+    @Override
+    public long transferTo(WritableByteChannel target) throws IOException {
+        long transferred = 0;
+        while (hasRemaining()) {
+            ResponseBody part = parts.get(current);
+            long written = part.transferTo(target);
+            transferred += written;
+            if (written == 0 && part.hasRemaining()) {
+                // A non-blocking target is full
+                break;
+            }
+        }
+        return transferred;
+    }
+
+    /**
+     * Close every part, including those not sent yet.
+     */
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (ResponseBody part : parts) {
+            try {
+                part.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void skipSentParts() {
+        while (current < parts.size() && !parts.get(current).hasRemaining()) {
+            current++;
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.server.http;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+
+/**
+ * Response body written incrementally by a handler while the connection sends it. The head goes out as soon as the
+ * response is returned, and the body follows as it is produced, chunked unless the handler set a Content-Length.
+ * <p>
+ * Writes to the {@link #getOutputStream() output stream} are coalesced into buffers of the buffer size, which are
+ * handed to the connection when full or on {@link OutputStream#flush()}. The writer blocks while more than the
+ * buffered limit waits to be sent, so a slow client bounds the memory instead of the body size. It must therefore
+ * write from its own thread, never from the one answering the request, see {@link #start}.
+ */
+public class StreamingBody implements ResponseBody {
+    public static final int DEFAULT_BUFFER_SIZE = 8 * 1024;
+    public static final long DEFAULT_MAX_BUFFERED = 64 * 1024;
+
+    private final int bufferSize;
+    private final long maxBuffered;
+    private final ArrayDeque<ByteBuffer> buffers = new ArrayDeque<>();
+    private final BodyOutputStream outputStream = new BodyOutputStream();
+    // Guarded by this
+    private long buffered = 0;
+    private boolean complete = false;
+    private boolean aborted = false;
+    private boolean closed = false;
+    @Nullable
+    private Runnable readyCallback;
+
+    public StreamingBody() {
+        this(DEFAULT_BUFFER_SIZE, DEFAULT_MAX_BUFFERED);
+    }
+
+    /**
+     * @param bufferSize  size of the buffers small writes are coalesced into
+     * @param maxBuffered bytes waiting to be sent above which the writer blocks
+     */
+    public StreamingBody(int bufferSize, long maxBuffered) {
+        this.bufferSize = bufferSize;
+        this.maxBuffered = maxBuffered;
+    }
+
+    /**
+     * Create a body and let the producer write it on the executor. The body is completed when the producer returns,
+     * and aborted if it throws, so the client sees a truncated response instead of a complete one.
+     *
+     * @param executor executor to write on
+     * @param producer writer of the body
+     * @return body to send
+     */
+    public static StreamingBody start(Executor executor, Producer producer) {
+        StreamingBody body = new StreamingBody();
+        executor.execute(() -> {
+            OutputStream outputStream = body.getOutputStream();
+            try {
+                producer.writeTo(outputStream);
+                outputStream.close();
+            } catch (IOException | RuntimeException e) {
+                body.abort();
+            }
+        });
+        return body;
+    }
+
+    /**
+     * Get the stream to write the body to. Closing it completes the body.
+     *
+     * @return output stream of the body
+     */
+    public OutputStream getOutputStream() {
+        return outputStream;
+    }
+
+    /**
+     * Give up on the body. The connection is closed without completing it.
+     */
+    public void abort() {
+        Runnable callback;
+        synchronized (this) {
+            aborted = true;
+            notifyAll();
+            callback = takeReadyCallback();
+        }
+        if (callback != null) callback.run();
+    }
+
+    /**
+     * @return -1, the length is only known once the body is written
+     */
+    @Override
+    public long getLength() {
+        return -1;
+    }
+
+    @Override
+    public synchronized boolean hasRemaining() {
+        return !buffers.isEmpty() || !complete;
+    }
+
+    @Override
+    public synchronized boolean isReady() {
+        return !buffers.isEmpty() || complete || aborted;
+    }
+
+    @Override
+    public void onReady(Runnable callback) {
+        synchronized (this) {
+            if (!isReady()) {
+                readyCallback = callback;
+                return;
+            }
+        }
+        callback.run();
+    }
+
+    @Override
+    public long transferTo(WritableByteChannel target) throws IOException {
+        long written = 0;
+        ByteBuffer buffer;
+        while ((buffer = peekBuffer()) != null) {
+            written += target.write(buffer);
+            if (buffer.hasRemaining()) break;
+            synchronized (this) {
+                buffers.poll();
+                buffered -= buffer.limit();
+                notifyAll();
+            }
+        }
+        return written;
+    }
+
+    @Nullable
+    private synchronized ByteBuffer peekBuffer() throws IOException {
+        if (aborted) {
+            throw new IOException("Response body aborted");
+        }
+        return buffers.peek();
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            // The connection is gone, a writer still producing fails on its next write
+            closed = true;
+            buffers.clear();
+            notifyAll();
+        }
+    }
+
+    /**
+     * Hand a filled buffer to the connection, waiting while too much is buffered.
+     *
+     * @param buffer buffer in read mode, or null to complete the body
+     */
+    private void offer(@Nullable ByteBuffer buffer) throws IOException {
+        Runnable callback;
+        synchronized (this) {
+            while (buffer != null && buffered >= maxBuffered && !closed && !aborted) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for the client");
+                }
+            }
+            if (closed || aborted) {
+                throw new IOException("Connection closed before the body was sent");
+            }
+            if (buffer == null) {
+                complete = true;
+            } else {
+                buffers.add(buffer);
+                buffered += buffer.remaining();
+            }
+            callback = takeReadyCallback();
+        }
+        if (callback != null) callback.run();
+    }
+
+    @Nullable
+    private Runnable takeReadyCallback() {
+        Runnable callback = readyCallback;
+        readyCallback = null;
+        return callback;
+    }
+
+    /**
+     * Writer of a streamed body.
+     */
+    @FunctionalInterface
+    public interface Producer {
+        void writeTo(OutputStream outputStream) throws IOException;
+    }
+
+    /**
+     * Coalesces writes into a buffer and offers it when it is full or flushed. Only used by the writing thread.
+     */
+    private class BodyOutputStream extends OutputStream {
+        @Nullable
+        private ByteBuffer buffer;
+        private boolean streamClosed = false;
+
+        @Override
+        public void write(int b) throws IOException {
+            ByteBuffer target = ensureBuffer();
+            target.put((byte) b);
+            if (!target.hasRemaining()) flush();
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                ByteBuffer target = ensureBuffer();
+                int length = Math.min(len, target.remaining());
+                target.put(b, off, length);
+                off += length;
+                len -= length;
+                if (!target.hasRemaining()) flush();
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (buffer != null && buffer.position() > 0) {
+                ByteBuffer filled = buffer.flip();
+                buffer = null;
+                offer(filled);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (streamClosed) return;
+            flush();
+            streamClosed = true;
+            offer(null);
+        }
+
+        private ByteBuffer ensureBuffer() throws IOException {
+            if (streamClosed) {
+                throw new IOException("Stream closed");
+            }
+            if (buffer == null) {
+                buffer = ByteBuffer.allocate(bufferSize);
+            }
+            return buffer;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.server.util;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Helpers to scan and compare raw bytes without decoding them into strings.
+ */
+public class Bytes {
+    private static final VarHandle LONG_VIEW = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final long LOW_BITS = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    private Bytes() {
+    }
+
+    /**
+     * Find the first occurrence of the byte in the range. Eight bytes are tested per step (SWAR), which is much
+     * faster than a byte-by-byte loop for long header lines.
+     *
+     * @param array source array
+     * @param from  start index, inclusive
+     * @param to    end index, exclusive
+     * @param value byte to find
+     * @return index of the byte, or -1 if it is not in the range
+     */
+    public static int indexOf(byte[] array, int from, int to, byte value) {
+        long pattern = (value & 0xFFL) * LOW_BITS;
+        int i = from;
+        for (; i + Long.BYTES <= to; i += Long.BYTES) {
+            long word = (long) LONG_VIEW.get(array, i) ^ pattern;
+            // A byte of the word is zero exactly where the value matched
+            long found = (word - LOW_BITS) & ~word & HIGH_BITS;
+            if (found != 0) {
+                return i + (Long.numberOfTrailingZeros(found) >>> 3);
+            }
+        }
+        for (; i < to; i++) {
+            if (array[i] == value) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Find the first occurrence of the byte between the position and the limit of the buffer.
+     *
+     * @param buffer buffer in read mode, its position is not changed
+     * @param value  byte to find
+     * @return absolute index of the byte, or -1 if it is not in the buffer
+     */
+    public static int indexOf(ByteBuffer buffer, byte value) {
+        if (buffer.hasArray()) {
+            int offset = buffer.arrayOffset();
+            int index = indexOf(buffer.array(), offset + buffer.position(), offset + buffer.limit(), value);
+            return index == -1 ? -1 : index - offset;
+        }
+        for (int i = buffer.position(); i < buffer.limit(); i++) {
+            if (buffer.get(i) == value) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Compare a slice of ASCII bytes with a string, ignoring the case of ASCII letters.
+     *
+     * @param array  source array
+     * @param offset start of the slice
+     * @param length length of the slice
+     * @param other  string to compare with
+     * @return true if both contain the same characters apart from case
+     */
+    public static boolean equalsIgnoreCaseAscii(byte[] array, int offset, int length, String other) {
+        if (length != other.length()) return false;
+        for (int i = 0; i < length; i++) {
+            if (toLowerAscii(array[offset + i] & 0xFF) != toLowerAscii(other.charAt(i))) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Compare a slice of bytes with another byte array.
+     *
+     * @param array  source array
+     * @param offset start of the slice
+     * @param length length of the slice
+     * @param other  bytes to compare with
+     * @return true if both contain the same bytes
+     */
+    public static boolean equals(byte[] array, int offset, int length, byte[] other) {
+        return length == other.length && Arrays.equals(array, offset, offset + length, other, 0, length);
+    }
+
+    private static int toLowerAscii(int c) {
+        return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+    }
+}
@@ -0,0 +1,80 @@
+package com.server.ws;
+
+import java.util.ArrayDeque;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Idle raw deflate compressors and decompressors shared by the WebSocket connections. Each one holds a window and
+ * hash tables in native memory, creating them per message would cost more than compressing a small one.
+ * <p>
+ * Instances are reset when they are released, and ended instead of kept once the pool holds the max. number of idle
+ * ones.
+ */
+public class DeflaterPool {
+    public static final int DEFAULT_MAX_IDLE = 64;
+
+    private final int level;
+    private final int maxIdle;
+    // Guarded by this
+    private final ArrayDeque<Deflater> deflaters = new ArrayDeque<>();
+    private final ArrayDeque<Inflater> inflaters = new ArrayDeque<>();
+
+    /**
+     * @param level   compression level of the deflaters, from 1 to 9
+     * @param maxIdle max. number of idle deflaters, and of idle inflaters, kept
+     */
+    public DeflaterPool(int level, int maxIdle) {
+        this.level = level;
+        this.maxIdle = maxIdle;
+    }
+
+    public Deflater takeDeflater() {
+        Deflater deflater;
+        synchronized (this) {
+            deflater = deflaters.poll();
+        }
+        // Raw deflate, permessage-deflate has no zlib header or checksum
+        return deflater != null ? deflater : new Deflater(level, true);
+    }
+
+    public Inflater takeInflater() {
+        Inflater inflater;
+        synchronized (this) {
+            inflater = inflaters.poll();
+        }
+        return inflater != null ? inflater : new Inflater(true);
+    }
+
+    /**
+     * Give a deflater back. It must not be used afterward.
+     *
+     * @param deflater deflater taken from the pool
+     */
+    public void release(Deflater deflater) {
+        deflater.reset();
+        synchronized (this) {
+            if (deflaters.size() < maxIdle) {
+                deflaters.push(deflater);
+                return;
+            }
+        }
+        deflater.end();
+    }
+
+    /**
+     * Give an inflater back. It must not be used afterward.
+     *
+     * @param inflater inflater taken from the pool
+     */
+    public void release(Inflater inflater) {
+        inflater.reset();
+        synchronized (this) {
+            if (inflaters.size() < maxIdle) {
+                inflaters.push(inflater);
+                return;
+            }
+        }
+        inflater.end();
+    }
+}
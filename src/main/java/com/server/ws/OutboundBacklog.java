@@ -0,0 +1,112 @@
+package com.server.ws;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+/**
+ * Number of bytes queued to a WebSocket session but not written yet. Frames sent from other threads, e.g. by a
+ * {@link WebSocketHub}, are only queued while the backlog is below the high-water mark, beyond it the
+ * {@link SlowConsumerPolicy} decides. Frames of the connection itself are always queued, the connection stops
+ * reading its client instead while it is behind.
+ * <p>
+ * A frame is admitted as long as the backlog is below the mark, so a single frame larger than the mark still goes
+ * through once the client caught up.
+ */
+public class OutboundBacklog {
+    public static final long DEFAULT_HIGH_WATER_MARK = 1024 * 1024;
+
+    private final long highWaterMark;
+    private final SlowConsumerPolicy policy;
+    // Guarded by this
+    private long bytes = 0;
+    private boolean closed = false;
+
+    /**
+     * @param highWaterMark queued bytes from which the policy applies
+     * @param policy        what happens to frames sent beyond the mark
+     */
+    public OutboundBacklog(long highWaterMark, SlowConsumerPolicy policy) {
+        this.highWaterMark = highWaterMark;
+        this.policy = policy;
+    }
+
+    /**
+     * Account for a frame sent from another thread, applying the policy if the backlog reached the mark.
+     *
+     * @param length  encoded length of the frame
+     * @param mayWait false on a thread that must never wait, {@link SlowConsumerPolicy#BLOCK} then drops the frame
+     * @return true if the frame is to be queued, false if it is dropped
+     * @throws InterruptedIOException if interrupted while waiting, the frame is not queued
+     * @throws IOException            if the policy is {@link SlowConsumerPolicy#DISCONNECT}, the session should be
+     *                                closed
+     */
+    public synchronized boolean admit(long length, boolean mayWait) throws IOException {
+        if (closed) return false;
+        if (bytes >= highWaterMark) {
+            switch (policy) {
+                case DROP -> {
+                    return false;
+                }
+                case DISCONNECT -> throw new IOException("Client fell behind by " + bytes + " bytes");
+                case BLOCK -> {
+                    if (!mayWait) return false;
+                    awaitBelowHighWaterMark();
+                    if (closed) return false;
+                }
+            }
+        }
+        bytes += length;
+        return true;
+    }
+
+    /**
+     * Account for a frame of the connection itself, which is queued whatever the backlog.
+     *
+     * @param length encoded length of the frame
+     */
+    public synchronized void add(long length) {
+        bytes += length;
+    }
+
+    /**
+     * Account for bytes written to the socket.
+     *
+     * @param length number of bytes written
+     */
+    public synchronized void release(long length) {
+        bytes -= length;
+        if (bytes < highWaterMark) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Wait until the backlog is below the mark or the session is closed.
+     */
+    public synchronized void awaitBelowHighWaterMark() throws InterruptedIOException {
+        while (bytes >= highWaterMark && !closed) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the client");
+            }
+        }
+    }
+
+    public synchronized boolean isAboveHighWaterMark() {
+        return bytes >= highWaterMark;
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Stop admitting frames and wake up the threads waiting for the client.
+     */
+    public synchronized void close() {
+        closed = true;
+        notifyAll();
+    }
+}
@@ -0,0 +1,178 @@
+package com.server.ws;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * The permessage-deflate extension of RFC 7692 as agreed with one client. Compresses the data messages sent, and
+ * decompresses the received ones that have the RSV1 bit set.
+ * <p>
+ * With context takeover, the default, each side keeps its window from message to message, so repeated content
+ * compresses to almost nothing, and the connection holds a deflater and an inflater while it is open. Without, they
+ * are taken from the pool for one message only. Messages below the min. size are sent uncompressed, which leaves the
+ * window untouched.
+ * <p>
+ * Not thread-safe, one instance per connection, closed with it.
+ */
+public class PerMessageDeflate implements Closeable {
+    public static final String EXTENSION_NAME = "permessage-deflate";
+    // Ends every message flushed with SYNC_FLUSH, it is left out on the wire
+    private static final byte[] TAIL = {0, 0, (byte) 0xff, (byte) 0xff};
+    private static final int INFLATE_BUFFER_SIZE = 16 * 1024;
+
+    private final DeflaterPool pool;
+    private final int minSize;
+    private final boolean serverNoContextTakeover;
+    private final boolean clientNoContextTakeover;
+    private final String responseHeaderValue;
+    @Nullable
+    private Deflater deflater;
+    @Nullable
+    private Inflater inflater;
+    @Nullable
+    private ByteBuffer inflated;
+
+    /**
+     * @param pool                    pool to take the deflaters and inflaters from
+     * @param minSize                 size of the smallest payload sent compressed
+     * @param serverNoContextTakeover whether every sent message is compressed on its own
+     * @param clientNoContextTakeover whether every received message was compressed on its own
+     * @param responseHeaderValue     extension as it is confirmed in the handshake response
+     */
+    PerMessageDeflate(DeflaterPool pool, int minSize, boolean serverNoContextTakeover, boolean clientNoContextTakeover,
+                      String responseHeaderValue) {
+        this.pool = pool;
+        this.minSize = minSize;
+        this.serverNoContextTakeover = serverNoContextTakeover;
+        this.clientNoContextTakeover = clientNoContextTakeover;
+        this.responseHeaderValue = responseHeaderValue;
+    }
+
+    /**
+     * Get the value of the Sec-WebSocket-Extensions header field of the handshake response.
+     *
+     * @return extension with the agreed parameters
+     */
+    public String getResponseHeaderValue() {
+        return responseHeaderValue;
+    }
+
+    public boolean isServerNoContextTakeover() {
+        return serverNoContextTakeover;
+    }
+
+    public boolean isClientNoContextTakeover() {
+        return clientNoContextTakeover;
+    }
+
+    /**
+     * Compress a data message if it is large enough.
+     *
+     * @param frame unfragmented frame to send
+     * @return compressed frame with the RSV1 bit set, or the same frame if it is a control frame or too small
+     */
+    public WebSocketFrame compress(WebSocketFrame frame) {
+        Opcode opcode = frame.getOpcode();
+        byte[] payload = frame.getPayload();
+        if ((opcode != Opcode.TEXT && opcode != Opcode.BINARY) || !frame.isFin() || payload.length < minSize) {
+            return frame;
+        }
+        Deflater messageDeflater = deflater != null ? deflater : pool.takeDeflater();
+        messageDeflater.setInput(payload);
+        byte[] compressed = new byte[Math.max(64, payload.length / 2)];
+        int length = 0;
+        while (true) {
+            length += messageDeflater.deflate(compressed, length, compressed.length - length, Deflater.SYNC_FLUSH);
+            // A full buffer may hide more output
+            if (length < compressed.length) break;
+            compressed = Arrays.copyOf(compressed, compressed.length * 2);
+        }
+        if (serverNoContextTakeover) {
+            pool.release(messageDeflater);
+        } else {
+            deflater = messageDeflater;
+        }
+        return new WebSocketFrame.Builder().fin(true).rsv1(true).opcode(opcode)
+                .payload(Arrays.copyOf(compressed, length - TAIL.length)).build();
+    }
+
+    /**
+     * Decompress the next part of a compressed message and pass the result on, in parts of a reused buffer.
+     *
+     * @param payload    unmasked payload bytes of the message, consumed
+     * @param messageEnd true if the part ends the message
+     * @param sink       receiver of the decompressed bytes
+     */
+    public void decompress(ByteBuffer payload, boolean messageEnd, Sink sink) throws WebSocketParsingException, IOException {
+        if (inflater == null) {
+            inflater = pool.takeInflater();
+            inflated = ByteBuffer.allocate(INFLATE_BUFFER_SIZE);
+        }
+        inflate(payload, sink);
+        if (!messageEnd) return;
+        inflate(ByteBuffer.wrap(TAIL), sink);
+        if (clientNoContextTakeover || inflater.finished()) {
+            // A final block ends the stream, the next message starts a new one
+            inflater.reset();
+        }
+        if (clientNoContextTakeover) {
+            pool.release(inflater);
+            inflater = null;
+            inflated = null;
+        }
+    }
+
+    private void inflate(ByteBuffer input, Sink sink) throws WebSocketParsingException, IOException {
+        inflater.setInput(input);
+        try {
+            while (true) {
+                inflated.clear();
+                int length = inflater.inflate(inflated);
+                if (length > 0) {
+                    inflated.flip();
+                    sink.accept(inflated);
+                } else if (inflater.needsInput() || inflater.finished()) {
+                    break;
+                } else if (inflater.needsDictionary()) {
+                    throw new WebSocketParsingException("Compressed message needs a preset dictionary");
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new WebSocketParsingException("Invalid compressed message: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Give the deflater and inflater held by the connection back to the pool.
+     */
+    @Override
+    public void close() {
+        if (deflater != null) {
+            pool.release(deflater);
+            deflater = null;
+        }
+        if (inflater != null) {
+            pool.release(inflater);
+            inflater = null;
+            inflated = null;
+        }
+    }
+
+    /**
+     * Receiver of decompressed bytes.
+     */
+    @FunctionalInterface
+    public interface Sink {
+        /**
+         * @param data decompressed bytes, the buffer is reused once the method returns
+         */
+        void accept(ByteBuffer data) throws WebSocketParsingException, IOException;
+    }
+}
@@ -0,0 +1,241 @@
+package com.server.ws;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Decides whether and how the permessage-deflate extension of RFC 7692 is agreed with a client, and holds the
+ * deflaters and inflaters shared by the connections that use it.
+ * <p>
+ * {@code java.util.zip} always compresses with a 32 KB window, so offers that limit the window of the server below
+ * it are declined. The window of the client may be limited, which saves memory on the client only.
+ */
+public class PerMessageDeflatePolicy {
+    public static final int DEFAULT_MIN_SIZE = 256;
+    public static final int DEFAULT_LEVEL = 6;
+    private static final int MIN_WINDOW_BITS = 8;
+    private static final int MAX_WINDOW_BITS = 15;
+
+    private final boolean enabled;
+    private final int minSize;
+    private final boolean serverNoContextTakeover;
+    private final boolean clientNoContextTakeover;
+    private final int clientMaxWindowBits;
+    private final DeflaterPool pool;
+
+    private PerMessageDeflatePolicy(Builder builder) {
+        this.enabled = builder.enabled;
+        this.minSize = builder.minSize;
+        this.serverNoContextTakeover = builder.serverNoContextTakeover;
+        this.clientNoContextTakeover = builder.clientNoContextTakeover;
+        this.clientMaxWindowBits = builder.clientMaxWindowBits;
+        this.pool = new DeflaterPool(builder.level, builder.maxIdle);
+    }
+
+    /**
+     * Accept the first permessage-deflate offer of the client that the server can agree to.
+     *
+     * @param offers value of the Sec-WebSocket-Extensions header field of the handshake, may be null
+     * @return agreed extension for the connection, or null if the messages are not compressed
+     */
+    @Nullable
+    public PerMessageDeflate negotiate(@Nullable String offers) {
+        if (!enabled || offers == null) {
+            return null;
+        }
+        for (String offer : offers.split(",")) {
+            PerMessageDeflate agreed = accept(offer);
+            if (agreed != null) {
+                return agreed;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Agree to an offer unless it is for another extension, malformed or asks for something the server cannot do.
+     *
+     * @param offer extension name followed by its parameters
+     * @return agreed extension, or null if the offer is declined
+     */
+    @Nullable
+    private PerMessageDeflate accept(String offer) {
+        String[] parts = offer.split(";");
+        if (!parts[0].trim().equalsIgnoreCase(PerMessageDeflate.EXTENSION_NAME)) {
+            return null;
+        }
+        boolean serverNoContextTakeover = this.serverNoContextTakeover;
+        boolean clientNoContextTakeover = this.clientNoContextTakeover;
+        int clientWindowBits = -1;
+        Set<String> names = new HashSet<>();
+        for (int i = 1; i < parts.length; i++) {
+            String parameter = parts[i].trim();
+            int equals = parameter.indexOf('=');
+            String name = (equals == -1 ? parameter : parameter.substring(0, equals)).trim().toLowerCase(Locale.ROOT);
+            String value = equals == -1 ? null : unquote(parameter.substring(equals + 1).trim());
+            if (!names.add(name)) {
+                return null;
+            }
+            switch (name) {
+                case "server_no_context_takeover" -> {
+                    if (value != null) return null;
+                    serverNoContextTakeover = true;
+                }
+                case "client_no_context_takeover" -> {
+                    // A hint that the client resets its context anyway, so the server may do the same
+                    if (value != null) return null;
+                    clientNoContextTakeover = true;
+                }
+                case "server_max_window_bits" -> {
+                    if (windowBits(value) != MAX_WINDOW_BITS) return null;
+                }
+                case "client_max_window_bits" -> {
+                    clientWindowBits = value == null ? MAX_WINDOW_BITS : windowBits(value);
+                    if (clientWindowBits == -1) return null;
+                }
+                default -> {
+                    return null;
+                }
+            }
+        }
+
+        StringBuilder response = new StringBuilder(PerMessageDeflate.EXTENSION_NAME);
+        if (serverNoContextTakeover) {
+            response.append("; server_no_context_takeover");
+        }
+        if (clientNoContextTakeover) {
+            response.append("; client_no_context_takeover");
+        }
+        // The window of the client may only be limited if it said it supports that
+        if (clientWindowBits != -1 && clientMaxWindowBits < clientWindowBits) {
+            response.append("; client_max_window_bits=").append(clientMaxWindowBits);
+        }
+        return new PerMessageDeflate(pool, minSize, serverNoContextTakeover, clientNoContextTakeover,
+                response.toString());
+    }
+
+    private static String unquote(String value) {
+        if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+            return value.substring(1, value.length() - 1);
+        }
+        return value;
+    }
+
+    /**
+     * Parse a window size parameter.
+     *
+     * @param value parameter value, may be null
+     * @return base-2 logarithm of the window size, or -1 if the value is missing or invalid
+     */
+    private static int windowBits(@Nullable String value) {
+        if (value == null || value.isEmpty() || value.length() > 2 || !Character.isDigit(value.charAt(0))
+                || (value.length() == 2 && !Character.isDigit(value.charAt(1)))) {
+            return -1;
+        }
+        int bits = Integer.parseInt(value);
+        return bits >= MIN_WINDOW_BITS && bits <= MAX_WINDOW_BITS ? bits : -1;
+    }
+
+    /**
+     * Builder of a PerMessageDeflatePolicy object.
+     */
+    public static class Builder {
+        private boolean enabled = true;
+        private int minSize = DEFAULT_MIN_SIZE;
+        private int level = DEFAULT_LEVEL;
+        private boolean serverNoContextTakeover = false;
+        private boolean clientNoContextTakeover = false;
+        private int clientMaxWindowBits = MAX_WINDOW_BITS;
+        private int maxIdle = DeflaterPool.DEFAULT_MAX_IDLE;
+
+        /**
+         * Turn the extension on or off. It is on by default.
+         *
+         * @param enabled whether permessage-deflate is agreed with clients offering it
+         */
+        public Builder enabled(boolean enabled) {
+            this.enabled = enabled;
+            return this;
+        }
+
+        /**
+         * Set the size of the smallest message worth compressing. Smaller ones are sent as they are.
+         *
+         * @param minSize payload size in bytes
+         */
+        public Builder minSize(int minSize) {
+            this.minSize = minSize;
+            return this;
+        }
+
+        /**
+         * Set the compression level, from 1 (fastest) to 9 (smallest).
+         *
+         * @param level deflate compression level
+         */
+        public Builder level(int level) {
+            this.level = level;
+            return this;
+        }
+
+        /**
+         * Compress every sent message on its own, even if the client accepts context takeover. Costs compression
+         * ratio, but the connection holds no deflater between messages.
+         *
+         * @param serverNoContextTakeover whether the server resets its context after every message
+         */
+        public Builder serverNoContextTakeover(boolean serverNoContextTakeover) {
+            this.serverNoContextTakeover = serverNoContextTakeover;
+            return this;
+        }
+
+        /**
+         * Ask clients to compress every message on its own, so the connection holds no inflater between messages.
+         *
+         * @param clientNoContextTakeover whether clients must reset their context after every message
+         */
+        public Builder clientNoContextTakeover(boolean clientNoContextTakeover) {
+            this.clientNoContextTakeover = clientNoContextTakeover;
+            return this;
+        }
+
+        /**
+         * Limit the window clients compress with, if they support it. 15, a 32 KB window, leaves it unlimited.
+         *
+         * @param clientMaxWindowBits base-2 logarithm of the window size, from 8 to 15
+         */
+        public Builder clientMaxWindowBits(int clientMaxWindowBits) {
+            this.clientMaxWindowBits = clientMaxWindowBits;
+            return this;
+        }
+
+        /**
+         * Set how many idle deflaters, and inflaters, are kept for reuse.
+         *
+         * @param maxIdle max. number of pooled instances of each kind
+         */
+        public Builder maxIdle(int maxIdle) {
+            this.maxIdle = maxIdle;
+            return this;
+        }
+
+        public PerMessageDeflatePolicy build() {
+            if (minSize < 0) {
+                throw new IllegalArgumentException("minSize must not be negative");
+            }
+            if (level < 1 || level > 9) {
+                throw new IllegalArgumentException("level must be between 1 and 9");
+            }
+            if (clientMaxWindowBits < MIN_WINDOW_BITS || clientMaxWindowBits > MAX_WINDOW_BITS) {
+                throw new IllegalArgumentException("clientMaxWindowBits must be between 8 and 15");
+            }
+            if (maxIdle < 0) {
+                throw new IllegalArgumentException("maxIdle must not be negative");
+            }
+            return new PerMessageDeflatePolicy(this);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.server.ws;
+
+/**
+ * What happens to a frame sent to a WebSocket session whose outbound backlog reached its high-water mark, because
+ * the client reads slower than frames are published to it.
+ */
+public enum SlowConsumerPolicy {
+    /**
+     * The frame is not sent, the client misses it.
+     */
+    DROP,
+    /**
+     * The connection is closed, the client has to reconnect and catch up.
+     */
+    DISCONNECT,
+    /**
+     * The sending thread waits until the backlog is below the mark. A selector loop thread never waits, the frames
+     * it sends are dropped instead.
+     */
+    BLOCK
+}
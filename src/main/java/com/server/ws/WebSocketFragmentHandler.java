@@ -0,0 +1,23 @@
+package com.server.ws;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Receiver of data messages piece by piece, as their frames arrive, so a message is never buffered as a whole. A
+ * large frame is passed on in several pieces, each at most the size of the read buffer of the connection.
+ * <p>
+ * Part of the library API of {@link WebSocketMessageAssembler}, the server itself handles whole messages.
+ */
+@FunctionalInterface
+public interface WebSocketFragmentHandler {
+    /**
+     * Consume the next piece of a message, e.g. by writing it to a channel. The buffer is reused once the method
+     * returns, a piece that is kept must be copied.
+     *
+     * @param opcode  {@link Opcode#TEXT} or {@link Opcode#BINARY}, the type of the message the piece belongs to
+     * @param payload unmasked payload bytes, may be empty for the last piece
+     * @param last    true if the piece ends the message
+     */
+    void onFragment(Opcode opcode, ByteBuffer payload, boolean last) throws IOException;
+}
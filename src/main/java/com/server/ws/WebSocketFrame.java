@@ -1,19 +1,23 @@
 package com.server.ws;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
 
 /**
  * A class to hold WebSocket Frame data.
  */
 public class WebSocketFrame {
+    public static final int MAX_HEADER_LENGTH = 14;
+
     private final boolean fin;
+    private final boolean rsv1;
     private final boolean mask;
     private final Opcode opcode;
     private final byte[] payload;
 
     private WebSocketFrame(Builder builder) {
         this.fin = builder.fin;
+        this.rsv1 = builder.rsv1;
         this.mask = builder.mask;
         this.opcode = builder.opcode;
         this.payload = builder.payload;
@@ -32,53 +36,75 @@ public class WebSocketFrame {
         return new String(payload, StandardCharsets.UTF_8);
     }
 
+    public boolean isFin() {
+        return fin;
+    }
+
+    /**
+     * @return whether the RSV1 bit is set, which marks a compressed message with permessage-deflate
+     */
+    public boolean isRsv1() {
+        return rsv1;
+    }
+
     /**
      * Generate a byte array of the WebSocket frame.
      *
      * @return a byte array of the WebSocket frame
      */
     public byte[] generateFrameBytes() {
-        ArrayList<Byte> bytes = new ArrayList<>();
-        // First byte: FIN flag(1st bit), opcode(5th - 8th bits)
-        // 2nd - 4th bits are for RSV, which are not used
-        byte firstByte = (byte) (fin ? 0b10000000 : 0b00000000);
-        bytes.add((byte) (firstByte | opcode.code));
+        byte[] res = new byte[getHeaderLength() + payload.length];
+        ByteBuffer buffer = ByteBuffer.wrap(res);
+        encodeHeader(buffer);
+        buffer.put(payload);
+        return res;
+    }
+
+    /**
+     * Get the length of the frame header, i.e. everything before the payload.
+     *
+     * @return length between 2 and {@link #MAX_HEADER_LENGTH} bytes
+     */
+    public int getHeaderLength() {
+        int length = 2;
+        if (payload.length > 65535) {
+            length += 8;
+        } else if (payload.length > 125) {
+            length += 2;
+        }
+        return mask ? length + 4 : length;
+    }
+
+    /**
+     * Write the frame header into the buffer, the payload follows it.
+     *
+     * @param target buffer with at least {@link #getHeaderLength()} bytes remaining
+     */
+    public void encodeHeader(ByteBuffer target) {
+        // First byte: FIN flag(1st bit), RSV1(2nd bit), opcode(5th - 8th bits)
+        // RSV2 and RSV3 are not used by any extension the server supports
+        int firstByte = (fin ? 0b10000000 : 0b00000000) | (rsv1 ? 0b01000000 : 0b00000000);
+        target.put((byte) (firstByte | opcode.code));
 
         // Second byte: MASK flag(1st bit), payload length(2nd - 8th bits)
         // payload from server side must not be masked
         byte secondByte = (byte) (mask ? 0b10000000 : 0b00000000);
         final int length = payload.length;
         if (length <= 125) {
-            bytes.add((byte) (secondByte | payload.length));
+            target.put((byte) (secondByte | length));
         } else if (length <= 65535) { // 2^16 - 1
-            bytes.add((byte) (secondByte | 126));
-            // Insert 2 bytes for extended payload length
-            bytes.add((byte) ((length >> 8) & 0xFF));
-            bytes.add((byte) (length & 0xFF));
+            // 2 bytes for extended payload length
+            target.put((byte) (secondByte | 126)).putShort((short) length);
         } else {
-            // As the max. possible length of payload is 2^64, we omit the payload length check for it
-            // Insert 8 bytes for extended payload length
-            bytes.add((byte) (secondByte | 127));
-            for (int i = 7; i >= 0; i--) {
-                bytes.add((byte) ((length >> (i * 8)) & 0xFF));
-            }
+            // 8 bytes for extended payload length, in network byte order like every ByteBuffer by default
+            target.put((byte) (secondByte | 127)).putLong(length);
         }
 
         // Add masking bytes
         // Server must not mask the payload, so this is only for the testing purpose
         if (mask) {
-            for (int i = 0; i < 4; i++) bytes.add((byte) 0x00);
+            target.putInt(0);
         }
-
-        // Append payload
-        for (byte b : payload) bytes.add(b);
-
-        // Convert the arraylist to array
-        byte[] res = new byte[bytes.size()];
-        for (int i = 0; i < res.length; i++) {
-            res[i] = bytes.get(i);
-        }
-        return res;
     }
 
     /**
@@ -86,6 +112,7 @@ public class WebSocketFrame {
      */
     public static class Builder {
         private boolean fin = true;
+        private boolean rsv1 = false;
         private boolean mask = false; // mask should be false as default since server cannot send masked payload
         private Opcode opcode;
         private byte[] payload;
@@ -95,6 +122,11 @@ public class WebSocketFrame {
             return this;
         }
 
+        public Builder rsv1(boolean rsv1) {
+            this.rsv1 = rsv1;
+            return this;
+        }
+
         public Builder opcode(Opcode opcode) {
             this.opcode = opcode;
             return this;
@@ -0,0 +1,59 @@
+package com.server.ws;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+
+/**
+ * Encoder of WebSocket frames into buffers for a gathering write.
+ * <p>
+ * The header is written straight into a reusable header buffer and the payload array is only wrapped, never copied.
+ * The headers of several frames share the header buffer until {@link #reset()}.
+ * <p>
+ * Not thread-safe, one encoder per connection.
+ */
+public class WebSocketFrameEncoder {
+    public static final int DEFAULT_HEADER_BUFFER_SIZE = 1024;
+
+    private final int headerBufferSize;
+    private ByteBuffer headerBuffer;
+
+    public WebSocketFrameEncoder() {
+        this(DEFAULT_HEADER_BUFFER_SIZE);
+    }
+
+    /**
+     * @param headerBufferSize size of the header buffer, at least {@link WebSocketFrame#MAX_HEADER_LENGTH}
+     */
+    public WebSocketFrameEncoder(int headerBufferSize) {
+        this.headerBufferSize = Math.max(headerBufferSize, WebSocketFrame.MAX_HEADER_LENGTH);
+        this.headerBuffer = ByteBuffer.allocate(this.headerBufferSize);
+    }
+
+    /**
+     * Encode the frame and append its buffers, the header followed by the payload if there is one, to the output.
+     *
+     * @param frame  WebSocket frame
+     * @param output buffers to write, in read mode
+     */
+    public void encode(WebSocketFrame frame, Collection<ByteBuffer> output) {
+        if (headerBuffer.remaining() < frame.getHeaderLength()) {
+            // Headers encoded before keep the old buffer, they may still be waiting to be written
+            headerBuffer = ByteBuffer.allocate(headerBufferSize);
+        }
+        int start = headerBuffer.position();
+        frame.encodeHeader(headerBuffer);
+        output.add(headerBuffer.slice(start, headerBuffer.position() - start));
+
+        byte[] payload = frame.getPayload();
+        if (payload.length > 0) {
+            output.add(ByteBuffer.wrap(payload));
+        }
+    }
+
+    /**
+     * Reuse the header buffer from its start. Only call it once every buffer returned so far has been written.
+     */
+    public void reset() {
+        headerBuffer.clear();
+    }
+}
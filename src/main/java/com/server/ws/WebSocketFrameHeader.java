@@ -0,0 +1,56 @@
+package com.server.ws;
+
+/**
+ * Header of a WebSocket frame from a client, everything before the payload. The payload itself is read separately,
+ * so a frame never has to be held as a whole.
+ */
+public class WebSocketFrameHeader {
+    private final boolean fin;
+    private final boolean rsv1;
+    private final Opcode opcode;
+    private final long payloadLength;
+    private final int maskingKey;
+
+    public WebSocketFrameHeader(boolean fin, Opcode opcode, long payloadLength, int maskingKey) {
+        this(fin, false, opcode, payloadLength, maskingKey);
+    }
+
+    /**
+     * @param fin           FIN flag
+     * @param rsv1          RSV1 flag, set on the first frame of a compressed message
+     * @param opcode        opcode
+     * @param payloadLength payload length, up to 2^63 - 1
+     * @param maskingKey    masking key, first key byte in the most significant bits
+     */
+    public WebSocketFrameHeader(boolean fin, boolean rsv1, Opcode opcode, long payloadLength, int maskingKey) {
+        this.fin = fin;
+        this.rsv1 = rsv1;
+        this.opcode = opcode;
+        this.payloadLength = payloadLength;
+        this.maskingKey = maskingKey;
+    }
+
+    public boolean isFin() {
+        return fin;
+    }
+
+    public boolean isRsv1() {
+        return rsv1;
+    }
+
+    public Opcode getOpcode() {
+        return opcode;
+    }
+
+    public long getPayloadLength() {
+        return payloadLength;
+    }
+
+    public int getMaskingKey() {
+        return maskingKey;
+    }
+
+    public boolean isControl() {
+        return opcode == Opcode.CLOSE || opcode == Opcode.PING || opcode == Opcode.PONG;
+    }
+}
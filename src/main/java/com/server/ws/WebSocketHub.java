@@ -0,0 +1,148 @@
+package com.server.ws;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of the open WebSocket sessions of a server and of the topics they subscribed to. A message published to
+ * a topic is encoded into frame bytes once, and every subscriber sends a read-only view of the same buffer.
+ * <p>
+ * Subscribers are kept in concurrent sets, so publishers iterate them without locking, and subscribing or
+ * unsubscribing only locks the bin of its topic for a moment. A publish sees the subscribers present when it started,
+ * and may or may not see those that come and go meanwhile.
+ * <p>
+ * Published frames are sent uncompressed, even to sessions that agreed on permessage-deflate: compressing depends on
+ * the context of each session, so compressed bytes could not be shared.
+ */
+public class WebSocketHub {
+    // Topics of each registered session, to unsubscribe them all when it is closed
+    private final ConcurrentHashMap<WebSocketSession, Set<String>> sessions = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Set<WebSocketSession>> topics = new ConcurrentHashMap<>();
+
+    /**
+     * Add an open session, after which it can subscribe to topics.
+     *
+     * @param session WebSocket session
+     */
+    public void register(WebSocketSession session) {
+        sessions.putIfAbsent(session, ConcurrentHashMap.newKeySet());
+    }
+
+    /**
+     * Remove a closed session and all of its subscriptions.
+     *
+     * @param session WebSocket session
+     */
+    public void unregister(WebSocketSession session) {
+        Set<String> sessionTopics = sessions.remove(session);
+        if (sessionTopics == null) return;
+        for (String topic : sessionTopics) {
+            removeSubscriber(topic, session);
+        }
+    }
+
+    /**
+     * Subscribe a registered session to a topic.
+     *
+     * @param session WebSocket session
+     * @param topic   name of the topic
+     * @return false if the session is not registered
+     */
+    public boolean subscribe(WebSocketSession session, String topic) {
+        Set<String> sessionTopics = sessions.get(session);
+        if (sessionTopics == null) return false;
+        sessionTopics.add(topic);
+        // Atomic with the removal of an empty topic, so the subscriber is never added to a set that was just dropped
+        topics.compute(topic, (name, subscribers) -> {
+            if (subscribers == null) {
+                subscribers = ConcurrentHashMap.newKeySet();
+            }
+            subscribers.add(session);
+            return subscribers;
+        });
+        return true;
+    }
+
+    /**
+     * Unsubscribe a session from a topic.
+     *
+     * @param session WebSocket session
+     * @param topic   name of the topic
+     */
+    public void unsubscribe(WebSocketSession session, String topic) {
+        Set<String> sessionTopics = sessions.get(session);
+        if (sessionTopics != null) {
+            sessionTopics.remove(topic);
+        }
+        removeSubscriber(topic, session);
+    }
+
+    private void removeSubscriber(String topic, WebSocketSession session) {
+        topics.computeIfPresent(topic, (name, subscribers) -> {
+            subscribers.remove(session);
+            return subscribers.isEmpty() ? null : subscribers;
+        });
+    }
+
+    /**
+     * Send a frame to every subscriber of a topic. The frame is encoded once into a direct buffer, which each socket
+     * can write without copying it into a buffer of its own first.
+     *
+     * @param topic name of the topic
+     * @param frame frame to send, unmasked
+     * @return number of sessions the frame was sent to
+     */
+    public int publish(String topic, WebSocketFrame frame) {
+        Set<WebSocketSession> subscribers = topics.get(topic);
+        if (subscribers == null) return 0;
+        ByteBuffer encoded = null;
+        int sent = 0;
+        for (WebSocketSession subscriber : subscribers) {
+            if (!subscriber.isOpen()) {
+                // Closed while subscribing
+                unregister(subscriber);
+                continue;
+            }
+            if (encoded == null) {
+                encoded = encode(frame);
+            }
+            subscriber.sendEncoded(encoded.duplicate());
+            sent++;
+        }
+        return sent;
+    }
+
+    /**
+     * Publish a text message to every subscriber of a topic.
+     *
+     * @param topic   name of the topic
+     * @param payload UTF-8 encoded text
+     * @return number of sessions the message was sent to
+     */
+    public int publishText(String topic, byte[] payload) {
+        return publish(topic, new WebSocketFrame.Builder().fin(true).opcode(Opcode.TEXT).payload(payload).build());
+    }
+
+    /**
+     * @param topic name of the topic
+     * @return unmodifiable view of the subscribers of the topic
+     */
+    public Set<WebSocketSession> getSubscribers(String topic) {
+        Set<WebSocketSession> subscribers = topics.get(topic);
+        return subscribers == null ? Set.of() : Collections.unmodifiableSet(subscribers);
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    private static ByteBuffer encode(WebSocketFrame frame) {
+        byte[] payload = frame.getPayload();
+        ByteBuffer encoded = ByteBuffer.allocateDirect(frame.getHeaderLength() + payload.length);
+        frame.encodeHeader(encoded);
+        encoded.put(payload).flip();
+        return encoded.asReadOnlyBuffer();
+    }
+}
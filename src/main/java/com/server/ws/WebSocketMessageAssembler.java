@@ -0,0 +1,247 @@
+package com.server.ws;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Reassembles fragmented WebSocket messages from the frames of one connection. Control frames may arrive between the
+ * fragments of a message and are passed through right away.
+ * <p>
+ * A frame is added as its header, see {@link #beginFrame}, followed by its payload in as many parts as it arrives in,
+ * so no frame has to be held as a whole. Data messages are either buffered until their last fragment, up to the max.
+ * message size, or streamed to a {@link WebSocketFragmentHandler} as they arrive. Streamed messages are not limited
+ * in size, the handler decides what to keep.
+ * <p>
+ * Messages compressed with permessage-deflate are decompressed as their payload arrives, the max. message size applies
+ * to the decompressed size.
+ * <p>
+ * Not thread-safe, one assembler per connection.
+ */
+public class WebSocketMessageAssembler {
+    public static final int DEFAULT_MAX_MESSAGE_SIZE = 16 * 1024 * 1024;
+    private static final int MAX_CONTROL_PAYLOAD_LENGTH = 125;
+    private static final byte[] EMPTY = new byte[0];
+    private static final ByteBuffer EMPTY_BUFFER = ByteBuffer.wrap(EMPTY);
+
+    private final int maxMessageSize;
+    @Nullable
+    private final WebSocketFragmentHandler fragmentHandler;
+    @Nullable
+    private final PerMessageDeflate perMessageDeflate;
+    // Frame whose payload is being added, null between frames
+    @Nullable
+    private WebSocketFrameHeader frame;
+    private long framePosition = 0;
+    // Opcode of the data message in progress, null between messages
+    @Nullable
+    private Opcode messageOpcode;
+    private boolean messageCompressed = false;
+    private byte[] buffer = EMPTY;
+    private int length = 0;
+    // Control frames may come in the middle of a message, so their payload is kept apart
+    private final byte[] controlPayload = new byte[MAX_CONTROL_PAYLOAD_LENGTH];
+    private int controlLength = 0;
+
+    public WebSocketMessageAssembler(int maxMessageSize) {
+        this(maxMessageSize, null, null);
+    }
+
+    /**
+     * @param maxMessageSize    max. size of a buffered message in bytes
+     * @param fragmentHandler   receiver of the data messages piece by piece, or null to buffer them
+     * @param perMessageDeflate extension agreed with the client, or null if messages are not compressed
+     */
+    public WebSocketMessageAssembler(int maxMessageSize, @Nullable WebSocketFragmentHandler fragmentHandler,
+                                     @Nullable PerMessageDeflate perMessageDeflate) {
+        this.maxMessageSize = maxMessageSize;
+        this.fragmentHandler = fragmentHandler;
+        this.perMessageDeflate = perMessageDeflate;
+    }
+
+    /**
+     * Add a whole frame of the connection.
+     *
+     * @param frame unmasked frame from the client
+     * @return control frame, or complete message as one unfragmented frame, to be handled now; null if the frame
+     * only continued a message or was streamed to the fragment handler
+     */
+    @Nullable
+    public WebSocketFrame add(WebSocketFrame frame) throws WebSocketParsingException, IOException {
+        byte[] payload = frame.getPayload();
+        beginFrame(new WebSocketFrameHeader(frame.isFin(), frame.isRsv1(), frame.getOpcode(), payload.length, 0));
+        return addPayload(ByteBuffer.wrap(payload));
+    }
+
+    /**
+     * Start the next frame of the connection. Its payload follows with {@link #addPayload}, also if it is empty.
+     *
+     * @param header header of the frame
+     */
+    public void beginFrame(WebSocketFrameHeader header) throws WebSocketParsingException {
+        if (frame != null) {
+            throw new IllegalStateException("Payload of the previous frame is missing");
+        }
+        long payloadLength = header.getPayloadLength();
+        // Only the first frame of a data message may be marked as compressed
+        if (header.isRsv1() && (perMessageDeflate == null || header.isControl() || header.getOpcode() == Opcode.CONTINUE)) {
+            throw new WebSocketParsingException("RSV1 set without permessage-deflate");
+        }
+        switch (header.getOpcode()) {
+            case CLOSE, PING, PONG -> {
+                if (!header.isFin()) {
+                    throw new WebSocketParsingException("Control frames must not be fragmented");
+                }
+                if (payloadLength > MAX_CONTROL_PAYLOAD_LENGTH) {
+                    throw new WebSocketParsingException("Control frame payload too large");
+                }
+            }
+            case TEXT, BINARY -> {
+                if (messageOpcode != null) {
+                    throw new WebSocketParsingException("New message before the fragmented message ended");
+                }
+                messageOpcode = header.getOpcode();
+                messageCompressed = header.isRsv1();
+            }
+            case CONTINUE -> {
+                if (messageOpcode == null) {
+                    throw new WebSocketParsingException("Continuation frame without a message to continue");
+                }
+            }
+        }
+        if (!header.isControl() && fragmentHandler == null && !messageCompressed) {
+            // Only the declared length is checked, the buffer grows as the payload actually arrives
+            checkSize(length + payloadLength);
+        }
+        frame = header;
+        framePosition = 0;
+    }
+
+    /**
+     * Check if a frame is started and waits for its payload.
+     *
+     * @return true between {@link #beginFrame} and the end of the payload
+     */
+    public boolean isInFrame() {
+        return frame != null;
+    }
+
+    /**
+     * Get the number of payload bytes still missing from the current frame.
+     *
+     * @return number of bytes, 0 if no frame is started
+     */
+    public long getFrameRemaining() {
+        return frame != null ? frame.getPayloadLength() - framePosition : 0;
+    }
+
+    /**
+     * Add the next part of the payload of the current frame. The part is unmasked in place and consumed.
+     *
+     * @param payload masked payload bytes, at most {@link #getFrameRemaining()}
+     * @return control frame, or complete message as one unfragmented frame, to be handled now; null if the payload
+     * only continued a message or was streamed to the fragment handler
+     */
+    @Nullable
+    public WebSocketFrame addPayload(ByteBuffer payload) throws WebSocketParsingException, IOException {
+        WebSocketFrameHeader header = frame;
+        if (header == null) {
+            throw new IllegalStateException("No frame started");
+        }
+        int partLength = payload.remaining();
+        if (partLength > getFrameRemaining()) {
+            throw new IllegalArgumentException("Payload longer than the frame");
+        }
+        WebSocketParser.unmask(payload, header.getMaskingKey(), framePosition);
+        framePosition += partLength;
+        boolean frameEnd = framePosition == header.getPayloadLength();
+        if (frameEnd) {
+            frame = null;
+        }
+
+        if (header.isControl()) {
+            payload.get(controlPayload, controlLength, partLength);
+            controlLength += partLength;
+            if (!frameEnd) return null;
+            byte[] controlFrame = Arrays.copyOf(controlPayload, controlLength);
+            controlLength = 0;
+            return new WebSocketFrame.Builder().fin(true).opcode(header.getOpcode()).payload(controlFrame).build();
+        }
+
+        Opcode opcode = messageOpcode;
+        boolean last = frameEnd && header.isFin();
+        if (last) {
+            messageOpcode = null;
+        }
+        if (messageCompressed) {
+            perMessageDeflate.decompress(payload, last, data -> deliver(opcode, data, false));
+            return last ? deliver(opcode, EMPTY_BUFFER, true) : null;
+        }
+        return partLength > 0 || last ? deliver(opcode, payload, last) : null;
+    }
+
+    /**
+     * Pass a part of a data message on to the fragment handler, or buffer it.
+     *
+     * @param opcode opcode of the message
+     * @param data   unmasked and decompressed bytes, consumed
+     * @param last   true if the part ends the message
+     * @return complete message if the part ended a buffered one, otherwise null
+     */
+    @Nullable
+    private WebSocketFrame deliver(Opcode opcode, ByteBuffer data, boolean last) throws WebSocketParsingException, IOException {
+        if (fragmentHandler != null) {
+            fragmentHandler.onFragment(opcode, data, last);
+            return null;
+        }
+        int partLength = data.remaining();
+        reserve((long) length + partLength);
+        data.get(buffer, length, partLength);
+        length += partLength;
+        if (!last) {
+            return null;
+        }
+        byte[] message = length == buffer.length ? buffer : Arrays.copyOf(buffer, length);
+        // The buffer is handed over with the message, a large one is not kept for the next one
+        buffer = EMPTY;
+        length = 0;
+        return new WebSocketFrame.Builder().fin(true).opcode(opcode).payload(message).build();
+    }
+
+    /**
+     * Get the capacity of the buffer of the message in progress.
+     *
+     * @return capacity in bytes
+     */
+    int getBufferCapacity() {
+        return buffer.length;
+    }
+
+    /**
+     * Reject a message growing beyond the max. message size.
+     *
+     * @param size size of the message so far, including the bytes to add
+     */
+    private void checkSize(long size) throws WebSocketParsingException {
+        if (size > maxMessageSize) {
+            messageOpcode = null;
+            throw new WebSocketParsingException("Message too large: more than " + maxMessageSize + " bytes");
+        }
+    }
+
+    /**
+     * Make room for bytes that arrived.
+     *
+     * @param size size of the message so far, including the bytes to add
+     */
+    private void reserve(long size) throws WebSocketParsingException {
+        checkSize(size);
+        if (size > buffer.length) {
+            // Grow by doubling, but never beyond the limit
+            int capacity = (int) Math.min(Math.max((long) buffer.length * 2, size), maxMessageSize);
+            buffer = Arrays.copyOf(buffer, capacity);
+        }
+    }
+}
@@ -1,69 +1,200 @@
 package com.server.ws;
 
+import org.jetbrains.annotations.Nullable;
+
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 /**
  * Parser of the WebSocket frame.
  */
 public class WebSocketParser {
+    // Reads and writes 8 bytes of an array at once, in the order the masking key is applied
+    private static final VarHandle LONG_VIEW = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+    // Largest array the JVM reliably allocates
+    private static final long MAX_PAYLOAD_LENGTH = Integer.MAX_VALUE - 8;
+
     /**
-     * The entry point of the WebSocket parser. Does not support following features.
-     * <ul>
-     * <li>Message fragmentation</li>
-     * <li>Bytes of payload longer than the int-holdable length</li>
-     * </ul>
+     * The entry point of the WebSocket parser, reads a whole frame. A payload longer than an array can hold is only
+     * read in parts, after {@link #parseFrameHeader(InputStream)}.
      *
      * @param inputStream input stream from the TCP socket
      * @return Parsed WebSocketFrame object
+     * @throws EOFException if the stream ends before the first byte of the frame
      */
     public WebSocketFrame parseWebsocketFrame(InputStream inputStream) throws WebSocketParsingException, IOException {
-        // First byte: FIN flag, opcode
-        final int firstByte = inputStream.read();
+        WebSocketFrameHeader header = parseFrameHeader(inputStream);
+        if (header.getPayloadLength() > MAX_PAYLOAD_LENGTH) {
+            throw new WebSocketParsingException("Payload too large: " + header.getPayloadLength());
+        }
+
+        // Get payload and decode by the masking key
+        byte[] payload = new byte[(int) header.getPayloadLength()];
+        readFully(inputStream, payload, 0, payload.length);
+        unmask(payload, 0, payload.length, header.getMaskingKey(), 0);
+
+        return new WebSocketFrame.Builder().fin(header.isFin()).rsv1(header.isRsv1()).opcode(header.getOpcode())
+                .payload(payload).build();
+    }
+
+    /**
+     * Read the header of the next frame, the payload follows it in the stream.
+     *
+     * @param inputStream input stream from the TCP socket
+     * @return header of the frame
+     * @throws EOFException if the stream ends before the first byte of the frame
+     */
+    public WebSocketFrameHeader parseFrameHeader(InputStream inputStream) throws WebSocketParsingException, IOException {
+        byte[] header = new byte[WebSocketFrame.MAX_HEADER_LENGTH];
+        int headerRead = inputStream.readNBytes(header, 0, 2);
+        if (headerRead == 0) {
+            throw new EOFException("Connection closed by the client");
+        }
+        if (headerRead < 2) {
+            throw new WebSocketParsingException("Unexpected end of stream");
+        }
+        int headerLength = headerLength(header[1] & 0xFF);
+        readFully(inputStream, header, 2, headerLength - 2);
+        return parseFrameHeader(ByteBuffer.wrap(header, 0, headerLength));
+    }
+
+    /**
+     * Parse the header of the frame at the buffer position, if it has fully arrived. The position is moved to the
+     * payload then, and left where it is otherwise.
+     *
+     * @param buffer buffer in read mode
+     * @return header of the frame, or null if more bytes are needed
+     */
+    @Nullable
+    public WebSocketFrameHeader parseFrameHeader(ByteBuffer buffer) throws WebSocketParsingException {
+        if (buffer.remaining() < 2) {
+            return null;
+        }
+        final int start = buffer.position();
+
+        // First byte: FIN flag, RSV flags, opcode
+        final int firstByte = buffer.get(start) & 0xFF;
         boolean fin = (firstByte & 0b10000000) != 0;
-        Opcode opcode = Opcode.fromCode(firstByte & 0b00001111);
+        // RSV1 is checked against the agreed extensions later, no extension defines RSV2 or RSV3
+        boolean rsv1 = (firstByte & 0b01000000) != 0;
+        if ((firstByte & 0b00110000) != 0) {
+            throw new WebSocketParsingException("Reserved bits must not be set");
+        }
+        Opcode opcode;
+        try {
+            opcode = Opcode.fromCode(firstByte & 0b00001111);
+        } catch (IllegalArgumentException e) {
+            throw new WebSocketParsingException(e.getMessage());
+        }
 
         // Second byte: MASK flag, payload length
-        final int secondByte = inputStream.read();
+        final int secondByte = buffer.get(start + 1) & 0xFF;
         boolean mask = (secondByte & 0b10000000) != 0;
         if (!mask) {
             throw new WebSocketParsingException("Frame from client must be masked.");
         }
-        int payloadLength = (secondByte & 0b01111111);
+        final int headerLength = headerLength(secondByte);
+        if (buffer.remaining() < headerLength) {
+            return null;
+        }
+        long payloadLength = (secondByte & 0b01111111);
 
-        // Handle extended payload length
+        // Handle extended payload length, in network byte order
         if (payloadLength == 126) {
-            byte[] extendedPayloadLengthBytes = new byte[2];
-            inputStream.read(extendedPayloadLengthBytes, 0, 2);
-            payloadLength = ((extendedPayloadLengthBytes[0] & 0xFF) << 8) |
-                    (extendedPayloadLengthBytes[1] & 0xFF);
+            payloadLength = ((buffer.get(start + 2) & 0xFF) << 8) | (buffer.get(start + 3) & 0xFF);
         } else if (payloadLength == 127) {
-            byte[] extendedPayloadLengthBytes = new byte[8];
-            inputStream.read(extendedPayloadLengthBytes, 0, 8);
             payloadLength = 0;
-            for (byte b : extendedPayloadLengthBytes) {
-                payloadLength = (payloadLength << 8) | (b & 0xFF);
+            for (int i = 0; i < 8; i++) {
+                payloadLength = (payloadLength << 8) | (buffer.get(start + 2 + i) & 0xFF);
+            }
+            // The most significant bit must be 0
+            if (payloadLength < 0) {
+                throw new WebSocketParsingException("Invalid payload length");
             }
         }
 
-        // Masking key
-        byte[] maskingKey = new byte[4];
-        int bytesRead = inputStream.read(maskingKey);
-        if (bytesRead != 4) {
-            throw new WebSocketParsingException("Failed to read masking key");
+        // Masking key, the last 4 bytes of the header
+        int maskingKey = 0;
+        for (int i = headerLength - 4; i < headerLength; i++) {
+            maskingKey = (maskingKey << 8) | (buffer.get(start + i) & 0xFF);
         }
 
-        // Get payload and decode by the masking key
-        byte[] decodedPayload = new byte[payloadLength];
-        for (int i = 0; i < payloadLength; i++) {
-            final byte b = (byte) inputStream.read();
-            if (b == -1) {
-                throw new WebSocketParsingException("Unexpected end of stream");
-            }
-            final int maskByte = maskingKey[i % 4];
-            decodedPayload[i] = (byte) (b ^ maskByte);
+        buffer.position(start + headerLength);
+        return new WebSocketFrameHeader(fin, rsv1, opcode, payloadLength, maskingKey);
+    }
+
+    /**
+     * Unmask payload bytes in place, 8 bytes at a time.
+     *
+     * @param data       bytes to unmask
+     * @param offset     index of the first byte
+     * @param length     number of bytes
+     * @param maskingKey masking key of the frame, first key byte in the most significant bits
+     * @param position   position of the first byte in the payload, for payloads unmasked in several parts
+     */
+    public static void unmask(byte[] data, int offset, int length, int maskingKey, long position) {
+        // Rotate the key so that it starts with the byte the first byte was masked with
+        final int key = Integer.rotateLeft(maskingKey, (int) (position & 3) * 8);
+        final long wideKey = ((long) key << 32) | (key & 0xFFFFFFFFL);
+        final int end = offset + length;
+        int i = offset;
+        for (; i <= end - 8; i += 8) {
+            LONG_VIEW.set(data, i, (long) LONG_VIEW.get(data, i) ^ wideKey);
+        }
+        // A multiple of 8 bytes is done, so the key starts over for the rest
+        for (int j = 0; i < end; i++, j++) {
+            data[i] ^= (byte) (key >>> (24 - j * 8));
         }
+    }
 
-        return new WebSocketFrame.Builder().fin(fin).opcode(opcode).payload(decodedPayload).build();
+    /**
+     * Unmask the remaining bytes of the buffer in place, without moving its position.
+     *
+     * @param buffer     buffer in read mode
+     * @param maskingKey masking key of the frame, first key byte in the most significant bits
+     * @param position   position of the first byte in the payload
+     */
+    public static void unmask(ByteBuffer buffer, int maskingKey, long position) {
+        if (buffer.hasArray()) {
+            unmask(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining(), maskingKey, position);
+            return;
+        }
+        for (int i = buffer.position(); i < buffer.limit(); i++, position++) {
+            buffer.put(i, (byte) (buffer.get(i) ^ (maskingKey >>> (24 - (position & 3) * 8))));
+        }
+    }
+
+    /**
+     * Get the length of a frame header from its second byte.
+     *
+     * @param secondByte second byte of the frame
+     * @return length of the header in bytes
+     */
+    private static int headerLength(int secondByte) {
+        int length = (secondByte & 0b10000000) != 0 ? 6 : 2;
+        return switch (secondByte & 0b01111111) {
+            case 126 -> length + 2;
+            case 127 -> length + 8;
+            default -> length;
+        };
+    }
+
+    /**
+     * Read exactly the requested number of bytes, the frame is broken if the stream ends before.
+     *
+     * @param inputStream input stream from the TCP socket
+     * @param buffer      buffer to read into
+     * @param offset      index to read into from
+     * @param length      number of bytes to read
+     */
+    private static void readFully(InputStream inputStream, byte[] buffer, int offset, int length) throws WebSocketParsingException, IOException {
+        if (inputStream.readNBytes(buffer, offset, length) < length) {
+            throw new WebSocketParsingException("Unexpected end of stream");
+        }
     }
 }
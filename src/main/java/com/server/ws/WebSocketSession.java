@@ -0,0 +1,21 @@
+package com.server.ws;
+
+import java.nio.ByteBuffer;
+
+/**
+ * WebSocket connection that frames encoded elsewhere can be sent to from any thread, e.g. by a {@link WebSocketHub}.
+ */
+public interface WebSocketSession {
+    /**
+     * Send an encoded frame after whatever the connection is already sending, never interleaved with it. Does not
+     * throw, a session that fails to send closes itself.
+     *
+     * @param frame whole encoded frame in read mode, its content is shared with other sessions and must not be changed
+     */
+    void sendEncoded(ByteBuffer frame);
+
+    /**
+     * @return false once the connection is closed
+     */
+    boolean isOpen();
+}
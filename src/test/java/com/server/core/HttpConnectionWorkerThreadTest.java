@@ -0,0 +1,69 @@
+package com.server.core;
+
+import com.server.core.io.WebRootHandler;
+import com.server.core.io.WebRootNotFoundException;
+import com.server.http.HttpRequest;
+import com.server.http.HttpResponse;
+import com.server.ws.WebSocketHub;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class HttpConnectionWorkerThreadTest {
+    @TempDir
+    static Path webroot;
+
+    @BeforeAll
+    void createWebroot() throws IOException {
+        Files.writeString(webroot.resolve("index.html"), "<html></html>");
+    }
+
+    @Test
+    void failedHandlerGetsServerError() throws IOException, WebRootNotFoundException, InterruptedException {
+        HttpRequestHandler requestHandler = new HttpRequestHandler(new WebRootHandler(webroot.toString())) {
+            @Override
+            public HttpResponse handleRequest(HttpRequest request, boolean keepAlive) {
+                if (request.getRequestTarget().equals("/fail")) {
+                    throw new IllegalStateException("Handler failed");
+                }
+                return super.handleRequest(request, keepAlive);
+            }
+        };
+        ExecutorService requestExecutor = Executors.newFixedThreadPool(2);
+        ScheduledExecutorService pingScheduler = Executors.newSingleThreadScheduledExecutor();
+        try (ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+             LoopbackClient client = new LoopbackClient(serverSocket.getLocalPort())) {
+            Thread worker = new Thread(new HttpConnectionWorkerThread(serverSocket.accept(), requestHandler,
+                    new ServerConfig.Builder().build(), requestExecutor, pingScheduler, new WebSocketHub()));
+            worker.start();
+
+            // Pipelined requests are handled on the request executor, the failure surfaces from the future
+            client.send("GET / HTTP/1.1\r\nHost: localhost\r\n\r\n" +
+                    "GET /fail HTTP/1.1\r\nHost: localhost\r\n\r\n" +
+                    "GET / HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            assertEquals("<html></html>", client.readResponse().body());
+            LoopbackClient.Response error = client.readResponse();
+            assertEquals("HTTP/1.1 500 Internal Server Error", error.statusLine());
+            assertTrue(error.hasHeader("Connection: close"));
+            // Nothing pipelined behind the error is answered
+            assertTrue(client.isClosedByServer());
+            worker.join(10_000);
+        } finally {
+            requestExecutor.shutdownNow();
+            pingScheduler.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.server.core;
+
+import com.server.core.io.WebRootHandler;
+import com.server.core.io.WebRootNotFoundException;
+import com.server.http.*;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class HttpRequestHandlerTest {
+    // Sun, 06 Nov 1994 08:49:37 GMT
+    private static final long LAST_MODIFIED = 784111777000L;
+    private static final String STYLE = "body { margin: 0; }\n".repeat(100);
+    private static final byte[] PRECOMPRESSED = {0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    @TempDir
+    static Path webroot;
+    private HttpRequestHandler requestHandler;
+
+    @BeforeAll
+    public void beforeClass() throws IOException, WebRootNotFoundException {
+        Path file = Files.writeString(webroot.resolve("index.html"), "<html></html>");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(LAST_MODIFIED));
+        Files.writeString(webroot.resolve("style.css"), STYLE);
+        Files.writeString(webroot.resolve("app.js"), "let a = 1;\n".repeat(200));
+        Files.write(webroot.resolve("app.js.gz"), PRECOMPRESSED);
+        CacheControlPolicy cacheControlPolicy = new CacheControlPolicy.Builder()
+                .extension("HTML", "no-cache")
+                .defaultValue("max-age=60")
+                .build();
+        requestHandler = new HttpRequestHandler(new WebRootHandler(webroot.toString()),
+                new ServerConfig.Builder().cacheControlPolicy(cacheControlPolicy).build());
+    }
+
+    @Test
+    void getWithValidators() {
+        HttpResponse response = requestHandler.handleGetRequest(parse(""), true);
+
+        assertEquals(HttpStatusCode.OK, response.getStatusCode());
+        assertEquals("\"" + Long.toHexString(LAST_MODIFIED / 1000) + "-d\"", response.getHeaderFields(HttpHeaderFieldName.ETAG));
+        assertEquals("Sun, 06 Nov 1994 08:49:37 GMT", response.getHeaderFields(HttpHeaderFieldName.LAST_MODIFIED));
+        assertEquals("no-cache", response.getHeaderFields(HttpHeaderFieldName.CACHE_CONTROL));
+        assertEquals(13, response.getMessageBody().length);
+    }
+
+    @Test
+    void getNotModifiedByETag() {
+        String eTag = requestHandler.handleGetRequest(parse(""), true).getHeaderFields(HttpHeaderFieldName.ETAG);
+
+        HttpResponse response = requestHandler.handleGetRequest(parse("If-None-Match: \"other\", W/" + eTag + "\r\n"), true);
+        assertEquals(HttpStatusCode.REDIRECTION_304_NOT_MODIFIED, response.getStatusCode());
+        assertEquals(0, response.getMessageBody().length);
+        assertNull(response.getHeaderFields(HttpHeaderFieldName.CONTENT_LENGTH));
+
+        // If-None-Match takes precedence over If-Modified-Since
+        response = requestHandler.handleGetRequest(parse("If-None-Match: \"other\"\r\n" +
+                "If-Modified-Since: Sun, 06 Nov 1994 08:49:37 GMT\r\n"), true);
+        assertEquals(HttpStatusCode.OK, response.getStatusCode());
+    }
+
+    @Test
+    void getNotModifiedSince() {
+        assertEquals(HttpStatusCode.REDIRECTION_304_NOT_MODIFIED, requestHandler.handleGetRequest(
+                parse("If-Modified-Since: Sun, 06 Nov 1994 08:49:37 GMT\r\n"), true).getStatusCode());
+        assertEquals(HttpStatusCode.OK, requestHandler.handleGetRequest(
+                parse("If-Modified-Since: Sun, 06 Nov 1994 08:49:36 GMT\r\n"), true).getStatusCode());
+        assertEquals(HttpStatusCode.OK, requestHandler.handleGetRequest(
+                parse("If-Modified-Since: yesterday\r\n"), true).getStatusCode());
+    }
+
+    @Test
+    void getSingleRange() throws IOException {
+        HttpResponse response = requestHandler.handleGetRequest(parse("Range: bytes=1-4\r\n"), true);
+
+        assertEquals(HttpStatusCode.PARTIAL_CONTENT, response.getStatusCode());
+        assertEquals("bytes 1-4/13", response.getHeaderFields(HttpHeaderFieldName.CONTENT_RANGE));
+        assertEquals("4", response.getHeaderFields(HttpHeaderFieldName.CONTENT_LENGTH));
+        assertEquals("html", send(response.getResponseBody()));
+    }
+
+    @Test
+    void getMultipleRanges() throws IOException {
+        HttpResponse response = requestHandler.handleGetRequest(parse("Range: bytes=0-0,-1\r\n"), true);
+
+        assertEquals(HttpStatusCode.PARTIAL_CONTENT, response.getStatusCode());
+        String contentType = response.getHeaderFields(HttpHeaderFieldName.CONTENT_TYPE);
+        String boundary = contentType.substring(contentType.indexOf("boundary=") + 9);
+        String body = send(response.getResponseBody());
+        assertEquals("\r\n--" + boundary + "\r\nContent-Type: text/html\r\nContent-Range: bytes 0-0/13\r\n\r\n<" +
+                "\r\n--" + boundary + "\r\nContent-Type: text/html\r\nContent-Range: bytes 12-12/13\r\n\r\n>" +
+                "\r\n--" + boundary + "--\r\n", body);
+        assertEquals(String.valueOf(body.length()), response.getHeaderFields(HttpHeaderFieldName.CONTENT_LENGTH));
+    }
+
+    @Test
+    void getUnsatisfiableRange() {
+        HttpResponse response = requestHandler.handleGetRequest(parse("Range: bytes=13-\r\n"), true);
+
+        assertEquals(HttpStatusCode.CLIENT_ERROR_416_RANGE_NOT_SATISFIABLE, response.getStatusCode());
+        assertEquals("bytes */13", response.getHeaderFields(HttpHeaderFieldName.CONTENT_RANGE));
+    }
+
+    @Test
+    void getWholeFileIfRangeChanged() {
+        HttpResponse response = requestHandler.handleGetRequest(
+                parse("Range: bytes=1-4\r\nIf-Range: \"changed\"\r\n"), true);
+        assertEquals(HttpStatusCode.OK, response.getStatusCode());
+        assertEquals(13, response.getMessageBody().length);
+
+        response = requestHandler.handleGetRequest(
+                parse("Range: bytes=1-4\r\nIf-Range: Sun, 06 Nov 1994 08:49:37 GMT\r\n"), true);
+        assertEquals(HttpStatusCode.PARTIAL_CONTENT, response.getStatusCode());
+    }
+
+    @Test
+    void getCompressed() throws IOException {
+        HttpResponse response = requestHandler.handleGetRequest(
+                parse("/style.css", "Accept-Encoding: deflate;q=0.5, gzip\r\n"), true);
+
+        assertEquals(HttpStatusCode.OK, response.getStatusCode());
+        assertEquals("gzip", response.getHeaderFields(HttpHeaderFieldName.CONTENT_ENCODING));
+        assertEquals("Accept-Encoding", response.getHeaderFields(HttpHeaderFieldName.VARY));
+        assertTrue(response.getHeaderFields(HttpHeaderFieldName.ETAG).endsWith("-gzip\""));
+        byte[] body = response.getMessageBody();
+        assertEquals(String.valueOf(body.length), response.getHeaderFields(HttpHeaderFieldName.CONTENT_LENGTH));
+        assertEquals(STYLE, new String(new GZIPInputStream(new ByteArrayInputStream(body)).readAllBytes(),
+                StandardCharsets.US_ASCII));
+        // Compressed once, then served from the file cache
+        assertSame(body, requestHandler.handleGetRequest(parse("/style.css", "Accept-Encoding: gzip\r\n"), true)
+                .getMessageBody());
+
+        // Too small, and the identity representation for a client without gzip or deflate
+        assertNull(requestHandler.handleGetRequest(parse("Accept-Encoding: gzip\r\n"), true)
+                .getHeaderFields(HttpHeaderFieldName.CONTENT_ENCODING));
+        response = requestHandler.handleGetRequest(parse("/style.css", "Accept-Encoding: br, gzip;q=0\r\n"), true);
+        assertNull(response.getHeaderFields(HttpHeaderFieldName.CONTENT_ENCODING));
+        assertEquals("Accept-Encoding", response.getHeaderFields(HttpHeaderFieldName.VARY));
+    }
+
+    @Test
+    void getPrecompressed() {
+        HttpResponse response = requestHandler.handleGetRequest(parse("/app.js", "Accept-Encoding: gzip\r\n"), true);
+
+        assertEquals("gzip", response.getHeaderFields(HttpHeaderFieldName.CONTENT_ENCODING));
+        assertEquals("text/javascript", response.getHeaderFields(HttpHeaderFieldName.CONTENT_TYPE));
+        assertArrayEquals(PRECOMPRESSED, response.getMessageBody());
+    }
+
+    @Test
+    void getRangeUncompressed() throws IOException {
+        HttpResponse response = requestHandler.handleGetRequest(
+                parse("/style.css", "Accept-Encoding: gzip\r\nRange: bytes=0-3\r\n"), true);
+
+        assertEquals(HttpStatusCode.PARTIAL_CONTENT, response.getStatusCode());
+        assertNull(response.getHeaderFields(HttpHeaderFieldName.CONTENT_ENCODING));
+        assertEquals("body", send(response.getResponseBody()));
+    }
+
+    private String send(ResponseBody body) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        WritableByteChannel target = Channels.newChannel(output);
+        try (body) {
+            while (body.hasRemaining()) {
+                body.transferTo(target);
+            }
+        }
+        return output.toString(StandardCharsets.US_ASCII);
+    }
+
+    private HttpRequest parse(String headerFields) {
+        return parse("/", headerFields);
+    }
+
+    private HttpRequest parse(String requestTarget, String headerFields) {
+        IncrementalHttpParser parser = new IncrementalHttpParser();
+        String head = "GET " + requestTarget + " HTTP/1.1\r\nHost: localhost\r\n" + headerFields + "\r\n";
+        assertEquals(IncrementalHttpParser.Result.COMPLETE,
+                parser.parse(ByteBuffer.wrap(head.getBytes(StandardCharsets.US_ASCII))));
+        return parser.getRequest();
+    }
+}
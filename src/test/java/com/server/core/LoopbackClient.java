@@ -0,0 +1,139 @@
+package com.server.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Minimal blocking client for tests that run a server on the loopback interface. It only understands what the tests
+ * need: responses framed by Content-Length and unmasked WebSocket frames up to 64 KiB.
+ */
+public class LoopbackClient implements Closeable {
+    private static final int TIMEOUT_MILLIS = 10_000;
+
+    private final Socket socket;
+    private final DataInputStream inputStream;
+    private final OutputStream outputStream;
+
+    public LoopbackClient(int port) throws IOException {
+        this.socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        this.socket.setSoTimeout(TIMEOUT_MILLIS);
+        this.socket.setTcpNoDelay(true);
+        this.inputStream = new DataInputStream(socket.getInputStream());
+        this.outputStream = socket.getOutputStream();
+    }
+
+    public void setReadTimeout(int timeoutMillis) throws IOException {
+        socket.setSoTimeout(timeoutMillis);
+    }
+
+    public void send(String data) throws IOException {
+        send(data.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    public void send(byte[] data) throws IOException {
+        outputStream.write(data);
+        outputStream.flush();
+    }
+
+    /**
+     * Read the next response.
+     *
+     * @return head and body of the response, the body decoded as UTF-8
+     */
+    public Response readResponse() throws IOException {
+        ByteArrayOutputStream head = new ByteArrayOutputStream();
+        while (!head.toString(StandardCharsets.US_ASCII).endsWith("\r\n\r\n")) {
+            int b = inputStream.read();
+            if (b == -1) throw new EOFException("Connection closed within a response head");
+            head.write(b);
+        }
+        String headText = head.toString(StandardCharsets.US_ASCII);
+        int contentLength = 0;
+        for (String line : headText.split("\r\n")) {
+            if (line.toLowerCase(Locale.ROOT).startsWith("content-length:")) {
+                contentLength = Integer.parseInt(line.substring(line.indexOf(':') + 1).trim());
+            }
+        }
+        byte[] body = new byte[contentLength];
+        inputStream.readFully(body);
+        return new Response(headText, new String(body, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Send a masked WebSocket frame with a short payload.
+     *
+     * @param opcode  opcode of the frame
+     * @param payload payload, shorter than 126 bytes
+     */
+    public void sendFrame(int opcode, byte[] payload) throws IOException {
+        byte[] mask = {1, 2, 3, 4};
+        byte[] frame = new byte[6 + payload.length];
+        frame[0] = (byte) (0x80 | opcode);
+        frame[1] = (byte) (0x80 | payload.length);
+        System.arraycopy(mask, 0, frame, 2, 4);
+        for (int i = 0; i < payload.length; i++) {
+            frame[6 + i] = (byte) (payload[i] ^ mask[i % 4]);
+        }
+        send(frame);
+    }
+
+    /**
+     * Read the next WebSocket frame sent by the server, skipping its pings.
+     *
+     * @return frame with its opcode and payload
+     */
+    public Frame readFrame() throws IOException {
+        while (true) {
+            int opcode = inputStream.readUnsignedByte() & 0x0F;
+            int length = inputStream.readUnsignedByte() & 0x7F;
+            if (length == 126) {
+                length = inputStream.readUnsignedShort();
+            } else if (length == 127) {
+                throw new IOException("Frame too large for the test client");
+            }
+            byte[] payload = new byte[length];
+            inputStream.readFully(payload);
+            if (opcode != 0x9) {
+                return new Frame(opcode, payload);
+            }
+        }
+    }
+
+    /**
+     * Check if the server closed the connection, waiting for it up to the read timeout.
+     *
+     * @return true if the stream ended
+     */
+    public boolean isClosedByServer() throws IOException {
+        return inputStream.read() == -1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    public record Response(String head, String body) {
+        public String statusLine() {
+            return head.substring(0, head.indexOf("\r\n"));
+        }
+
+        public boolean hasHeader(String field) {
+            return head.toLowerCase(Locale.ROOT).contains("\r\n" + field.toLowerCase(Locale.ROOT) + "\r\n");
+        }
+    }
+
+    public record Frame(int opcode, byte[] payload) {
+        public String text() {
+            return new String(payload, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.server.core;
+
+import com.server.http.HttpParsingException;
+import com.server.http.HttpRequest;
+import com.server.http.HttpResponse;
+import com.server.http.HttpStatusCode;
+import com.server.http.ResponseBody;
+import org.junit.jupiter.api.Test;
+
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OrderedResponseQueueTest {
+
+    @Test
+    void responsesLeaveInRequestOrder() throws HttpParsingException {
+        OrderedResponseQueue queue = new OrderedResponseQueue();
+        CompletableFuture<HttpResponse> first = new CompletableFuture<>();
+        CompletableFuture<HttpResponse> second = new CompletableFuture<>();
+        queue.add(generateRequest(), first, true);
+        queue.add(generateRequest(), second, false);
+
+        // The second request completes first, but must wait for the first one
+        second.complete(generateResponse(HttpStatusCode.CLIENT_ERROR_404_NOT_FOUND));
+        assertNull(queue.pollCompleted());
+
+        first.complete(generateResponse(HttpStatusCode.OK));
+        OrderedResponseQueue.Entry entry = queue.pollCompleted();
+        assertNotNull(entry);
+        assertEquals("OK", entry.getResponse().getReasonPhrase());
+        assertTrue(entry.isKeepAlive());
+
+        entry = queue.pollCompleted();
+        assertNotNull(entry);
+        assertEquals("Not Found", entry.getResponse().getReasonPhrase());
+        assertFalse(entry.isKeepAlive());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    void clearClosesBodiesOfDroppedResponses() throws HttpParsingException {
+        OrderedResponseQueue queue = new OrderedResponseQueue();
+        ClosingBody completedBody = new ClosingBody();
+        ClosingBody pendingBody = new ClosingBody();
+        CompletableFuture<HttpResponse> pending = new CompletableFuture<>();
+        queue.add(generateRequest(), CompletableFuture.completedFuture(generateResponse(completedBody)), true);
+        queue.add(generateRequest(), pending, true);
+
+        queue.clear();
+        assertTrue(queue.isEmpty());
+        assertTrue(completedBody.closed);
+        // A response still being built is closed once the handler is done with it
+        assertFalse(pendingBody.closed);
+        pending.complete(generateResponse(pendingBody));
+        assertTrue(pendingBody.closed);
+    }
+
+    @Test
+    void failedHandlerGetsServerError() throws HttpParsingException {
+        OrderedResponseQueue queue = new OrderedResponseQueue();
+        queue.add(generateRequest(), CompletableFuture.failedFuture(new IllegalStateException("Handler failed")), true);
+
+        OrderedResponseQueue.Entry entry = queue.pollCompleted();
+        assertNotNull(entry);
+        HttpResponse response = entry.getResponse();
+        assertEquals(HttpStatusCode.SERVER_ERROR_500_INTERNAL_SERVER_ERROR, response.getStatusCode());
+        assertEquals("HTTP/1.1", response.getHttpVersion());
+        // The connection is closed after the error response even though the request kept it alive
+        assertFalse(entry.isKeepAlive());
+    }
+
+    private HttpRequest generateRequest() throws HttpParsingException {
+        HttpRequest request = new HttpRequest();
+        request.setHttpVersion("HTTP/1.1");
+        return request;
+    }
+
+    private HttpResponse generateResponse(ResponseBody responseBody) {
+        return new HttpResponse.Builder().httpVersion("HTTP/1.1").statusCode(HttpStatusCode.OK)
+                .responseBody(responseBody).build();
+    }
+
+    private HttpResponse generateResponse(HttpStatusCode statusCode) {
+        return new HttpResponse.Builder().httpVersion("HTTP/1.1").statusCode(statusCode).build();
+    }
+
+    private static class ClosingBody implements ResponseBody {
+        private boolean closed = false;
+
+        @Override
+        public long getLength() {
+            return 0;
+        }
+
+        @Override
+        public boolean hasRemaining() {
+            return false;
+        }
+
+        @Override
+        public long transferTo(WritableByteChannel target) {
+            return 0;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.server.core;
+
+import com.server.core.io.WebRootNotFoundException;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ServerListenerThreadTest {
+    private static final String REQUEST = "GET / HTTP/1.1\r\nHost: localhost\r\n\r\n";
+
+    @TempDir
+    static Path webroot;
+
+    @BeforeAll
+    void createWebroot() throws IOException {
+        Files.writeString(webroot.resolve("index.html"), "<html></html>");
+    }
+
+    @Test
+    void serveRequestOnVirtualThreads() throws IOException, WebRootNotFoundException {
+        ServerListenerThread server = startServer(ExecutionMode.VIRTUAL_THREAD, 1);
+        try (LoopbackClient first = new LoopbackClient(server.getLocalPort());
+             LoopbackClient second = new LoopbackClient(server.getLocalPort())) {
+            // Each connection gets a thread of its own, an idle one never holds up the other
+            first.send(REQUEST);
+            assertEquals("<html></html>", first.readResponse().body());
+            second.send(REQUEST);
+            assertEquals("<html></html>", second.readResponse().body());
+        } finally {
+            server.close();
+        }
+    }
+
+    @Test
+    void boundedPoolThreadsAreHeldByConnections() throws IOException, WebRootNotFoundException {
+        ServerListenerThread server = startServer(ExecutionMode.BOUNDED_POOL, 1);
+        try (LoopbackClient webSocket = new LoopbackClient(server.getLocalPort())) {
+            LoopbackClient http = new LoopbackClient(server.getLocalPort());
+            try {
+                webSocket.send("GET /chat HTTP/1.1\r\nHost: localhost\r\nUpgrade: websocket\r\nConnection: Upgrade\r\n" +
+                        "Sec-WebSocket-Key: dGhlIHNhbXBsZSBub25jZQ==\r\nOrigin: http://localhost\r\n" +
+                        "Sec-WebSocket-Version: 13\r\n\r\n");
+                assertEquals("HTTP/1.1 101 Switching Protocols", webSocket.readResponse().statusLine());
+
+                // The WebSocket connection holds the only pool thread, the HTTP connection waits in the queue
+                http.send(REQUEST);
+                http.setReadTimeout(500);
+                assertThrows(SocketTimeoutException.class, http::readResponse);
+
+                webSocket.sendFrame(0x8, new byte[0]);
+                assertEquals(0x8, webSocket.readFrame().opcode());
+                http.setReadTimeout(10_000);
+                assertEquals("<html></html>", http.readResponse().body());
+
+                // Kept alive, the HTTP connection holds the thread in turn until it is closed
+                try (LoopbackClient next = new LoopbackClient(server.getLocalPort())) {
+                    next.send(REQUEST);
+                    next.setReadTimeout(500);
+                    assertThrows(SocketTimeoutException.class, next::readResponse);
+                    http.close();
+                    next.setReadTimeout(10_000);
+                    assertEquals("<html></html>", next.readResponse().body());
+                }
+            } finally {
+                http.close();
+            }
+        } finally {
+            server.close();
+        }
+    }
+
+    private ServerListenerThread startServer(ExecutionMode executionMode, int workerPoolSize)
+            throws IOException, WebRootNotFoundException {
+        ServerListenerThread server = new ServerListenerThread(new ServerConfig.Builder()
+                .port(0)
+                .webroot(webroot.toString())
+                .executionMode(executionMode)
+                .workerPoolSize(workerPoolSize)
+                .build());
+        server.start();
+        return server;
+    }
+}
@@ -0,0 +1,49 @@
+package com.server.core;
+
+import com.server.ws.Opcode;
+import com.server.ws.WebSocketFrame;
+import com.server.ws.WebSocketHub;
+import com.server.ws.WebSocketMessageAssembler;
+import com.server.ws.WebSocketParsingException;
+import com.server.ws.WebSocketSession;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class WebSocketFrameHandlerTest {
+
+    @Test
+    void ignoreFragmentedBinaryMessage() throws WebSocketParsingException, IOException {
+        WebSocketFrameHandler handler = new WebSocketFrameHandler(new WebSocketHub(), new NoSession());
+        WebSocketMessageAssembler assembler = new WebSocketMessageAssembler(1024);
+
+        assertNull(assembler.add(frame(false, Opcode.BINARY, new byte[300])));
+        WebSocketFrame message = assembler.add(frame(true, Opcode.CONTINUE, new byte[300]));
+        assertEquals(Opcode.BINARY, message.getOpcode());
+        assertEquals(600, message.getPayload().length);
+
+        assertNull(handler.handleFrame(message));
+        // The connection goes on with the next message
+        assertEquals(Opcode.TEXT, handler.handleFrame(frame(true, Opcode.TEXT, "quack".getBytes())).getOpcode());
+    }
+
+    private WebSocketFrame frame(boolean fin, Opcode opcode, byte[] payload) {
+        return new WebSocketFrame.Builder().fin(fin).opcode(opcode).payload(payload).build();
+    }
+
+    private static class NoSession implements WebSocketSession {
+        @Override
+        public void sendEncoded(ByteBuffer frame) {
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.server.core;
+
+import com.server.ws.Opcode;
+import com.server.ws.OutboundBacklog;
+import com.server.ws.SlowConsumerPolicy;
+import com.server.ws.WebSocketFrame;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class WebSocketWriterTest {
+
+    @Test
+    void coalesceQueuedFramesInOrder() throws IOException {
+        List<Runnable> tasks = new ArrayList<>();
+        FlushCountingStream out = new FlushCountingStream();
+        OutboundBacklog backlog = new OutboundBacklog(OutboundBacklog.DEFAULT_HIGH_WATER_MARK, SlowConsumerPolicy.DROP);
+        WebSocketWriter writer = new WebSocketWriter(new Socket(), out, null, backlog, tasks::add);
+
+        assertTrue(writer.queueFrame(textFrame("a")));
+        assertTrue(writer.queueEncoded(ByteBuffer.wrap(textFrame("b").generateFrameBytes()).asReadOnlyBuffer()));
+        assertTrue(writer.queueFrame(textFrame("c")));
+        // Only the first frame found the connection idle
+        assertEquals(1, tasks.size());
+
+        tasks.getFirst().run();
+        assertEquals(1, out.flushes);
+        assertArrayEquals(new byte[]{(byte) 0x81, 1, 'a', (byte) 0x81, 1, 'b', (byte) 0x81, 1, 'c'}, out.toByteArray());
+        assertEquals(0, backlog.getBytes());
+
+        // The next frame starts another drain, nothing is queued after shutdown
+        assertTrue(writer.queueFrame(textFrame("d")));
+        assertEquals(2, tasks.size());
+        writer.shutdown();
+        assertFalse(writer.queueFrame(textFrame("e")));
+        tasks.get(1).run();
+        assertEquals(12, out.size());
+    }
+
+    private WebSocketFrame textFrame(String text) {
+        return new WebSocketFrame.Builder()
+                .fin(true)
+                .opcode(Opcode.TEXT)
+                .payload(text.getBytes(StandardCharsets.UTF_8))
+                .build();
+    }
+
+    private static class FlushCountingStream extends ByteArrayOutputStream {
+        private int flushes = 0;
+
+        @Override
+        public void flush() {
+            flushes++;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.server.core.io;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class FileCacheTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void getCachedFileUntilModified() throws IOException {
+        Path file = Files.writeString(directory.resolve("index.html"), "first");
+        FileCache cache = new FileCache(1024, 1024);
+
+        byte[] first = cache.get(file);
+        assertSame(first, cache.get(file));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+
+        Files.writeString(file, "second");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 1000));
+        assertEquals("second", new String(cache.get(file)));
+        assertEquals(2, cache.getMissCount());
+        assertEquals(6, cache.getSize());
+    }
+
+    @Test
+    void evictLeastRecentlyUsedFile() throws IOException {
+        Path a = Files.write(directory.resolve("a"), new byte[40]);
+        Path b = Files.write(directory.resolve("b"), new byte[40]);
+        Path c = Files.write(directory.resolve("c"), new byte[40]);
+        FileCache cache = new FileCache(100, 100);
+
+        cache.get(a);
+        cache.get(b);
+        cache.get(a);
+        cache.get(c);
+
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(80, cache.getSize());
+        // b was the least recently used one
+        cache.get(a);
+        assertEquals(2, cache.getHitCount());
+        cache.get(b);
+        assertEquals(4, cache.getMissCount());
+    }
+
+    @Test
+    void skipFileLargerThanThreshold() throws IOException {
+        Path file = Files.write(directory.resolve("large"), new byte[64]);
+        FileCache cache = new FileCache(1024, 32);
+
+        assertEquals(64, cache.get(file).length);
+        assertEquals(64, cache.get(file).length);
+
+        assertEquals(0, cache.getHitCount());
+        assertEquals(0, cache.getMissCount());
+        assertEquals(0, cache.getSize());
+    }
+}
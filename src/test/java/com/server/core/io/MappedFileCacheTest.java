@@ -0,0 +1,103 @@
+package com.server.core.io;
+
+import com.server.http.ResponseBody;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class MappedFileCacheTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void sendFromMappingUntilModified() throws IOException {
+        Path file = Files.writeString(directory.resolve("video.mp4"), "first");
+        MappedFileCache cache = new MappedFileCache(1024, 1024);
+
+        assertEquals("first", send(cache.get(file)));
+        assertEquals("first", send(cache.get(file)));
+        assertEquals(1, cache.getHitCount());
+
+        Files.writeString(file, "second");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 1000));
+        assertEquals("second", send(cache.get(file)));
+        assertEquals(2, cache.getMissCount());
+        assertEquals(6, cache.getSize());
+    }
+
+    @Test
+    void keepMappingOfBodyAfterEviction() throws IOException {
+        Path a = Files.writeString(directory.resolve("a"), "a".repeat(40));
+        Path b = Files.writeString(directory.resolve("b"), "b".repeat(40));
+        MappedFileCache cache = new MappedFileCache(64, 64);
+
+        ResponseBody body = cache.get(a);
+        send(cache.get(b));
+
+        assertEquals(1, cache.getEvictionCount());
+        // The evicted mapping is only released when its last body is closed
+        assertEquals("a".repeat(40), send(body));
+    }
+
+    @Test
+    void skipFileLargerThanThreshold() throws IOException {
+        Path file = Files.write(directory.resolve("large"), new byte[64]);
+        MappedFileCache cache = new MappedFileCache(1024, 32);
+
+        assertNull(cache.get(file));
+        assertNull(new MappedFileCache(0, 0).get(file));
+    }
+
+    @Test
+    void releaseMappingOfChangedFile() throws IOException, InterruptedException {
+        Path root = Files.createDirectories(directory.resolve("watch"));
+        Path changed = Files.writeString(root.resolve("changed.txt"), "changed");
+        Path deleted = Files.writeString(root.resolve("deleted.txt"), "deleted");
+        MappedFileCache cache = new MappedFileCache(1024, 1024);
+        try (WebRootIndex index = new WebRootIndex(root, cache::invalidate)) {
+            index.startWatching();
+            send(cache.get(index.get("/changed.txt")));
+            send(cache.get(index.get("/deleted.txt")));
+            assertEquals(14, cache.getSize());
+
+            Files.writeString(changed, "changed again");
+            assertTrue(await(() -> cache.getSize() == 7));
+            Files.delete(deleted);
+            assertTrue(await(() -> cache.getSize() == 0));
+        }
+    }
+
+    private boolean await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 15_000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) return false;
+            Thread.sleep(20);
+        }
+        return true;
+    }
+
+    private String send(ResponseBody body) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        WritableByteChannel target = Channels.newChannel(output);
+        try (body) {
+            while (body.hasRemaining()) {
+                body.transferTo(target);
+            }
+        }
+        return output.toString(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,112 @@
+package com.server.core.io;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class WebRootIndexTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void lookUpNormalizedTargets() throws IOException {
+        Path root = Files.createDirectories(directory.resolve("lookup"));
+        Files.writeString(root.resolve("index.html"), "<html></html>");
+        Files.createDirectories(root.resolve("images"));
+        Files.write(root.resolve("images/duck.jpg"), new byte[16]);
+        Files.writeString(directory.resolve("secret.txt"), "secret");
+        WebRootIndex index = new WebRootIndex(root);
+
+        assertEquals(2, index.size());
+        FileInfo fileInfo = index.get("/");
+        assertNotNull(fileInfo);
+        assertEquals("text/html", fileInfo.getMimeType());
+        assertSame(fileInfo, index.get("/./index.html"));
+        assertEquals(16, index.get("/images/../images/duck.jpg").getSize());
+        assertNull(index.get("/images/"));
+        assertNull(index.get("/../secret.txt"));
+    }
+
+    @Test
+    void followChangesWhileWatching() throws IOException, InterruptedException {
+        Path root = Files.createDirectories(directory.resolve("watch"));
+        Path file = Files.writeString(root.resolve("index.html"), "first");
+        try (WebRootIndex index = new WebRootIndex(root)) {
+            index.startWatching();
+
+            Files.writeString(file, "second!");
+            Files.createDirectories(root.resolve("docs"));
+            Files.writeString(root.resolve("docs/new.txt"), "new");
+            assertTrue(await(() -> index.get("/docs/new.txt") != null && index.get("/").getSize() == 7));
+
+            Files.delete(file);
+            assertTrue(await(() -> index.get("/") == null));
+        }
+    }
+
+    @Test
+    void keepServingFileWhileItIsModified() throws IOException, InterruptedException {
+        Path root = Files.createDirectories(directory.resolve("modify"));
+        Path file = Files.writeString(root.resolve("index.html"), "first");
+        try (WebRootIndex index = new WebRootIndex(root)) {
+            index.startWatching();
+            AtomicBoolean missing = new AtomicBoolean(false);
+            AtomicBoolean done = new AtomicBoolean(false);
+            Thread reader = new Thread(() -> {
+                while (!done.get()) {
+                    if (index.get("/") == null) missing.set(true);
+                }
+            });
+            reader.start();
+            try {
+                for (int i = 0; i < 200; i++) {
+                    Files.writeString(file, "x".repeat(i + 1));
+                }
+                Files.writeString(file, "modified!");
+                assertTrue(await(() -> index.get("/").getSize() == 9));
+            } finally {
+                done.set(true);
+                reader.join();
+            }
+            assertFalse(missing.get());
+        }
+    }
+
+    @Test
+    void reindexKeepsExistingFiles() throws IOException {
+        Path root = Files.createDirectories(directory.resolve("reindex"));
+        Files.writeString(root.resolve("index.html"), "<html></html>");
+        Path removed = Files.writeString(root.resolve("old.txt"), "old");
+        WebRootIndex index = new WebRootIndex(root);
+        FileInfo indexFile = index.get("/");
+
+        Files.delete(removed);
+        Files.writeString(root.resolve("new.txt"), "new");
+        index.reindex();
+
+        assertEquals(2, index.size());
+        assertNull(index.get("/old.txt"));
+        assertNotNull(index.get("/new.txt"));
+        assertEquals(indexFile.getSize(), index.get("/").getSize());
+    }
+
+    private boolean await(BooleanSupplier condition) throws InterruptedException {
+        // The polling watch service of some platforms only looks every few seconds
+        long deadline = System.currentTimeMillis() + 15_000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) return false;
+            Thread.sleep(20);
+        }
+        return true;
+    }
+}
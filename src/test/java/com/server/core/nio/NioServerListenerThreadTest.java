@@ -0,0 +1,111 @@
+package com.server.core.nio;
+
+import com.server.core.IoMode;
+import com.server.core.LoopbackClient;
+import com.server.core.ServerConfig;
+import com.server.core.io.WebRootNotFoundException;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class NioServerListenerThreadTest {
+
+    @TempDir
+    static Path webroot;
+
+    private NioServerListenerThread server;
+
+    @BeforeAll
+    void startServer() throws IOException, WebRootNotFoundException {
+        Files.writeString(webroot.resolve("index.html"), "<html></html>");
+        Files.writeString(webroot.resolve("first.txt"), "first");
+        Files.writeString(webroot.resolve("second.txt"), "second");
+        server = new NioServerListenerThread(new ServerConfig.Builder()
+                .port(0)
+                .webroot(webroot.toString())
+                .ioMode(IoMode.NIO)
+                .selectorThreads(1)
+                .build());
+        server.start();
+    }
+
+    @AfterAll
+    void stopServer() throws IOException {
+        server.close();
+    }
+
+    @Test
+    void keepConnectionAliveAcrossRequests() throws IOException {
+        try (LoopbackClient client = new LoopbackClient(server.getLocalPort())) {
+            client.send(get("/first.txt"));
+            assertEquals("first", client.readResponse().body());
+            client.send(get("/second.txt"));
+            assertEquals("second", client.readResponse().body());
+
+            client.send("GET / HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n");
+            assertEquals("<html></html>", client.readResponse().body());
+            assertTrue(client.isClosedByServer());
+        }
+    }
+
+    @Test
+    void answerPipelinedRequestsInOrder() throws IOException {
+        try (LoopbackClient client = new LoopbackClient(server.getLocalPort())) {
+            client.send(get("/second.txt") + get("/missing.txt") + get("/first.txt"));
+            assertEquals("second", client.readResponse().body());
+            assertEquals("HTTP/1.1 404 Not Found", client.readResponse().statusLine());
+            assertEquals("first", client.readResponse().body());
+        }
+    }
+
+    @Test
+    void parseRequestSplitAcrossReads() throws IOException, InterruptedException {
+        try (LoopbackClient client = new LoopbackClient(server.getLocalPort())) {
+            // Each part arrives in a read of its own
+            for (String part : new String[]{"GET /fir", "st.txt HTTP/1.1\r\nHo", "st: localhost\r", "\n\r\n"}) {
+                client.send(part);
+                Thread.sleep(50);
+            }
+            LoopbackClient.Response response = client.readResponse();
+            assertEquals("HTTP/1.1 200 OK", response.statusLine());
+            assertEquals("first", response.body());
+        }
+    }
+
+    @Test
+    void echoWebSocketFrames() throws IOException {
+        try (LoopbackClient client = new LoopbackClient(server.getLocalPort())) {
+            client.send("GET /chat HTTP/1.1\r\nHost: localhost\r\nUpgrade: websocket\r\nConnection: Upgrade\r\n" +
+                    "Sec-WebSocket-Key: dGhlIHNhbXBsZSBub25jZQ==\r\nOrigin: http://localhost\r\n" +
+                    "Sec-WebSocket-Version: 13\r\n\r\n");
+            assertEquals("HTTP/1.1 101 Switching Protocols", client.readResponse().statusLine());
+
+            client.sendFrame(0x1, "hello".getBytes(StandardCharsets.UTF_8));
+            LoopbackClient.Frame text = client.readFrame();
+            assertEquals(0x1, text.opcode());
+            assertTrue(text.text().contains("hello"));
+
+            client.sendFrame(0x9, "ping".getBytes(StandardCharsets.UTF_8));
+            LoopbackClient.Frame pong = client.readFrame();
+            assertEquals(0xA, pong.opcode());
+            assertEquals("ping", pong.text());
+
+            client.sendFrame(0x8, new byte[0]);
+            assertEquals(0x8, client.readFrame().opcode());
+        }
+    }
+
+    private String get(String target) {
+        return "GET " + target + " HTTP/1.1\r\nHost: localhost\r\n\r\n";
+    }
+}
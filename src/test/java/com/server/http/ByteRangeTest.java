@@ -0,0 +1,43 @@
+package com.server.http;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ByteRangeTest {
+
+    @Test
+    void parseRanges() {
+        List<ByteRange> ranges = ByteRange.parse("bytes=0-99, 9000-, -500, 200-20000", 10000);
+
+        assertNotNull(ranges);
+        assertEquals(4, ranges.size());
+        assertEquals("bytes 0-99/10000", ranges.get(0).toContentRange(10000));
+        assertEquals("bytes 9000-9999/10000", ranges.get(1).toContentRange(10000));
+        assertEquals("bytes 9500-9999/10000", ranges.get(2).toContentRange(10000));
+        // The last position is cut at the end of the representation
+        assertEquals(9800, ranges.get(3).getLength());
+    }
+
+    @Test
+    void parseUnsatisfiableRanges() {
+        List<ByteRange> ranges = ByteRange.parse("bytes=10000-, -0", 10000);
+
+        assertNotNull(ranges);
+        assertTrue(ranges.isEmpty());
+        assertEquals(1, ByteRange.parse("bytes=10000-10001, 0-0", 10000).size());
+    }
+
+    @Test
+    void ignoreMalformedRanges() {
+        assertNull(ByteRange.parse("items=0-1", 10000));
+        assertNull(ByteRange.parse("bytes=5-1", 10000));
+        assertNull(ByteRange.parse("bytes=-", 10000));
+        assertNull(ByteRange.parse("bytes=a-1", 10000));
+        assertNull(ByteRange.parse("bytes=" + "0-0,".repeat(ByteRange.MAX_RANGES) + "0-0", 10000));
+    }
+}
@@ -0,0 +1,66 @@
+package com.server.http;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class DeflaterBodyTest {
+
+    @Test
+    void compressWhileSending() throws IOException {
+        // Larger than the buffers, so the source is read several times
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            content.append(i).append(' ');
+        }
+        byte[] data = content.toString().getBytes(StandardCharsets.US_ASCII);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        WritableByteChannel target = Channels.newChannel(output);
+
+        try (DeflaterBody body = new DeflaterBody(Channels.newChannel(new ByteArrayInputStream(data)),
+                ContentEncoding.GZIP, DeflaterBody.DEFAULT_LEVEL)) {
+            assertEquals(-1, body.getLength());
+            while (body.hasRemaining()) {
+                body.transferTo(target);
+            }
+            assertEquals(0, body.transferTo(target));
+        }
+
+        assertArrayEquals(data, new GZIPInputStream(new ByteArrayInputStream(output.toByteArray())).readAllBytes());
+    }
+
+    @Test
+    void compressDeflate() throws IOException {
+        byte[] data = "deflate ".repeat(100).getBytes(StandardCharsets.US_ASCII);
+
+        byte[] compressed = DeflaterBody.compress(data, ContentEncoding.DEFLATE, 9);
+
+        assertTrue(compressed.length < data.length);
+        assertArrayEquals(data, new InflaterInputStream(new ByteArrayInputStream(compressed)).readAllBytes());
+        byte[] empty = DeflaterBody.compress(new byte[0], ContentEncoding.GZIP, 1);
+        assertEquals(0, new GZIPInputStream(new ByteArrayInputStream(empty)).readAllBytes().length);
+    }
+
+    @Test
+    void negotiateEncoding() {
+        assertEquals(ContentEncoding.GZIP, ContentEncoding.negotiate("gzip, deflate, br"));
+        assertEquals(ContentEncoding.DEFLATE, ContentEncoding.negotiate("gzip;q=0.5, deflate"));
+        assertEquals(ContentEncoding.DEFLATE, ContentEncoding.negotiate("gzip;q=0, *"));
+        assertEquals(ContentEncoding.GZIP, ContentEncoding.negotiate("*;q=0.1"));
+        assertNull(ContentEncoding.negotiate("identity, br"));
+        assertNull(ContentEncoding.negotiate("gzip;q=0"));
+        assertNull(ContentEncoding.negotiate(""));
+        assertNull(ContentEncoding.negotiate(null));
+    }
+}
@@ -0,0 +1,55 @@
+package com.server.http;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class FileBodyTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void transferRegion() throws IOException {
+        Path file = Files.writeString(directory.resolve("region.txt"), "0123456789");
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        WritableByteChannel target = Channels.newChannel(output);
+        FileBody fileBody = new FileBody(file, 2, 5);
+
+        while (fileBody.hasRemaining()) {
+            fileBody.transferTo(target);
+        }
+
+        assertEquals("23456", output.toString(StandardCharsets.US_ASCII));
+        assertEquals(0, fileBody.transferTo(target));
+    }
+
+    @Test
+    void transferTruncatedFile() throws IOException {
+        Path file = Files.writeString(directory.resolve("truncated.txt"), "0123456789");
+        FileBody fileBody = new FileBody(file, 0, 10);
+        Files.writeString(file, "01234");
+        WritableByteChannel target = Channels.newChannel(new ByteArrayOutputStream());
+
+        try {
+            while (fileBody.hasRemaining()) {
+                fileBody.transferTo(target);
+            }
+            fail();
+        } catch (EOFException e) {
+            assertTrue(fileBody.hasRemaining());
+        }
+    }
+}
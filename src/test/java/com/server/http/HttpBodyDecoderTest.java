@@ -0,0 +1,143 @@
+package com.server.http;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class HttpBodyDecoderTest {
+
+    @Test
+    void decodeContentLengthBody() {
+        ByteBuffer input = toBuffer("hello worldGET / HTTP/1.1\r\n");
+        ByteBuffer output = ByteBuffer.allocate(64);
+        try {
+            HttpBodyDecoder decoder = HttpBodyDecoder.forRequest(parseHead("Content-Length: 11\r\n"), 1024);
+            decoder.decode(input, output);
+            assertTrue(decoder.isComplete());
+        } catch (HttpParsingException e) {
+            fail(e);
+        }
+        assertEquals("hello world", decode(output));
+        // The next request stays in the input
+        assertEquals(16, input.remaining());
+    }
+
+    @Test
+    void decodeChunkedBodyInSmallSteps() {
+        byte[] raw = ("5;name=value\r\nhello\r\n" +
+                "6\r\n world\r\n" +
+                "0\r\n" +
+                "Trailer: ignored\r\n" +
+                "\r\nGET").getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer output = ByteBuffer.allocate(64);
+        try {
+            HttpBodyDecoder decoder = HttpBodyDecoder.forRequest(parseHead("Transfer-Encoding: chunked\r\n"), 1024);
+            int fed = 0;
+            // Feed three bytes at a time into an output with room for four
+            while (!decoder.isComplete()) {
+                ByteBuffer input = ByteBuffer.wrap(raw, fed, Math.min(3, raw.length - fed));
+                ByteBuffer step = output.slice(output.position(), Math.min(4, output.remaining()));
+                decoder.decode(input, step);
+                output.position(output.position() + step.position());
+                fed = input.position();
+            }
+            assertEquals(raw.length - 3, fed);
+            assertEquals(11, decoder.getDecodedLength());
+        } catch (HttpParsingException e) {
+            fail(e);
+        }
+        assertEquals("hello world", decode(output));
+    }
+
+    @Test
+    void requestWithoutBody() {
+        try {
+            assertNull(HttpBodyDecoder.forRequest(parseHead(""), 1024));
+            assertNull(HttpBodyDecoder.forRequest(parseHead("Content-Length: 0\r\n"), 1024));
+        } catch (HttpParsingException e) {
+            fail(e);
+        }
+    }
+
+    @Test
+    void rejectContentLengthTooLarge() {
+        try {
+            HttpBodyDecoder.forRequest(parseHead("Content-Length: 1025\r\n"), 1024);
+            fail();
+        } catch (HttpParsingException e) {
+            assertEquals(HttpStatusCode.CLIENT_ERROR_413_CONTENT_TOO_LARGE, e.getErrorCode());
+        }
+    }
+
+    @Test
+    void rejectChunkedBodyTooLarge() {
+        try {
+            HttpBodyDecoder decoder = HttpBodyDecoder.forRequest(parseHead("Transfer-Encoding: chunked\r\n"), 1024);
+            decoder.decode(toBuffer("3ff\r\n" + "a".repeat(0x3ff) + "\r\n"), ByteBuffer.allocate(2048));
+            decoder.decode(toBuffer("2\r\n"), ByteBuffer.allocate(64));
+            fail();
+        } catch (HttpParsingException e) {
+            assertEquals(HttpStatusCode.CLIENT_ERROR_413_CONTENT_TOO_LARGE, e.getErrorCode());
+        }
+    }
+
+    @Test
+    void rejectAmbiguousFraming() {
+        try {
+            HttpBodyDecoder.forRequest(parseHead("Content-Length: 5\r\nTransfer-Encoding: chunked\r\n"), 1024);
+            fail();
+        } catch (HttpParsingException e) {
+            assertEquals(HttpStatusCode.CLIENT_ERROR_400_BAD_REQUEST, e.getErrorCode());
+        }
+    }
+
+    @Test
+    void rejectBadChunkSize() {
+        try {
+            HttpBodyDecoder decoder = HttpBodyDecoder.forRequest(parseHead("Transfer-Encoding: chunked\r\n"), 1024);
+            decoder.decode(toBuffer("zz\r\n"), ByteBuffer.allocate(64));
+            fail();
+        } catch (HttpParsingException e) {
+            assertEquals(HttpStatusCode.CLIENT_ERROR_400_BAD_REQUEST, e.getErrorCode());
+        }
+    }
+
+    @Test
+    void readBodyStreamAcrossSocketReads() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(64).put("4\r\nstre".getBytes(StandardCharsets.US_ASCII)).flip();
+        InputStream socket = new ByteArrayInputStream("\r\n2\r\nam\r\n0\r\n\r\nGET".getBytes(StandardCharsets.US_ASCII));
+        HttpBodyInputStream body = null;
+        try {
+            HttpRequest request = parseHead("Transfer-Encoding: chunked\r\n");
+            body = new HttpBodyInputStream(HttpBodyDecoder.forRequest(request, 1024), buffer, socket);
+        } catch (HttpParsingException e) {
+            fail(e);
+        }
+        assertEquals("stream", new String(body.readAllBytes(), StandardCharsets.US_ASCII));
+        assertTrue(body.isComplete());
+        assertEquals("GET", decode(buffer.compact()));
+    }
+
+    private HttpRequest parseHead(String headerFields) {
+        IncrementalHttpParser parser = new IncrementalHttpParser();
+        assertEquals(IncrementalHttpParser.Result.COMPLETE,
+                parser.parse(toBuffer("POST /upload HTTP/1.1\r\nHost: localhost\r\n" + headerFields + "\r\n")));
+        return parser.getRequest();
+    }
+
+    private ByteBuffer toBuffer(String rawData) {
+        return ByteBuffer.wrap(rawData.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private String decode(ByteBuffer output) {
+        return new String(output.array(), 0, output.position(), StandardCharsets.US_ASCII);
+    }
+}
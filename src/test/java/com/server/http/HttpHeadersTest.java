@@ -0,0 +1,61 @@
+package com.server.http;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class HttpHeadersTest {
+
+    @Test
+    void lookupIgnoresCase() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("content-TYPE", "text/html");
+        headers.add("X-Custom", "1");
+
+        assertEquals("text/html", headers.get(HttpHeaderFieldName.CONTENT_TYPE));
+        assertEquals("text/html", headers.get("Content-Type"));
+        assertEquals("1", headers.get("x-custom"));
+        assertNull(headers.get("X-Other"));
+        assertFalse(headers.contains(HttpHeaderFieldName.CONTENT_LENGTH));
+    }
+
+    @Test
+    void repeatedFieldsKeepEveryValue() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HttpHeaderFieldName.CONNECTION, "keep-alive");
+        headers.add("Cookie", "a=1");
+        headers.add("connection", "Upgrade");
+        headers.add("cookie", "b=2");
+
+        assertEquals(4, headers.size());
+        assertEquals(2, headers.names().size());
+        assertEquals("keep-alive, Upgrade", headers.get(HttpHeaderFieldName.CONNECTION));
+        assertEquals(List.of("a=1", "b=2"), headers.getAll("Cookie"));
+    }
+
+    @Test
+    void parsedFieldsAreSlicesOfTheHead() {
+        IncrementalHttpParser parser = new IncrementalHttpParser();
+        String rawData = "GET / HTTP/1.1\r\n" +
+                "host: localhost:8080\r\n" +
+                "X-Forwarded-For: 10.0.0.1\r\n" +
+                "x-forwarded-for: 10.0.0.2\r\n" +
+                "\r\n";
+        assertEquals(IncrementalHttpParser.Result.COMPLETE,
+                parser.parse(ByteBuffer.wrap(rawData.getBytes(StandardCharsets.US_ASCII))));
+        HttpHeaders headers = parser.getRequest().getHeaders();
+
+        assertEquals(3, headers.size());
+        // Well-known names get their canonical form, others are kept as received
+        assertEquals("Host", headers.getName(0));
+        assertEquals("X-Forwarded-For", headers.getName(1));
+        assertEquals("localhost:8080", headers.get(HttpHeaderFieldName.HOST));
+        assertEquals(List.of("10.0.0.1", "10.0.0.2"), headers.getAll("X-FORWARDED-FOR"));
+    }
+}
@@ -8,8 +8,7 @@ import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.fail;
+import static org.junit.jupiter.api.Assertions.*;
 
 @SuppressWarnings("ALL")
 @TestInstance(TestInstance.Lifecycle.PER_CLASS)
@@ -39,14 +38,17 @@ class HttpParserTest {
 
     @Test
     void parseHttpPostRequest() {
+        HttpRequest request = null;
         try {
-            httpParser.parseHttpRequest(
+            request = httpParser.parseHttpRequest(
                     generateValidPOSTTestCase()
             );
-            fail();
         } catch (HttpParsingException e) {
-            assertEquals(e.getErrorCode(), HttpStatusCode.SERVER_ERROR_501_NOT_IMPLEMENTED);
+            fail(e);
         }
+        assertEquals(request.getMethod(), HttpMethod.POST);
+        assertEquals(request.getRequestTarget(), "/echo/post/json");
+        assertEquals(request.getHeaderFields("Content-Length"), "80");
     }
 
     @Test
@@ -0,0 +1,145 @@
+package com.server.http;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class HttpResponseEncoderTest {
+
+    @Test
+    void encodeHeadAndWrapBody() {
+        byte[] body = "<html></html>".getBytes(StandardCharsets.US_ASCII);
+        HttpResponse.Builder builder = new HttpResponse.Builder()
+                .httpVersion(HttpVersion.HTTP_1_1.literal)
+                .statusCode(HttpStatusCode.OK)
+                .addHeader(HttpHeaderFieldName.CONTENT_TYPE, "text/html")
+                .addHeader(HttpHeaderFieldName.CONTENT_LENGTH, String.valueOf(body.length));
+        builder.messageBody(body);
+        List<ByteBuffer> buffers = new ArrayList<>();
+
+        new HttpResponseEncoder().encode(builder.build(), buffers);
+
+        assertEquals(2, buffers.size());
+        assertEquals("HTTP/1.1 200 OK\r\n" + serverFields() + "Content-Type: text/html\r\nContent-Length: 13\r\n\r\n", decode(buffers.get(0)));
+        // The body is sent from its own array
+        assertSame(body, buffers.get(1).array());
+    }
+
+    @Test
+    void encodePipelinedHeadsIntoOneBuffer() {
+        HttpResponse response = new HttpResponse.Builder()
+                .httpVersion(HttpVersion.HTTP_1_1.literal)
+                .statusCode(HttpStatusCode.CLIENT_ERROR_404_NOT_FOUND)
+                .addHeader(HttpHeaderFieldName.CONTENT_LENGTH, "0")
+                .build();
+        HttpResponseEncoder encoder = new HttpResponseEncoder();
+        List<ByteBuffer> buffers = new ArrayList<>();
+
+        encoder.encode(response, buffers);
+        encoder.encode(response, buffers);
+
+        assertEquals(2, buffers.size());
+        assertSame(buffers.get(0).array(), buffers.get(1).array());
+        assertEquals("HTTP/1.1 404 Not Found\r\n" + serverFields() + "Content-Length: 0\r\n\r\n", decode(buffers.get(1)));
+    }
+
+    @Test
+    void encodeHeadLargerThanBuffer() {
+        String value = "a".repeat(100);
+        HttpResponse response = new HttpResponse.Builder()
+                .httpVersion(HttpVersion.HTTP_1_1.literal)
+                .statusCode(HttpStatusCode.OK)
+                .addHeader("X-Large", value)
+                .build();
+        List<ByteBuffer> buffers = new ArrayList<>();
+
+        new HttpResponseEncoder(16).encode(response, buffers);
+
+        assertEquals("HTTP/1.1 200 OK\r\n" + serverFields() + "X-Large: " + value + "\r\n\r\n", decode(buffers.get(0)));
+    }
+
+    @Test
+    void encodeKeepsFieldsSetByResponse() {
+        HttpResponse response = new HttpResponse.Builder()
+                .httpVersion("HTTP/1.2")
+                .statusCode(HttpStatusCode.OK)
+                .addHeader("date", "Sun, 06 Nov 1994 08:49:37 GMT")
+                .addHeader(HttpHeaderFieldName.SERVER, "test")
+                .build();
+        List<ByteBuffer> buffers = new ArrayList<>();
+
+        new HttpResponseEncoder().encode(response, buffers);
+
+        // An unknown version is encoded as is, and well-known names in their canonical form
+        assertEquals("HTTP/1.2 200 OK\r\nDate: Sun, 06 Nov 1994 08:49:37 GMT\r\nServer: test\r\n\r\n", decode(buffers.get(0)));
+    }
+
+    @Test
+    void encodeBodyOfUnknownLengthChunked() {
+        StreamingBody body = new StreamingBody();
+        HttpResponse response = new HttpResponse.Builder()
+                .httpVersion(HttpVersion.HTTP_1_1.literal)
+                .statusCode(HttpStatusCode.OK)
+                .responseBody(body)
+                .build();
+        List<ByteBuffer> buffers = new ArrayList<>();
+
+        assertInstanceOf(ChunkedBody.class, new HttpResponseEncoder().encode(response, buffers));
+        assertEquals("HTTP/1.1 200 OK\r\n" + serverFields() + "Transfer-Encoding: chunked\r\n\r\n", decode(buffers.get(0)));
+
+        // HTTP/1.0 has no chunks, the body ends with the connection
+        response = new HttpResponse.Builder()
+                .httpVersion(HttpVersion.HTTP_1_0.literal)
+                .statusCode(HttpStatusCode.OK)
+                .responseBody(body)
+                .build();
+        assertSame(body, new HttpResponseEncoder().encode(response, buffers));
+    }
+
+    @Test
+    void closeHttp10ConnectionAfterBodyOfUnknownLength() {
+        StreamingBody body = new StreamingBody();
+        HttpResponse response = new HttpResponse.Builder()
+                .httpVersion(HttpVersion.HTTP_1_0.literal)
+                .statusCode(HttpStatusCode.OK)
+                .addHeader(HttpHeaderFieldName.CONNECTION, "keep-alive")
+                .responseBody(body)
+                .build();
+        List<ByteBuffer> buffers = new ArrayList<>();
+
+        assertTrue(response.isDelimitedByClose());
+        assertSame(body, new HttpResponseEncoder().encode(response, buffers));
+        assertEquals("HTTP/1.0 200 OK\r\n" + serverFields() + "Connection: close\r\n\r\n", decode(buffers.get(0)));
+
+        // A known length keeps the connection usable
+        response = new HttpResponse.Builder()
+                .httpVersion(HttpVersion.HTTP_1_0.literal)
+                .statusCode(HttpStatusCode.OK)
+                .addHeader(HttpHeaderFieldName.CONNECTION, "keep-alive")
+                .addHeader(HttpHeaderFieldName.CONTENT_LENGTH, "0")
+                .responseBody(body)
+                .build();
+        assertFalse(response.isDelimitedByClose());
+        assertEquals("keep-alive", response.getHeaders().get(HttpHeaderFieldName.CONNECTION));
+    }
+
+    @Test
+    void formatHttpDate() {
+        assertEquals("Sun, 06 Nov 1994 08:49:37 GMT", DateHeader.format(784111777000L));
+    }
+
+    private String serverFields() {
+        return new String(DateHeader.get(), StandardCharsets.US_ASCII) + "Server: " + HttpResponseEncoder.SERVER_NAME + "\r\n";
+    }
+
+    private String decode(ByteBuffer buffer) {
+        return StandardCharsets.US_ASCII.decode(buffer.duplicate()).toString();
+    }
+}
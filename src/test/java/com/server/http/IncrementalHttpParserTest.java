@@ -0,0 +1,124 @@
+package com.server.http;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class IncrementalHttpParserTest {
+
+    private static final String VALID_REQUEST = "GET /index.html HTTP/1.1\r\n" +
+            "Host: localhost:8080\r\n" +
+            "Connection: keep-alive\r\n" +
+            "\r\n";
+
+    @Test
+    void parseByteByByte() {
+        IncrementalHttpParser parser = new IncrementalHttpParser();
+        byte[] bytes = VALID_REQUEST.getBytes(StandardCharsets.US_ASCII);
+        for (int i = 0; i < bytes.length - 1; i++) {
+            assertEquals(IncrementalHttpParser.Result.NEED_MORE, parser.parse(ByteBuffer.wrap(bytes, i, 1)));
+        }
+        assertEquals(IncrementalHttpParser.Result.COMPLETE, parser.parse(ByteBuffer.wrap(bytes, bytes.length - 1, 1)));
+
+        HttpRequest request = parser.getRequest();
+        assertEquals(HttpMethod.GET, request.getMethod());
+        assertEquals("/index.html", request.getRequestTarget());
+        assertEquals(HttpVersion.HTTP_1_1, request.getHttpVersion());
+        assertEquals("localhost:8080", request.getHeaderFields("host"));
+        assertEquals("keep-alive", request.getHeaderFields("connection"));
+    }
+
+    @Test
+    void parsePipelinedRequests() {
+        IncrementalHttpParser parser = new IncrementalHttpParser();
+        ByteBuffer buffer = toBuffer(VALID_REQUEST + VALID_REQUEST.replace("/index.html", "/duck.jpg"));
+
+        assertEquals(IncrementalHttpParser.Result.COMPLETE, parser.parse(buffer));
+        HttpRequest first = parser.getRequest();
+        parser.reset();
+        assertEquals(IncrementalHttpParser.Result.COMPLETE, parser.parse(buffer));
+        HttpRequest second = parser.getRequest();
+
+        assertFalse(buffer.hasRemaining());
+        // The first request still owns its head after the parser moved on
+        assertEquals("/index.html", first.getRequestTarget());
+        assertEquals("/duck.jpg", second.getRequestTarget());
+    }
+
+    @Test
+    void parseLeavesFollowingBytes() {
+        IncrementalHttpParser parser = new IncrementalHttpParser();
+        ByteBuffer buffer = toBuffer(VALID_REQUEST + "GET");
+
+        assertEquals(IncrementalHttpParser.Result.COMPLETE, parser.parse(buffer));
+        assertEquals(3, buffer.remaining());
+    }
+
+    @Test
+    void parseRejectsMethodBeforeHeadComplete() {
+        IncrementalHttpParser parser = new IncrementalHttpParser();
+
+        assertEquals(IncrementalHttpParser.Result.ERROR, parser.parse(toBuffer("PATCH / HTTP/1.1\r\nHost: loc")));
+        assertEquals(HttpStatusCode.SERVER_ERROR_501_NOT_IMPLEMENTED, parser.getError().getErrorCode());
+        // The error sticks until the parser is reset
+        assertEquals(IncrementalHttpParser.Result.ERROR, parser.parse(toBuffer("alhost\r\n\r\n")));
+
+        parser.reset();
+        assertEquals(IncrementalHttpParser.Result.COMPLETE, parser.parse(toBuffer(VALID_REQUEST)));
+    }
+
+    @Test
+    void parseRejectsLineWithoutCR() {
+        IncrementalHttpParser parser = new IncrementalHttpParser();
+
+        assertEquals(IncrementalHttpParser.Result.ERROR, parser.parse(toBuffer("GET / HTTP/1.1\nHost: localhost\r\n\r\n")));
+        assertEquals(HttpStatusCode.CLIENT_ERROR_400_BAD_REQUEST, parser.getError().getErrorCode());
+    }
+
+    @Test
+    void parseHeaderFieldsIgnoringCaseAndWhitespace() {
+        IncrementalHttpParser parser = new IncrementalHttpParser();
+
+        assertEquals(IncrementalHttpParser.Result.COMPLETE, parser.parse(toBuffer("GET / HTTP/1.1\r\n" +
+                "Host: localhost:8080\r\n" +
+                "Connection:   keep-alive \r\n" +
+                "ACCEPT-Language: en-US\r\n" +
+                "\r\n")));
+        HttpRequest request = parser.getRequest();
+        assertEquals("keep-alive", request.getHeaderFields("Connection"));
+        assertEquals("en-US", request.getHeaderFields("accept-language"));
+        assertEquals(3, request.getHeaderFieldNames().size());
+    }
+
+    @Test
+    void parseRejectsMalformedHead() {
+        assertParseError("\r\nHost: localhost\r\n\r\n", HttpStatusCode.CLIENT_ERROR_400_BAD_REQUEST);
+        assertParseError("GET / AAAAAA HTTP/1.1\r\nHost: localhost\r\n\r\n", HttpStatusCode.CLIENT_ERROR_400_BAD_REQUEST);
+        assertParseError("GET / HTTP/2.0\r\nHost: localhost\r\n\r\n", HttpStatusCode.SERVER_ERROR_505_HTTP_VERSION_NOT_SUPPORTED);
+        assertParseError("GET / HTTP/1.1\r\nHost : localhost\r\n\r\n", HttpStatusCode.CLIENT_ERROR_400_BAD_REQUEST);
+    }
+
+    @Test
+    void parseRejectsHeadTooLarge() {
+        IncrementalHttpParser parser = new IncrementalHttpParser(64);
+
+        assertEquals(IncrementalHttpParser.Result.NEED_MORE, parser.parse(toBuffer("GET / HTTP/1.1\r\n")));
+        assertEquals(IncrementalHttpParser.Result.ERROR, parser.parse(toBuffer("User-Agent: " + "a".repeat(64))));
+        assertEquals(HttpStatusCode.CLIENT_ERROR_431_REQUEST_HEADER_FIELDS_TOO_LARGE, parser.getError().getErrorCode());
+    }
+
+    private void assertParseError(String rawData, HttpStatusCode errorCode) {
+        IncrementalHttpParser parser = new IncrementalHttpParser();
+        assertEquals(IncrementalHttpParser.Result.ERROR, parser.parse(toBuffer(rawData)));
+        assertEquals(errorCode, parser.getError().getErrorCode());
+    }
+
+    private ByteBuffer toBuffer(String rawData) {
+        return ByteBuffer.wrap(rawData.getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,98 @@
+package com.server.http;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class StreamingBodyTest {
+
+    @Test
+    void sendFlushedWritesAsChunks() throws IOException {
+        StreamingBody body = new StreamingBody(4, 64);
+        ChunkedBody chunkedBody = new ChunkedBody(body, 1024);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        WritableByteChannel target = Channels.newChannel(output);
+        OutputStream outputStream = body.getOutputStream();
+
+        assertFalse(chunkedBody.isReady());
+        outputStream.write('a');
+        // Coalesced until the buffer is full or flushed
+        assertFalse(chunkedBody.isReady());
+        outputStream.write("bcdef".getBytes(StandardCharsets.US_ASCII));
+        outputStream.flush();
+        chunkedBody.transferTo(target);
+        assertEquals("6\r\nabcdef\r\n", output.toString(StandardCharsets.US_ASCII));
+        assertTrue(chunkedBody.hasRemaining());
+
+        outputStream.close();
+        chunkedBody.transferTo(target);
+        assertEquals("6\r\nabcdef\r\n0\r\n\r\n", output.toString(StandardCharsets.US_ASCII));
+        assertFalse(chunkedBody.hasRemaining());
+    }
+
+    @Test
+    void blockWriterWhileTooMuchIsBuffered() throws Exception {
+        StreamingBody body = new StreamingBody(4, 8);
+        CountDownLatch written = new CountDownLatch(1);
+        Thread writer = new Thread(() -> {
+            try (OutputStream outputStream = body.getOutputStream()) {
+                outputStream.write("0123456789abcdef".getBytes(StandardCharsets.US_ASCII));
+                written.countDown();
+            } catch (IOException e) {
+                fail(e);
+            }
+        });
+        writer.start();
+
+        // Two buffers fit, the third write waits for the client
+        assertFalse(written.await(200, TimeUnit.MILLISECONDS));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        WritableByteChannel target = Channels.newChannel(output);
+        while (body.hasRemaining()) {
+            if (!body.isReady()) {
+                CountDownLatch ready = new CountDownLatch(1);
+                body.onReady(ready::countDown);
+                assertTrue(ready.await(5, TimeUnit.SECONDS));
+            }
+            body.transferTo(target);
+        }
+        writer.join();
+        assertEquals("0123456789abcdef", output.toString(StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    void abortBody() throws IOException {
+        StreamingBody body = new StreamingBody();
+        body.getOutputStream().write(1);
+        CountDownLatch ready = new CountDownLatch(1);
+        body.onReady(ready::countDown);
+
+        body.abort();
+
+        assertEquals(0, ready.getCount());
+        assertTrue(body.isReady());
+        try {
+            body.transferTo(Channels.newChannel(new ByteArrayOutputStream()));
+            fail();
+        } catch (IOException e) {
+            // The connection is closed, the client sees a truncated body
+        }
+        try {
+            body.getOutputStream().flush();
+            fail();
+        } catch (IOException e) {
+            // The writer learns it can stop
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.server.ws;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class OutboundBacklogTest {
+
+    @Test
+    void dropOrDisconnectBeyondHighWaterMark() throws IOException {
+        OutboundBacklog dropping = new OutboundBacklog(100, SlowConsumerPolicy.DROP);
+        // A frame larger than the mark goes through while the backlog is below it
+        assertTrue(dropping.admit(150, true));
+        assertFalse(dropping.admit(10, true));
+        // Frames of the connection itself are always queued
+        dropping.add(10);
+        assertEquals(160, dropping.getBytes());
+        dropping.release(160);
+        assertTrue(dropping.admit(10, true));
+
+        OutboundBacklog disconnecting = new OutboundBacklog(100, SlowConsumerPolicy.DISCONNECT);
+        assertTrue(disconnecting.admit(100, true));
+        assertThrows(IOException.class, () -> disconnecting.admit(1, true));
+    }
+
+    @Test
+    void blockUntilClientCatchesUp() throws Exception {
+        OutboundBacklog backlog = new OutboundBacklog(100, SlowConsumerPolicy.BLOCK);
+        backlog.add(100);
+        assertFalse(backlog.admit(10, false));
+
+        CompletableFuture<Boolean> admitted = CompletableFuture.supplyAsync(() -> {
+            try {
+                return backlog.admit(10, true);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        assertThrows(TimeoutException.class, () -> admitted.get(100, TimeUnit.MILLISECONDS));
+        backlog.release(50);
+        assertTrue(admitted.get(5, TimeUnit.SECONDS));
+        assertEquals(60, backlog.getBytes());
+
+        backlog.add(100);
+        CompletableFuture<Boolean> closed = CompletableFuture.supplyAsync(() -> {
+            try {
+                return backlog.admit(10, true);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        backlog.close();
+        try {
+            assertFalse(closed.get(5, TimeUnit.SECONDS));
+        } catch (ExecutionException e) {
+            fail(e);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.server.ws;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class PerMessageDeflateTest {
+
+    @Test
+    void negotiateOffers() {
+        PerMessageDeflatePolicy policy = new PerMessageDeflatePolicy.Builder().clientMaxWindowBits(10).build();
+
+        assertNull(policy.negotiate(null));
+        assertNull(policy.negotiate("x-webkit-deflate-frame"));
+        assertEquals("permessage-deflate", policy.negotiate("permessage-deflate").getResponseHeaderValue());
+        // The window of the client is only limited if it offered the parameter
+        assertEquals("permessage-deflate; client_max_window_bits=10",
+                policy.negotiate("permessage-deflate; client_max_window_bits").getResponseHeaderValue());
+        // A smaller server window cannot be honored, the next offer is taken
+        PerMessageDeflate agreed = policy.negotiate("permessage-deflate; server_max_window_bits=10, "
+                + "permessage-deflate; server_no_context_takeover; client_no_context_takeover; server_max_window_bits=\"15\"");
+        assertEquals("permessage-deflate; server_no_context_takeover; client_no_context_takeover",
+                agreed.getResponseHeaderValue());
+        assertTrue(agreed.isServerNoContextTakeover());
+        assertNull(policy.negotiate("permessage-deflate; server_no_context_takeover; server_no_context_takeover"));
+        assertNull(policy.negotiate("permessage-deflate; unknown_parameter"));
+        assertNull(new PerMessageDeflatePolicy.Builder().enabled(false).build().negotiate("permessage-deflate"));
+    }
+
+    @Test
+    void compressAndDecompressWithContextTakeover() throws WebSocketParsingException, IOException {
+        PerMessageDeflatePolicy policy = new PerMessageDeflatePolicy.Builder().minSize(16).build();
+        PerMessageDeflate server = policy.negotiate("permessage-deflate");
+        PerMessageDeflate client = policy.negotiate("permessage-deflate");
+        WebSocketMessageAssembler assembler = new WebSocketMessageAssembler(1024, null, client);
+        String json = "{\"type\":\"tick\",\"symbol\":\"DUCK\",\"price\":42}";
+
+        WebSocketFrame first = server.compress(textFrame(json));
+        WebSocketFrame second = server.compress(textFrame(json));
+        assertTrue(first.isRsv1());
+        // The second message refers to the first one
+        assertTrue(second.getPayload().length < first.getPayload().length);
+        assertEquals(json, assembler.add(first).getPayloadAsString());
+        assertEquals(json, assembler.add(second).getPayloadAsString());
+
+        // Small messages and control frames are sent as they are
+        WebSocketFrame small = textFrame("hi");
+        assertSame(small, server.compress(small));
+        assertEquals("hi", assembler.add(small).getPayloadAsString());
+        server.close();
+        client.close();
+    }
+
+    @Test
+    void rejectCompressedFrameWithoutExtension() {
+        WebSocketMessageAssembler assembler = new WebSocketMessageAssembler(1024);
+        WebSocketFrame frame = new WebSocketFrame.Builder().rsv1(true).opcode(Opcode.TEXT).payload(new byte[]{1}).build();
+        assertThrows(WebSocketParsingException.class, () -> assembler.add(frame));
+    }
+
+    private WebSocketFrame textFrame(String payload) {
+        return new WebSocketFrame.Builder().fin(true).opcode(Opcode.TEXT).payload(payload.getBytes()).build();
+    }
+}
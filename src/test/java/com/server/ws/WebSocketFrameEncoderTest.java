@@ -0,0 +1,43 @@
+package com.server.ws;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class WebSocketFrameEncoderTest {
+
+    @Test
+    void encodeHeaderAndWrapPayload() {
+        WebSocketFrameEncoder encoder = new WebSocketFrameEncoder();
+        List<ByteBuffer> buffers = new ArrayList<>();
+        byte[] shortPayload = new byte[125];
+        byte[] mediumPayload = new byte[65535];
+        byte[] longPayload = new byte[65536];
+
+        encoder.encode(new WebSocketFrame.Builder().opcode(Opcode.TEXT).payload(shortPayload).build(), buffers);
+        encoder.encode(new WebSocketFrame.Builder().opcode(Opcode.BINARY).payload(mediumPayload).build(), buffers);
+        encoder.encode(new WebSocketFrame.Builder().fin(false).opcode(Opcode.TEXT).payload(longPayload).build(), buffers);
+        encoder.encode(new WebSocketFrame.Builder().opcode(Opcode.PING).build(), buffers);
+
+        assertEquals(7, buffers.size());
+        assertArrayEquals(new byte[]{(byte) 0x81, 125}, bytes(buffers.get(0)));
+        assertArrayEquals(new byte[]{(byte) 0x82, 126, (byte) 0xff, (byte) 0xff}, bytes(buffers.get(2)));
+        assertArrayEquals(new byte[]{0x01, 127, 0, 0, 0, 0, 0, 1, 0, 0}, bytes(buffers.get(4)));
+        assertArrayEquals(new byte[]{(byte) 0x89, 0}, bytes(buffers.get(6)));
+        // Payloads are sent from their own arrays
+        assertSame(shortPayload, buffers.get(1).array());
+        assertSame(longPayload, buffers.get(5).array());
+    }
+
+    private byte[] bytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,85 @@
+package com.server.ws;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class WebSocketHubTest {
+
+    @Test
+    void publishOneEncodedFrameToSubscribers() {
+        WebSocketHub hub = new WebSocketHub();
+        RecordingSession first = new RecordingSession();
+        RecordingSession second = new RecordingSession();
+        RecordingSession other = new RecordingSession();
+        hub.register(first);
+        hub.register(second);
+        hub.register(other);
+        hub.subscribe(first, "news");
+        hub.subscribe(second, "news");
+        hub.subscribe(other, "sports");
+
+        assertEquals(2, hub.publishText("news", "hello".getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(1, first.frames.size());
+        assertEquals(1, second.frames.size());
+        assertTrue(other.frames.isEmpty());
+        ByteBuffer frame = first.frames.getFirst();
+        assertTrue(frame.isReadOnly());
+        assertArrayEquals(new byte[]{(byte) 0x81, 5, 'h', 'e', 'l', 'l', 'o'}, bytes(frame));
+        // Sending from one view leaves the other untouched
+        frame.position(frame.limit());
+        assertEquals(7, second.frames.getFirst().remaining());
+        assertEquals(0, hub.publishText("weather", new byte[0]));
+    }
+
+    @Test
+    void dropSubscriptionsOfClosedSessions() {
+        WebSocketHub hub = new WebSocketHub();
+        RecordingSession closing = new RecordingSession();
+        RecordingSession staying = new RecordingSession();
+        RecordingSession unregistered = new RecordingSession();
+        hub.register(closing);
+        hub.register(staying);
+        hub.subscribe(closing, "news");
+        hub.subscribe(closing, "sports");
+        hub.subscribe(staying, "news");
+        assertFalse(hub.subscribe(unregistered, "news"));
+
+        hub.unregister(closing);
+        assertEquals(1, hub.getSubscribers("news").size());
+        assertTrue(hub.getSubscribers("sports").isEmpty());
+
+        staying.open = false;
+        assertEquals(0, hub.publishText("news", new byte[0]));
+        assertEquals(0, hub.getSessionCount());
+    }
+
+    private byte[] bytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    private static class RecordingSession implements WebSocketSession {
+        private final List<ByteBuffer> frames = new ArrayList<>();
+        private boolean open = true;
+
+        @Override
+        public void sendEncoded(ByteBuffer frame) {
+            frames.add(frame);
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+    }
+}
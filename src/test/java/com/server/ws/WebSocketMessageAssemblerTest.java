@@ -0,0 +1,101 @@
+package com.server.ws;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class WebSocketMessageAssemblerTest {
+
+    @Test
+    void reassembleWithInterleavedControlFrames() throws WebSocketParsingException, IOException {
+        WebSocketMessageAssembler assembler = new WebSocketMessageAssembler(1024);
+
+        assertNull(assembler.add(frame(false, Opcode.TEXT, "Hello, ")));
+        assertEquals(Opcode.PING, assembler.add(frame(true, Opcode.PING, "")).getOpcode());
+        assertNull(assembler.add(frame(false, Opcode.CONTINUE, "Web")));
+        WebSocketFrame message = assembler.add(frame(true, Opcode.CONTINUE, "Socket!"));
+
+        assertNotNull(message);
+        assertTrue(message.isFin());
+        assertEquals(Opcode.TEXT, message.getOpcode());
+        assertEquals("Hello, WebSocket!", message.getPayloadAsString());
+        // Unfragmented messages are passed through
+        WebSocketFrame single = assembler.add(frame(true, Opcode.BINARY, "abc"));
+        assertEquals(Opcode.BINARY, single.getOpcode());
+        assertEquals("abc", single.getPayloadAsString());
+    }
+
+    @Test
+    void rejectInvalidSequences() throws WebSocketParsingException, IOException {
+        WebSocketMessageAssembler assembler = new WebSocketMessageAssembler(10);
+        assertThrows(WebSocketParsingException.class, () -> assembler.add(frame(true, Opcode.CONTINUE, "a")));
+        assertThrows(WebSocketParsingException.class, () -> assembler.add(frame(false, Opcode.PING, "")));
+
+        assembler.add(frame(false, Opcode.TEXT, "12345"));
+        assertThrows(WebSocketParsingException.class, () -> assembler.add(frame(true, Opcode.TEXT, "a")));
+        WebSocketParsingException exception =
+                assertThrows(WebSocketParsingException.class, () -> assembler.add(frame(true, Opcode.CONTINUE, "678901")));
+        assertEquals("Message too large: more than 10 bytes", exception.getMessage());
+    }
+
+    @Test
+    void streamFragmentsToHandler() throws WebSocketParsingException, IOException {
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        StringBuilder events = new StringBuilder();
+        WebSocketMessageAssembler assembler = new WebSocketMessageAssembler(4, (opcode, payload, last) -> {
+            received.write(payload.array(), payload.arrayOffset() + payload.position(), payload.remaining());
+            events.append(opcode).append(last ? "!" : ",");
+        }, null);
+
+        assertNull(assembler.add(frame(false, Opcode.BINARY, "larger ")));
+        assertNotNull(assembler.add(frame(true, Opcode.PONG, "")));
+        assertNull(assembler.add(frame(true, Opcode.CONTINUE, "than the limit")));
+        assertNull(assembler.add(frame(true, Opcode.TEXT, "single")));
+
+        assertEquals("larger than the limitsingle", received.toString());
+        assertEquals("BINARY,BINARY!TEXT!", events.toString());
+    }
+
+    @Test
+    void addMaskedPayloadInParts() throws WebSocketParsingException, IOException {
+        WebSocketMessageAssembler assembler = new WebSocketMessageAssembler(1024);
+        byte[] payload = "Hello, WebSocket!".getBytes();
+        int maskingKey = 0x37fa213d;
+        WebSocketParser.unmask(payload, 0, payload.length, maskingKey, 0);
+
+        assembler.beginFrame(new WebSocketFrameHeader(true, Opcode.TEXT, payload.length, maskingKey));
+        // Parts not aligned to the key
+        assertNull(assembler.addPayload(ByteBuffer.wrap(payload, 0, 3)));
+        assertEquals(14, assembler.getFrameRemaining());
+        assertNull(assembler.addPayload(ByteBuffer.wrap(payload, 3, 9)));
+        WebSocketFrame message = assembler.addPayload(ByteBuffer.wrap(payload, 12, 5));
+
+        assertFalse(assembler.isInFrame());
+        assertEquals("Hello, WebSocket!", message.getPayloadAsString());
+    }
+
+    @Test
+    void allocateOnlyForArrivedPayload() throws WebSocketParsingException, IOException {
+        WebSocketMessageAssembler assembler = new WebSocketMessageAssembler(16 * 1024 * 1024);
+
+        assembler.beginFrame(new WebSocketFrameHeader(true, Opcode.BINARY, 16 * 1024 * 1024, 0));
+        assertEquals(0, assembler.getBufferCapacity());
+        assertNull(assembler.addPayload(ByteBuffer.wrap(new byte[100])));
+        assertEquals(100, assembler.getBufferCapacity());
+
+        // A declared length beyond the limit is still rejected up front
+        WebSocketMessageAssembler small = new WebSocketMessageAssembler(10);
+        assertThrows(WebSocketParsingException.class,
+                () -> small.beginFrame(new WebSocketFrameHeader(true, Opcode.BINARY, 11, 0)));
+    }
+
+    private WebSocketFrame frame(boolean fin, Opcode opcode, String payload) {
+        return new WebSocketFrame.Builder().fin(fin).opcode(opcode).payload(payload.getBytes()).build();
+    }
+}
@@ -5,8 +5,10 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
 
 import java.io.ByteArrayInputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -88,6 +90,56 @@ public class WebSocketParserTest {
         }
     }
 
+    @Test
+    public void unmaskPayloadWithKey() {
+        try {
+            // Long enough for the 8 byte steps and the rest after them
+            final byte[] payload = "Hello, WebSocket!".getBytes();
+            final byte[] maskingKey = {0x37, (byte) 0xfa, 0x21, 0x3d};
+            final byte[] frameBytes = new byte[6 + payload.length];
+            frameBytes[0] = (byte) 0x81;
+            frameBytes[1] = (byte) (0x80 | payload.length);
+            System.arraycopy(maskingKey, 0, frameBytes, 2, 4);
+            for (int i = 0; i < payload.length; i++) {
+                frameBytes[6 + i] = (byte) (payload[i] ^ maskingKey[i % 4]);
+            }
+            final WebSocketFrame frame = parser.parseWebsocketFrame(new ByteArrayInputStream(frameBytes));
+            assertEquals("Hello, WebSocket!", frame.getPayloadAsString());
+        } catch (IOException | WebSocketParsingException e) {
+            fail();
+        }
+    }
+
+    @Test
+    public void truncatedFrame() {
+        final byte[] frameBytes = new WebSocketFrame.Builder().fin(true).mask(true).opcode(Opcode.TEXT)
+                .payload("a".repeat(1000).getBytes()).build().generateFrameBytes();
+        // Cut inside the extended payload length, the masking key and the payload
+        for (int length : new int[]{3, 6, 500}) {
+            InputStream inputStream = new ByteArrayInputStream(frameBytes, 0, length);
+            WebSocketParsingException exception = assertThrows(WebSocketParsingException.class, () -> parser.parseWebsocketFrame(inputStream));
+            assertEquals("Unexpected end of stream", exception.getMessage());
+        }
+        assertThrows(EOFException.class, () -> parser.parseWebsocketFrame(new ByteArrayInputStream(new byte[0])));
+    }
+
+    @Test
+    public void parseHeaderOfHugeFrame() throws WebSocketParsingException {
+        final byte[] headerBytes = {(byte) 0x82, (byte) 0xff, 0, 0, 1, 0, 0, 0, 0, 0, 1, 2, 3, 4};
+        final ByteBuffer buffer = ByteBuffer.wrap(headerBytes, 0, 13);
+        // The header has not fully arrived
+        assertNull(parser.parseFrameHeader(buffer));
+        assertEquals(0, buffer.position());
+
+        buffer.limit(14);
+        final WebSocketFrameHeader header = parser.parseFrameHeader(buffer);
+        assertNotNull(header);
+        assertEquals(Opcode.BINARY, header.getOpcode());
+        assertEquals(1L << 40, header.getPayloadLength());
+        assertEquals(0x01020304, header.getMaskingKey());
+        assertEquals(14, buffer.position());
+    }
+
     InputStream generateShortSizedPayloadFrame() {
         String payloadString = "123abc";
         WebSocketFrame frame = new WebSocketFrame.Builder().fin(true).mask(true).opcode(Opcode.TEXT).payload(payloadString.getBytes()).build();